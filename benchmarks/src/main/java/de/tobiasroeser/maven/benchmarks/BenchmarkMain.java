@@ -0,0 +1,25 @@
+package de.tobiasroeser.maven.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks like {@link org.openjdk.jmh.Main}, but enables the
+ * GC profiler by default, so the results always include the memory allocated
+ * per operation (<code>gc.alloc.rate.norm</code>).
+ *
+ * The default is skipped, if profilers are given with <code>-prof</code>.
+ */
+public class BenchmarkMain {
+
+	public static void main(final String[] args) throws Exception {
+		final List<String> jmhArgs = new ArrayList<String>(Arrays.asList(args));
+		if (!jmhArgs.contains("-prof")) {
+			jmhArgs.add("-prof");
+			jmhArgs.add("gc");
+		}
+		org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.tobiasroeser.maven.featurebuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tobiasroeser.maven.workspacegenerator.WorkspaceGenerator;
+
+/**
+ * Measures {@link FeatureBuilder#scanBundlesAtDir(String)} on a directory of
+ * OSGi bundles generated by {@link WorkspaceGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureBuilderBenchmark {
+
+	/** The number of generated bundles. */
+	@Param({ "100", "1000" })
+	public int bundles;
+
+	private File dir;
+
+	@Setup
+	public void setup() throws IOException {
+		dir = File.createTempFile("bundles", "");
+		dir.delete();
+		dir.mkdirs();
+
+		final WorkspaceGenerator.Config config = new WorkspaceGenerator.Config();
+		config.dir = dir.getPath();
+		config.modules = bundles;
+		config.bundles = true;
+		new WorkspaceGenerator().generate(config);
+	}
+
+	@TearDown
+	public void tearDown() {
+		delete(dir);
+	}
+
+	@Benchmark
+	public List<Bundle> scanBundlesAtDir() {
+		return new FeatureBuilder().scanBundlesAtDir(new File(dir, WorkspaceGenerator.BUNDLE_DIR).getPath());
+	}
+
+	private void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
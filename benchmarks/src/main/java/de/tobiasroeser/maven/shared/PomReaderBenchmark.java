@@ -0,0 +1,112 @@
+package de.tobiasroeser.maven.shared;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.pom.x400.Model;
+import org.apache.maven.pom.x400.ProjectDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tobiasroeser.maven.versionupdater.LocalArtifact;
+import de.tobiasroeser.maven.versionupdater.ProjectInfo;
+
+/**
+ * Compares the time per project file of the XmlBeans based reader and the
+ * streaming {@link MavenStaxReader}. Both extract the same
+ * {@link ProjectInfo}.
+ *
+ * Run with <code>-prof gc</code> to also compare the memory allocated per
+ * project file (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PomReaderBenchmark {
+
+	/** The number of dependencies in the generated project file. */
+	@Param({ "10", "100" })
+	public int dependencies;
+
+	private File pomFile;
+
+	@Setup
+	public void setup() throws IOException {
+		pomFile = File.createTempFile("pom", ".xml");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(pomFile), "UTF-8");
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+			writer.write("  <modelVersion>4.0.0</modelVersion>\n");
+			writer.write("  <groupId>org.example</groupId>\n");
+			writer.write("  <artifactId>bench</artifactId>\n");
+			writer.write("  <version>1.0.0</version>\n");
+			writer.write("  <name>Benchmark project</name>\n");
+			writer.write("  <description>A generated project with " + dependencies + " dependencies.</description>\n");
+			writer.write("  <dependencies>\n");
+			for (int i = 0; i < dependencies; ++i) {
+				writer.write("    <dependency>\n");
+				writer.write("      <groupId>org.example.group" + (i % 10) + "</groupId>\n");
+				writer.write("      <artifactId>artifact" + i + "</artifactId>\n");
+				writer.write("      <version>1." + i + ".0</version>\n");
+				if (i % 5 == 0) {
+					writer.write("      <scope>test</scope>\n");
+					writer.write("      <exclusions><exclusion><groupId>org.other</groupId><artifactId>other</artifactId></exclusion></exclusions>\n");
+				}
+				writer.write("    </dependency>\n");
+			}
+			writer.write("  </dependencies>\n");
+			writer.write("  <build>\n");
+			writer.write("    <plugins>\n");
+			writer.write("      <plugin><artifactId>maven-compiler-plugin</artifactId><version>3.1</version>\n");
+			writer.write("        <configuration><source>1.7</source><target>1.7</target></configuration></plugin>\n");
+			writer.write("    </plugins>\n");
+			writer.write("  </build>\n");
+			writer.write("  <profiles>\n");
+			writer.write("    <profile><id>all</id><modules><module>a</module><module>b</module></modules></profile>\n");
+			writer.write("  </profiles>\n");
+			writer.write("</project>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		pomFile.delete();
+	}
+
+	@Benchmark
+	public ProjectInfo xmlBeans() throws Exception {
+		final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
+		final Model project = ProjectDocument.Factory.parse(pomFile, mavenXmlSupport.createXmlOptions()).getProject();
+		final LocalArtifact artifact = mavenXmlSupport.readLocalArtifactFromProject(project, pomFile);
+		return new ProjectInfo(artifact,
+				mavenXmlSupport.readDirectDependencyList(artifact, project, Arrays.asList("*")),
+				mavenXmlSupport.readProfileModules(project));
+	}
+
+	@Benchmark
+	public ProjectInfo stax() throws Exception {
+		return MavenStaxReader.instance.readProjectInfo(pomFile);
+	}
+
+}
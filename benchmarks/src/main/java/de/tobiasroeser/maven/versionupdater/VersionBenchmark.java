@@ -0,0 +1,89 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing, sorting and max-version selection of {@link Version}s,
+ * compared with sorting the plain version strings.
+ *
+ * Run with <code>-prof gc</code> to check, that comparing does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+	private static final String[] QUALIFIERS = { "", "", "", "-SNAPSHOT", "-alpha-1", "-beta2", "-rc1", "-rc1-SNAPSHOT", ".Final",
+			".v20100101" };
+
+	/** The number of versions. */
+	@Param({ "100000" })
+	public int versions;
+
+	private String[] texts;
+	private Version[] parsed;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		texts = new String[versions];
+		parsed = new Version[versions];
+		for (int i = 0; i < versions; ++i) {
+			texts[i] = random.nextInt(5) + "." + random.nextInt(20) + "." + random.nextInt(100)
+					+ QUALIFIERS[random.nextInt(QUALIFIERS.length)];
+			parsed[i] = Version.parseMaven(texts[i]);
+		}
+	}
+
+	@Benchmark
+	public Version[] parse() {
+		final Version[] result = new Version[versions];
+		for (int i = 0; i < versions; ++i) {
+			result[i] = Version.parseMaven(texts[i]);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public Version[] sortParsed() {
+		final Version[] sorted = parsed.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	@Benchmark
+	public String[] sortStrings() {
+		final String[] sorted = texts.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	@Benchmark
+	public Version max() {
+		Version max = parsed[0];
+		for (final Version version : parsed) {
+			if (version.isNewerThan(max)) {
+				max = version;
+			}
+		}
+		return max;
+	}
+
+}
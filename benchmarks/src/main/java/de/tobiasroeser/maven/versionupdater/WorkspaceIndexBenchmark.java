@@ -0,0 +1,127 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tototec.utils.functional.Optional;
+
+/**
+ * Measures how the {@link WorkspaceIndex} scales with the number of modules
+ * and compares its lookups with a linear scan over all artifacts, as done
+ * before the index existed.
+ *
+ * The workspace is generated in memory: each module depends on up to 5 other
+ * modules and 2 external libraries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkspaceIndexBenchmark {
+
+	/** The number of lookups per invocation of the lookup benchmarks. */
+	private static final int LOOKUPS = 100;
+
+	/** The number of generated modules. */
+	@Param({ "1000", "10000", "50000" })
+	public int modules;
+
+	private final List<String> profiles = Arrays.asList("*");
+	private List<ProjectInfo> projects;
+	private WorkspaceIndex index;
+	private String[] keys;
+
+	@Setup
+	public void setup() {
+		final Map<String, List<String>> noModules = Collections.emptyMap();
+		final Optional<String> noProfile = Optional.none();
+		final List<String> noExclusions = Collections.emptyList();
+
+		projects = new ArrayList<ProjectInfo>(modules);
+		for (int i = 0; i < modules; ++i) {
+			final LocalArtifact artifact = new LocalArtifact("org.example.group" + (i % 100), "module" + i, "1.0.0", "jar",
+					new File("module" + i, "pom.xml"));
+			final List<Dependency> dependencies = new LinkedList<Dependency>();
+			for (int j = Math.max(0, i - 5); j < i; ++j) {
+				dependencies.add(new Dependency(new Artifact("org.example.group" + (j % 100), "module" + j, "1.0.0", "jar"),
+						artifact, noProfile, null, "compile", null, noExclusions));
+			}
+			dependencies.add(new Dependency(new Artifact("org.lib", "lib" + (i % 50), "2.0", "jar"),
+					artifact, noProfile, null, "compile", null, noExclusions));
+			dependencies.add(new Dependency(new Artifact("junit", "junit", "4.12", "jar"),
+					artifact, noProfile, null, "test", null, noExclusions));
+			projects.add(new ProjectInfo(artifact, dependencies, noModules));
+		}
+
+		index = new WorkspaceIndex(projects, profiles);
+
+		keys = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; ++i) {
+			final int module = (int) ((long) i * modules / LOOKUPS);
+			keys[i] = "org.example.group" + (module % 100) + ":module" + module;
+		}
+	}
+
+	@Benchmark
+	public WorkspaceIndex buildIndex() {
+		return new WorkspaceIndex(projects, profiles);
+	}
+
+	@Benchmark
+	public int indexedLookups() {
+		int found = 0;
+		for (final String key : keys) {
+			final LocalArtifact artifact = index.findLocalArtifact(key);
+			if (artifact != null) {
+				found += index.getDependencies(artifact.getGaId()).size();
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int linearLookups() {
+		int found = 0;
+		for (final String key : keys) {
+			LocalArtifact candidate = null;
+			for (final ProjectInfo project : projects) {
+				final LocalArtifact artifact = project.getArtifact();
+				if ((artifact.getGroup() + ":" + artifact.getArtifact()).equals(key)) {
+					candidate = artifact;
+					break;
+				}
+			}
+			if (candidate != null) {
+				for (final ProjectInfo project : projects) {
+					for (final Dependency dependency : project.getDependencies(profiles)) {
+						if (dependency.getDependencyArtifact().equalsByProjectName(candidate)) {
+							++found;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+}
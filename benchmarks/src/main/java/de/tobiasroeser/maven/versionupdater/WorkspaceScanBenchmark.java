@@ -0,0 +1,153 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.pom.x400.Model;
+import org.apache.maven.pom.x400.ProjectDocument;
+import org.apache.xmlbeans.XmlException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tobiasroeser.maven.shared.MavenXmlSupport;
+import de.tobiasroeser.maven.shared.PomDocumentCache;
+import de.tobiasroeser.maven.workspacegenerator.WorkspaceGenerator;
+
+/**
+ * Measures the steps of a run on a workspace generated on disk: parsing the
+ * project files, reading their dependencies, scanning the reactor and
+ * building the {@link WorkspaceIndex} (which replaced the former
+ * <code>evaluateDirectArtifactDependencies</code>) and detecting version
+ * mismatches.
+ *
+ * The workspace is generated by {@link WorkspaceGenerator} with its default
+ * shape and seed, so results of different runs are comparable.
+ *
+ * Run with <code>-prof gc</code> to also see the memory allocated per
+ * operation (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkspaceScanBenchmark {
+
+	/** The number of generated modules. */
+	@Param({ "100", "1000" })
+	public int modules;
+
+	private final List<String> profiles = Arrays.asList("all");
+	private File dir;
+	private List<File> pomFiles;
+	private List<Model> models;
+	private List<LocalArtifact> artifacts;
+	private WorkspaceIndex index;
+
+	@Setup
+	public void setup() throws IOException, XmlException {
+		dir = File.createTempFile("workspace", "");
+		dir.delete();
+		dir.mkdirs();
+
+		final WorkspaceGenerator.Config config = new WorkspaceGenerator.Config();
+		config.dir = dir.getPath();
+		config.modules = modules;
+		config.profile = profiles.get(0);
+		new WorkspaceGenerator().generate(config);
+
+		pomFiles = new ArrayList<File>();
+		for (final LocalArtifact artifact : new ReactorScanner("pom.xml", profiles, 1, new PomIndex(new PomDocumentCache(
+				PomDocumentCache.DEFAULT_CAPACITY), null, false)).scan(Arrays.asList(dir.getPath()))) {
+			pomFiles.add(artifact.getLocation());
+		}
+
+		final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
+		models = new ArrayList<Model>(pomFiles.size());
+		artifacts = new ArrayList<LocalArtifact>(pomFiles.size());
+		for (final File pomFile : pomFiles) {
+			final Model project = ProjectDocument.Factory.parse(pomFile, mavenXmlSupport.createXmlOptions()).getProject();
+			models.add(project);
+			artifacts.add(mavenXmlSupport.readLocalArtifactFromProject(project, pomFile));
+		}
+
+		index = scanAndIndex();
+	}
+
+	@TearDown
+	public void tearDown() {
+		delete(dir);
+	}
+
+	@Benchmark
+	public int parse() throws XmlException, IOException {
+		final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
+		int count = 0;
+		for (final File pomFile : pomFiles) {
+			if (ProjectDocument.Factory.parse(pomFile, mavenXmlSupport.createXmlOptions()).getProject() != null) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int readDependencies() {
+		final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
+		int count = 0;
+		for (int i = 0; i < models.size(); ++i) {
+			final Map<String, List<Dependency>> deps = mavenXmlSupport.readDirectDependencyFromLocalArtifact(
+					artifacts.get(i), models.get(i), profiles);
+			count += deps.size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public WorkspaceIndex scanAndIndex() {
+		final PomIndex pomIndex = new PomIndex(new PomDocumentCache(PomDocumentCache.DEFAULT_CAPACITY), null, false);
+		final List<LocalArtifact> reactorArtifacts = new ReactorScanner("pom.xml", profiles, 1, pomIndex)
+				.scan(Arrays.asList(dir.getPath()));
+		final List<ProjectInfo> projects = new ArrayList<ProjectInfo>(reactorArtifacts.size());
+		for (final LocalArtifact artifact : reactorArtifacts) {
+			try {
+				projects.add(pomIndex.getProjectInfo(artifact.getLocation()));
+			} catch (final Exception e) {
+				throw new RuntimeException("Could not read project: " + artifact.getLocation(), e);
+			}
+		}
+		return new WorkspaceIndex(projects, profiles);
+	}
+
+	@Benchmark
+	public int versionMismatches() {
+		return new VersionUpdater().findVersionMismatches(index, null).size();
+	}
+
+	private void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
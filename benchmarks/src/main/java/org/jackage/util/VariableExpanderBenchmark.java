@@ -0,0 +1,92 @@
+package org.jackage.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link VariableExpander} with the former implementation, which
+ * called {@link String#replaceAll(String, String)} once per variable.
+ *
+ * The input mix resembles the coordinates of dependencies: most values
+ * contain no variable at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableExpanderBenchmark {
+
+	private final String[] inputs = { "org.example", "artifact-a", "1.2.3", "${project.groupId}", "${project.version}",
+			"junit", "4.12", "${project.artifactId}-api", "org.other", "2.0-SNAPSHOT" };
+
+	private VariableExpander<String> expander;
+	private RegexVariableExpander regexExpander;
+
+	@Setup
+	public void setup() {
+		expander = new VariableExpander<String>();
+		regexExpander = new RegexVariableExpander();
+		for (final String name : new String[] { "parent.groupId", "project.parent.groupId", "parent.artifactId",
+				"project.parent.artifactId", "parent.version", "project.parent.version", "project.groupId",
+				"project.artifactId", "project.version" }) {
+			expander.addVar(name, "value-of-" + name);
+			regexExpander.addVar(name, "value-of-" + name);
+		}
+	}
+
+	@Benchmark
+	public int compiled() {
+		int length = 0;
+		for (final String input : inputs) {
+			length += expander.expand(input).length();
+		}
+		return length;
+	}
+
+	@Benchmark
+	public int regex() {
+		int length = 0;
+		for (final String input : inputs) {
+			length += regexExpander.expand(input).length();
+		}
+		return length;
+	}
+
+	/**
+	 * The former implementation of {@link VariableExpander#expand(String)}.
+	 */
+	private static class RegexVariableExpander {
+		private final Map<String, String> vars = new LinkedHashMap<String, String>();
+
+		public void addVar(final String key, final String value) {
+			vars.put(key, value);
+		}
+
+		public String expand(String string) {
+			if (string == null) {
+				return "";
+			}
+			for (final Entry<String, String> var : vars.entrySet()) {
+				string = string.replaceAll("\\$\\{" + var.getKey() + "\\}", Matcher.quoteReplacement(var.getValue()));
+			}
+			return string;
+		}
+	}
+
+}
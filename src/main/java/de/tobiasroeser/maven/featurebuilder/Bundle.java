@@ -2,16 +2,20 @@ package de.tobiasroeser.maven.featurebuilder;
 
 import java.io.File;
 
+import de.tobiasroeser.maven.versionupdater.Version;
+
 public class Bundle implements Comparable<Bundle> {
 
 	private final String symbolicName;
 	private final String version;
+	private final Version parsedVersion;
 	private final long sizeInB;
 	private final File jar;
 
 	public Bundle(String symbolicName, String version, long sizeInB, File jar) {
 		this.symbolicName = symbolicName;
 		this.version = version;
+		this.parsedVersion = version != null ? Version.parseOsgi(version) : null;
 		this.sizeInB = sizeInB;
 		this.jar= jar;
 	}
@@ -71,9 +75,12 @@ public class Bundle implements Comparable<Bundle> {
 
 	public int compareTo(Bundle o) {
 		int diff = getSymbolicName().compareTo(o.getSymbolicName());
-		if(diff == 0) {
-			// FIXME: poor mans version sorter :-(
-			return getVersion().compareTo(o.getVersion()); 
+		if(diff == 0 && parsedVersion != null && o.parsedVersion != null) {
+			diff = parsedVersion.compareTo(o.parsedVersion);
+			if(diff == 0) {
+				// e.g. 1.0 and 1.0.0
+				diff = getVersion().compareTo(o.getVersion());
+			}
 		}
 		return diff;
 	}
@@ -0,0 +1,506 @@
+package de.tobiasroeser.maven.shared;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jackage.util.VariableExpander;
+
+import de.tobiasroeser.maven.versionupdater.Dependency;
+import de.tobiasroeser.maven.versionupdater.DependencyManagement;
+import de.tobiasroeser.maven.versionupdater.LocalArtifact;
+import de.tobiasroeser.maven.versionupdater.ProjectResolver;
+import de.tobiasroeser.maven.versionupdater.ProjectInfo;
+import de.tobiasroeser.maven.versionupdater.PropertyDefinition;
+import de.tobiasroeser.maven.versionupdater.UsedPlugin;
+import de.tototec.utils.functional.Optional;
+
+/**
+ * A read-only Maven project reader, which streams the project file with StAX
+ * and only looks at the elements it needs. No object tree of the whole
+ * document is built.
+ *
+ * The results are the same as the one produced by the corresponding methods of
+ * {@link MavenXmlSupport}, which is still needed to modify project files.
+ *
+ * This class is thread-safe.
+ */
+public class MavenStaxReader {
+
+	public static final MavenStaxReader instance = new MavenStaxReader();
+
+	private final XMLInputFactory inputFactory;
+
+	public MavenStaxReader() {
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/**
+	 * Read the project artifact, all direct dependencies (including those of
+	 * all profiles) and the modules of all profiles. The parent is not
+	 * resolved.
+	 */
+	public ProjectInfo readProjectInfo(final File pomFile) throws XMLStreamException, IOException {
+		return readProjectInfo(pomFile, ProjectResolver.NONE);
+	}
+
+	/**
+	 * Read the project artifact, all direct dependencies (including those of
+	 * all profiles), the modules of all profiles and the resolved properties.
+	 * The properties of the parent are inherited, if <code>resolver</code>
+	 * finds it.
+	 */
+	public ProjectInfo readProjectInfo(final File pomFile, final ProjectResolver resolver) throws XMLStreamException, IOException {
+		final RawProject raw = read(pomFile);
+		final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
+
+		ProjectInfo parentInfo = null;
+		if (raw.hasParent) {
+			parentInfo = resolver.resolveParent(pomFile, raw.parentGroupId, raw.parentArtifactId, raw.parentVersion,
+					raw.parentRelativePath);
+		}
+		final Map<String, PropertyDefinition> inherited = parentInfo != null ? parentInfo.getProperties()
+				: Collections.<String, PropertyDefinition> emptyMap();
+
+		final LocalArtifact artifact = mavenXmlSupport.createLocalArtifact(raw.groupId, raw.artifactId, raw.version,
+				raw.packaging, raw.hasParent, raw.parentGroupId, raw.parentArtifactId, raw.parentVersion,
+				mavenXmlSupport.coordinateProperties(raw.properties, inherited, pomFile, raw.groupId, raw.artifactId,
+						raw.version),
+				pomFile);
+		final Map<String, String> builtins = mavenXmlSupport.projectVariables(artifact);
+		final Map<String, PropertyDefinition> properties = mavenXmlSupport.resolveProperties(builtins, raw.properties,
+				inherited, pomFile, Optional.<String> none());
+		final VariableExpander<String> vars = mavenXmlSupport.createProjectVariables(artifact, properties);
+
+		final List<Dependency> managed = new LinkedList<Dependency>();
+		for (final RawDependency dep : raw.managedDependencies) {
+			final Dependency entry = mavenXmlSupport.createDependency(artifact, vars, properties, DependencyManagement.EMPTY,
+					dep.profile, dep.groupId, dep.artifactId, dep.version, dep.classifier, dep.scope, dep.systemPath,
+					dep.exclusions);
+			entry.setManaged(true);
+			managed.add(entry);
+		}
+		final List<ProjectInfo> imports = mavenXmlSupport.resolveImports(pomFile, managed, resolver);
+		final DependencyManagement management = mavenXmlSupport.createDependencyManagement(managed, imports, parentInfo,
+				resolver);
+
+		// like MavenXmlSupport, first the project dependencies, then those of the profiles
+		final List<RawDependency> rawDependencies = new LinkedList<RawDependency>(raw.dependencies);
+		rawDependencies.addAll(raw.profileDependencies);
+
+		// Map(profile-id:properties), profile properties override the project ones
+		final Map<String, Map<String, PropertyDefinition>> profileProperties = new HashMap<String, Map<String, PropertyDefinition>>();
+		final Map<String, VariableExpander<String>> profileVars = new HashMap<String, VariableExpander<String>>();
+		for (final Entry<String, Map<String, String>> e : raw.profileProperties.entrySet()) {
+			final Map<String, PropertyDefinition> resolved = mavenXmlSupport.resolveProperties(builtins, e.getValue(),
+					properties, pomFile, Optional.some(e.getKey()));
+			profileProperties.put(e.getKey(), resolved);
+			profileVars.put(e.getKey(), mavenXmlSupport.createProjectVariables(artifact, resolved));
+		}
+
+		final List<Dependency> dependencies = new LinkedList<Dependency>();
+		for (final RawDependency dep : rawDependencies) {
+			final String profile = dep.profile.isDefined() ? dep.profile.get() : null;
+			final boolean ownProperties = profile != null && profileProperties.containsKey(profile);
+			dependencies.add(mavenXmlSupport.createDependency(artifact, ownProperties ? profileVars.get(profile) : vars,
+					ownProperties ? profileProperties.get(profile) : properties, management, dep.profile, dep.groupId,
+					dep.artifactId, dep.version, dep.classifier, dep.scope, dep.systemPath, dep.exclusions));
+		}
+
+		final List<File> importLocations = new ArrayList<File>(imports.size());
+		for (final ProjectInfo imported : imports) {
+			importLocations.add(imported.getArtifact().getLocation());
+		}
+
+		// like MavenXmlSupport, first the project plugins, then those of the profiles
+		final List<RawPlugin> rawPlugins = new LinkedList<RawPlugin>(raw.plugins);
+		rawPlugins.addAll(raw.profilePlugins);
+
+		final List<UsedPlugin> plugins = new LinkedList<UsedPlugin>();
+		for (final RawPlugin plugin : rawPlugins) {
+			final String profile = plugin.profile.isDefined() ? plugin.profile.get() : null;
+			final boolean ownProperties = profile != null && profileProperties.containsKey(profile);
+			plugins.add(mavenXmlSupport.createUsedPlugin(artifact, ownProperties ? profileVars.get(profile) : vars,
+					ownProperties ? profileProperties.get(profile) : properties, plugin.profile, plugin.managed,
+					plugin.groupId, plugin.artifactId, plugin.version));
+		}
+
+		return new ProjectInfo(artifact, dependencies, raw.profileModules, properties,
+				parentInfo != null ? parentInfo.getArtifact().getLocation() : null, managed, importLocations, plugins);
+	}
+
+	/**
+	 * Read the plugins used in the build and <code>pluginManagement</code>
+	 * sections of the project and all its profiles. The parent is not
+	 * resolved.
+	 */
+	public List<UsedPlugin> readUsedPlugins(final File pomFile) throws XMLStreamException, IOException {
+		return readProjectInfo(pomFile).getPlugins();
+	}
+
+	protected RawProject read(final File pomFile) throws XMLStreamException, IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(pomFile));
+		try {
+			final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+			try {
+				final RawProject raw = new RawProject();
+				if (!nextChild(reader) || !"project".equals(reader.getLocalName())) {
+					throw new XMLStreamException("Not a Maven project file: " + pomFile, reader.getLocation());
+				}
+				readProject(reader, raw);
+				return raw;
+			} finally {
+				reader.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	protected void readProject(final XMLStreamReader reader, final RawProject raw) throws XMLStreamException {
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("groupId".equals(name)) {
+				raw.groupId = reader.getElementText();
+			} else if ("artifactId".equals(name)) {
+				raw.artifactId = reader.getElementText();
+			} else if ("version".equals(name)) {
+				raw.version = reader.getElementText();
+			} else if ("packaging".equals(name)) {
+				raw.packaging = reader.getElementText();
+			} else if ("parent".equals(name)) {
+				readParent(reader, raw);
+			} else if ("properties".equals(name)) {
+				readProperties(reader, raw.properties);
+			} else if ("dependencies".equals(name)) {
+				readDependencies(reader, Optional.<String> none(), raw.dependencies);
+			} else if ("dependencyManagement".equals(name)) {
+				while (nextChild(reader)) {
+					if ("dependencies".equals(reader.getLocalName())) {
+						readDependencies(reader, Optional.<String> none(), raw.managedDependencies);
+					} else {
+						skip(reader);
+					}
+				}
+			} else if ("build".equals(name)) {
+				readBuild(reader, Optional.<String> none(), raw.plugins);
+			} else if ("profiles".equals(name)) {
+				readProfiles(reader, raw);
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected void readParent(final XMLStreamReader reader, final RawProject raw) throws XMLStreamException {
+		raw.hasParent = true;
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("groupId".equals(name)) {
+				raw.parentGroupId = reader.getElementText();
+			} else if ("artifactId".equals(name)) {
+				raw.parentArtifactId = reader.getElementText();
+			} else if ("version".equals(name)) {
+				raw.parentVersion = reader.getElementText();
+			} else if ("relativePath".equals(name)) {
+				raw.parentRelativePath = reader.getElementText();
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	/**
+	 * Read the properties in declaration order. The text of nested elements
+	 * is ignored.
+	 */
+	protected void readProperties(final XMLStreamReader reader, final Map<String, String> properties)
+			throws XMLStreamException {
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			final StringBuilder value = new StringBuilder();
+			int depth = 1;
+			while (depth > 0 && reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					++depth;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					--depth;
+				} else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+					value.append(reader.getText());
+				}
+			}
+			properties.put(name, value.toString());
+		}
+	}
+
+	protected void readDependencies(final XMLStreamReader reader, final Optional<String> profile,
+			final List<RawDependency> dependencies) throws XMLStreamException {
+		while (nextChild(reader)) {
+			if ("dependency".equals(reader.getLocalName())) {
+				dependencies.add(readDependency(reader, profile));
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected RawDependency readDependency(final XMLStreamReader reader, final Optional<String> profile)
+			throws XMLStreamException {
+		final RawDependency dep = new RawDependency(profile);
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("groupId".equals(name)) {
+				dep.groupId = reader.getElementText();
+			} else if ("artifactId".equals(name)) {
+				dep.artifactId = reader.getElementText();
+			} else if ("version".equals(name)) {
+				dep.version = reader.getElementText();
+			} else if ("classifier".equals(name)) {
+				dep.classifier = reader.getElementText();
+			} else if ("scope".equals(name)) {
+				dep.scope = reader.getElementText();
+			} else if ("systemPath".equals(name)) {
+				dep.systemPath = reader.getElementText();
+			} else if ("exclusions".equals(name)) {
+				readExclusions(reader, dep.exclusions);
+			} else {
+				skip(reader);
+			}
+		}
+		return dep;
+	}
+
+	protected void readExclusions(final XMLStreamReader reader, final List<String> exclusions) throws XMLStreamException {
+		while (nextChild(reader)) {
+			if ("exclusion".equals(reader.getLocalName())) {
+				String groupId = null;
+				String artifactId = null;
+				while (nextChild(reader)) {
+					final String name = reader.getLocalName();
+					if ("groupId".equals(name)) {
+						groupId = reader.getElementText();
+					} else if ("artifactId".equals(name)) {
+						artifactId = reader.getElementText();
+					} else {
+						skip(reader);
+					}
+				}
+				exclusions.add(groupId.trim() + ":" + artifactId.trim());
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected void readBuild(final XMLStreamReader reader, final Optional<String> profile, final List<RawPlugin> plugins)
+			throws XMLStreamException {
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("plugins".equals(name)) {
+				readPlugins(reader, profile, false, plugins);
+			} else if ("pluginManagement".equals(name)) {
+				while (nextChild(reader)) {
+					if ("plugins".equals(reader.getLocalName())) {
+						readPlugins(reader, profile, true, plugins);
+					} else {
+						skip(reader);
+					}
+				}
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected void readPlugins(final XMLStreamReader reader, final Optional<String> profile, final boolean managed,
+			final List<RawPlugin> plugins) throws XMLStreamException {
+		while (nextChild(reader)) {
+			if ("plugin".equals(reader.getLocalName())) {
+				final RawPlugin plugin = readPlugin(reader);
+				plugin.profile = profile;
+				plugin.managed = managed;
+				plugins.add(plugin);
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected RawPlugin readPlugin(final XMLStreamReader reader) throws XMLStreamException {
+		final RawPlugin plugin = new RawPlugin();
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("groupId".equals(name)) {
+				plugin.groupId = reader.getElementText();
+			} else if ("artifactId".equals(name)) {
+				plugin.artifactId = reader.getElementText();
+			} else if ("version".equals(name)) {
+				plugin.version = reader.getElementText();
+			} else {
+				skip(reader);
+			}
+		}
+		return plugin;
+	}
+
+	protected void readProfiles(final XMLStreamReader reader, final RawProject raw) throws XMLStreamException {
+		while (nextChild(reader)) {
+			if ("profile".equals(reader.getLocalName())) {
+				readProfile(reader, raw);
+			} else {
+				skip(reader);
+			}
+		}
+	}
+
+	protected void readProfile(final XMLStreamReader reader, final RawProject raw) throws XMLStreamException {
+		String id = null;
+		List<String> modules = null;
+		Map<String, String> properties = null;
+		final List<RawDependency> dependencies = new LinkedList<RawDependency>();
+		final List<RawPlugin> plugins = new LinkedList<RawPlugin>();
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if ("id".equals(name)) {
+				id = reader.getElementText();
+			} else if ("modules".equals(name)) {
+				modules = new LinkedList<String>();
+				while (nextChild(reader)) {
+					if ("module".equals(reader.getLocalName())) {
+						modules.add(reader.getElementText());
+					} else {
+						skip(reader);
+					}
+				}
+			} else if ("properties".equals(name)) {
+				properties = new LinkedHashMap<String, String>();
+				readProperties(reader, properties);
+			} else if ("dependencies".equals(name)) {
+				readDependencies(reader, null, dependencies);
+			} else if ("build".equals(name)) {
+				readBuild(reader, null, plugins);
+			} else {
+				skip(reader);
+			}
+		}
+
+		// the id may be declared after the dependencies
+		final Optional<String> profile = Optional.some(id);
+		for (final RawDependency dep : dependencies) {
+			dep.profile = profile;
+		}
+		raw.profileDependencies.addAll(dependencies);
+		for (final RawPlugin plugin : plugins) {
+			plugin.profile = profile;
+		}
+		raw.profilePlugins.addAll(plugins);
+		if (modules != null) {
+			raw.profileModules.put(id, modules);
+		}
+		if (properties != null) {
+			raw.profileProperties.put(id, properties);
+		}
+	}
+
+	/**
+	 * Move to the next child element of the current element.
+	 *
+	 * @return <code>true</code> if the reader is positioned at the start of
+	 *         the next child element, <code>false</code> if the reader is
+	 *         positioned at the end of the current element.
+	 */
+	protected boolean nextChild(final XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skip the current element including all its content.
+	 */
+	protected void skip(final XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				++depth;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				--depth;
+			}
+		}
+	}
+
+	protected static class RawProject {
+		String groupId;
+		String artifactId;
+		String version;
+		String packaging;
+		boolean hasParent;
+		String parentGroupId;
+		String parentArtifactId;
+		String parentVersion;
+		String parentRelativePath;
+		/** Map(name:raw-value) */
+		final Map<String, String> properties = new LinkedHashMap<String, String>();
+		/** Map(profile-id:Map(name:raw-value)) */
+		final Map<String, Map<String, String>> profileProperties = new LinkedHashMap<String, Map<String, String>>();
+		final List<RawDependency> dependencies = new LinkedList<RawDependency>();
+		final List<RawDependency> profileDependencies = new LinkedList<RawDependency>();
+		final List<RawDependency> managedDependencies = new LinkedList<RawDependency>();
+		final List<RawPlugin> plugins = new LinkedList<RawPlugin>();
+		final List<RawPlugin> profilePlugins = new LinkedList<RawPlugin>();
+		/** Map(profile-id:list-of-modules) */
+		final Map<String, List<String>> profileModules = new LinkedHashMap<String, List<String>>();
+	}
+
+	protected static class RawDependency {
+		Optional<String> profile;
+		String groupId;
+		String artifactId;
+		String version;
+		String classifier;
+		String scope;
+		String systemPath;
+		final List<String> exclusions = new LinkedList<String>();
+
+		RawDependency(final Optional<String> profile) {
+			this.profile = profile;
+		}
+	}
+
+	protected static class RawPlugin {
+		Optional<String> profile;
+		boolean managed;
+		String groupId;
+		String artifactId;
+		String version;
+	}
+
+}
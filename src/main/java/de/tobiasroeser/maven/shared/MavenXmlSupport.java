@@ -5,21 +5,30 @@ import static de.tototec.utils.functional.FList.flatMap;
 import static de.tototec.utils.functional.FList.map;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.maven.pom.x400.Build;
+import org.apache.maven.pom.x400.BuildBase;
 import org.apache.maven.pom.x400.Exclusion;
 import org.apache.maven.pom.x400.Model;
 import org.apache.maven.pom.x400.Model.Dependencies;
 import org.apache.maven.pom.x400.Model.Profiles;
 import org.apache.maven.pom.x400.Parent;
 import org.apache.maven.pom.x400.Plugin;
+import org.apache.maven.pom.x400.PluginManagement;
 import org.apache.maven.pom.x400.Profile;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
 import org.jackage.util.VariableExpander;
 import org.slf4j.Logger;
@@ -27,7 +36,11 @@ import org.slf4j.LoggerFactory;
 
 import de.tobiasroeser.maven.versionupdater.Artifact;
 import de.tobiasroeser.maven.versionupdater.Dependency;
+import de.tobiasroeser.maven.versionupdater.DependencyManagement;
 import de.tobiasroeser.maven.versionupdater.LocalArtifact;
+import de.tobiasroeser.maven.versionupdater.ProjectResolver;
+import de.tobiasroeser.maven.versionupdater.ProjectInfo;
+import de.tobiasroeser.maven.versionupdater.PropertyDefinition;
 import de.tobiasroeser.maven.versionupdater.UsedPlugin;
 import de.tototec.utils.functional.Optional;
 import de.tototec.utils.functional.Tuple2;
@@ -36,76 +49,168 @@ public class MavenXmlSupport {
 
 	private final Logger log = LoggerFactory.getLogger(MavenXmlSupport.class);
 
-	private XmlOptions xmlOptions;
+	/**
+	 * The shared options. Once created, they are never modified, so they can be
+	 * safely used from multiple threads.
+	 */
+	private volatile XmlOptions xmlOptions;
 
-	public static MavenXmlSupport instance = new MavenXmlSupport();
+	public static final MavenXmlSupport instance = new MavenXmlSupport();
 
+	/**
+	 * @return The (shared) options to parse and create Maven project XML. This
+	 *         method is thread-safe. Do not modify the returned options.
+	 */
 	public XmlOptions createXmlOptions() {
-		if (xmlOptions == null) {
-			final XmlOptions opts = new XmlOptions();
-			final Map<String, String> ns = new HashMap<String, String>();
-			ns.put("", "http://maven.apache.org/POM/4.0.0");
-			opts.setLoadSubstituteNamespaces(ns);
-			xmlOptions = opts;
-		}
-		return xmlOptions;
+		XmlOptions opts = xmlOptions;
+		if (opts == null) {
+			synchronized (this) {
+				opts = xmlOptions;
+				if (opts == null) {
+					opts = new XmlOptions();
+					final Map<String, String> ns = new HashMap<String, String>();
+					ns.put("", "http://maven.apache.org/POM/4.0.0");
+					opts.setLoadSubstituteNamespaces(ns);
+					xmlOptions = opts;
+				}
+			}
+		}
+		return opts;
 	}
 
+	/**
+	 * The plugins used in the build and <code>pluginManagement</code>
+	 * sections of the project and all its profiles. The parent is not
+	 * resolved.
+	 */
 	public List<UsedPlugin> readUsedPluginsFromProject(final Model project,
 			final File pomFile) {
-		final List<UsedPlugin> plugins = new LinkedList<UsedPlugin>();
+		return readProjectInfo(project, pomFile, ProjectResolver.NONE).getPlugins();
+	}
 
-		final LocalArtifact artifact = readLocalArtifactFromProject(project, pomFile);
+	/**
+	 * The plugins used in the build and <code>pluginManagement</code>
+	 * sections of the project, followed by those of all profiles.
+	 *
+	 * @param properties
+	 *            Map(name:property) of the resolved properties of the project.
+	 *            Properties declared in a profile are added for the plugins of
+	 *            that profile.
+	 */
+	public List<UsedPlugin> readUsedPlugins(final LocalArtifact artifact, final Model project,
+			final Map<String, PropertyDefinition> properties) {
+		final List<UsedPlugin> plugins = new LinkedList<UsedPlugin>();
+		final VariableExpander<String> vars = createProjectVariables(artifact, properties);
+		for (final boolean managed : new boolean[] { false, true }) {
+			for (final Plugin plugin : getPluginArray(project, Optional.<String> none(), managed)) {
+				plugins.add(createUsedPlugin(artifact, vars, properties, Optional.<String> none(), managed,
+						plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion()));
+			}
+		}
+		for (final Profile profile : getProfiles(project, Arrays.asList("*"))) {
+			final BuildBase build = profile.getBuild();
+			if (build == null) {
+				continue;
+			}
+			final Optional<String> profileId = Optional.some(profile.getId());
+			final Map<String, PropertyDefinition> profileProperties = resolveProperties(projectVariables(artifact),
+					readProperties(profile.getProperties()), properties, artifact.getLocation(), profileId);
+			final VariableExpander<String> profileVars = createProjectVariables(artifact, profileProperties);
+			for (final boolean managed : new boolean[] { false, true }) {
+				for (final Plugin plugin : getPluginArray(build, managed)) {
+					plugins.add(createUsedPlugin(artifact, profileVars, profileProperties, profileId, managed,
+							plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion()));
+				}
+			}
+		}
+		return plugins;
+	}
 
-		final VariableExpander<String> vars = new VariableExpander<String>();
-		vars.addVar("project.groupId", artifact.getGroup());
-		vars.addVar("project.artifactId", artifact.getArtifact());
-		vars.addVar("project.version", artifact.getVersion());
-
-		final Build build = project.getBuild();
-		if (build != null) {
-			for (final Plugin plugin : build.getPlugins().getPluginArray()) {
-				String pGroup = plugin.getGroupId();
-				pGroup = pGroup != null ? vars.expand(pGroup.trim()) : null;
-				final String pArtifact = vars.expand(plugin.getArtifactId().trim());
-				String pVersion = plugin.getVersion();
-				pVersion = pVersion != null ? vars.expand(pVersion) : null;
-
-				plugins.add(new UsedPlugin(pGroup, pArtifact, pVersion,
-						artifact));
+	/**
+	 * The plugins of the <code>plugins</code> or
+	 * <code>pluginManagement</code> section of the build of the project or
+	 * the given profile. Missing sections are treated as empty.
+	 */
+	public Plugin[] getPluginArray(final Model project, final Optional<String> profile, final boolean managed) {
+		if (!profile.isDefined()) {
+			final Build build = project.getBuild();
+			if (build == null) {
+				return new Plugin[0];
+			}
+			if (managed) {
+				return getPluginArray(build.getPluginManagement());
 			}
+			return build.getPlugins() != null ? build.getPlugins().getPluginArray() : new Plugin[0];
 		}
+		if (project.getProfiles() != null) {
+			for (final Profile p : project.getProfiles().getProfileArray()) {
+				final String id = p.getId() != null ? p.getId().trim() : null;
+				if ((profile.get() == null ? id == null : profile.get().equals(id)) && p.getBuild() != null) {
+					return getPluginArray(p.getBuild(), managed);
+				}
+			}
+		}
+		return new Plugin[0];
+	}
 
-		return plugins;
+	protected Plugin[] getPluginArray(final BuildBase build, final boolean managed) {
+		if (managed) {
+			return getPluginArray(build.getPluginManagement());
+		}
+		return build.getPlugins() != null ? build.getPlugins().getPluginArray() : new Plugin[0];
+	}
+
+	protected Plugin[] getPluginArray(final PluginManagement pluginManagement) {
+		return pluginManagement != null && pluginManagement.getPlugins() != null
+				? pluginManagement.getPlugins().getPluginArray() : new Plugin[0];
 	}
 
 	public LocalArtifact readLocalArtifactFromProject(final Model project,
 			final File pomFile) {
-		final VariableExpander<String> vars = new VariableExpander<String>();
+		final Parent parent = project.getParent();
+		return createLocalArtifact(project.getGroupId(), project.getArtifactId(), project.getVersion(), project.getPackaging(),
+				parent != null, parent != null ? parent.getGroupId() : null, parent != null ? parent.getArtifactId() : null,
+				parent != null ? parent.getVersion() : null, pomFile);
+	}
 
-		String groupId = project.getGroupId();
-		String artifactId = project.getArtifactId();
-		String version = project.getVersion();
-		String packaging = project.getPackaging();
-		packaging = packaging != null ? packaging : "jar";
+	/**
+	 * Create the artifact of a project from the raw values found in the
+	 * project file. This is used by all project readers, so that they
+	 * produce the same result.
+	 */
+	public LocalArtifact createLocalArtifact(final String groupId, final String artifactId, final String version,
+			final String packaging, final boolean hasParent, final String parentGroupId, final String parentArtifactId,
+			final String parentVersion, final File pomFile) {
+		return createLocalArtifact(groupId, artifactId, version, packaging, hasParent, parentGroupId, parentArtifactId,
+				parentVersion, Collections.<String, PropertyDefinition> emptyMap(), pomFile);
+	}
 
-		final Parent parent = project.getParent();
-		if (parent != null) {
-			log
-					.warn("Maven projects with parents currently not fully supported!. Found one at: "
-							+ pomFile);
+	/**
+	 * Create the artifact of a project from the raw values found in the
+	 * project file. Variables not referring to the parent are looked up in
+	 * <code>properties</code>.
+	 */
+	public LocalArtifact createLocalArtifact(String groupId, String artifactId, String version, String packaging,
+			final boolean hasParent, final String parentGroupId, final String parentArtifactId, final String parentVersion,
+			final Map<String, PropertyDefinition> properties, final File pomFile) {
+		final VariableExpander<String> vars = new VariableExpander<String>();
 
-			vars.addVar("parent.groupId", parent.getGroupId());
-			vars.addVar("project.parent.groupId", parent.getGroupId());
-			vars.addVar("parent.artifactId", parent.getArtifactId());
-			vars.addVar("project.parent.artifactId", parent.getArtifactId());
-			vars.addVar("parent.version", parent.getVersion());
-			vars.addVar("project.parent.version", parent.getVersion());
+		packaging = packaging != null ? packaging : "jar";
 
-			groupId = groupId != null ? groupId : parent.getGroupId();
-			artifactId = artifactId != null ? artifactId : parent
-					.getArtifactId();
-			version = version != null ? version : parent.getVersion();
+		if (hasParent) {
+			vars.addVar("parent.groupId", parentGroupId);
+			vars.addVar("project.parent.groupId", parentGroupId);
+			vars.addVar("parent.artifactId", parentArtifactId);
+			vars.addVar("project.parent.artifactId", parentArtifactId);
+			vars.addVar("parent.version", parentVersion);
+			vars.addVar("project.parent.version", parentVersion);
+
+			groupId = groupId != null ? groupId : parentGroupId;
+			artifactId = artifactId != null ? artifactId : parentArtifactId;
+			version = version != null ? version : parentVersion;
+		}
+		for (final PropertyDefinition property : properties.values()) {
+			vars.addVar(property.getName(), property.getValue());
 		}
 
 		return new LocalArtifact(vars.expand(groupId.trim()), vars
@@ -113,6 +218,164 @@ public class MavenXmlSupport {
 				packaging != null ? packaging.trim() : null, pomFile);
 	}
 
+	/**
+	 * The variables available in the dependency and plugin declarations of
+	 * the given project.
+	 */
+	public VariableExpander<String> createProjectVariables(final LocalArtifact artifact) {
+		return createProjectVariables(artifact, Collections.<String, PropertyDefinition> emptyMap());
+	}
+
+	/**
+	 * The variables available in the dependency and plugin declarations of
+	 * the given project. The built-in <code>project.*</code> variables take
+	 * precedence over the given properties.
+	 */
+	public VariableExpander<String> createProjectVariables(final LocalArtifact artifact,
+			final Map<String, PropertyDefinition> properties) {
+		final VariableExpander<String> vars = new VariableExpander<String>();
+		for (final Entry<String, String> builtin : projectVariables(artifact).entrySet()) {
+			vars.addVar(builtin.getKey(), builtin.getValue());
+		}
+		for (final PropertyDefinition property : properties.values()) {
+			vars.addVar(property.getName(), property.getValue());
+		}
+		return vars;
+	}
+
+	/**
+	 * Map(name:value) of the built-in variables of the given project.
+	 */
+	public Map<String, String> projectVariables(final LocalArtifact artifact) {
+		final Map<String, String> vars = new LinkedHashMap<String, String>();
+		vars.put("project.groupId", artifact.getGroup());
+		vars.put("project.artifactId", artifact.getArtifact());
+		vars.put("project.version", artifact.getVersion());
+		return vars;
+	}
+
+	/**
+	 * Resolve the properties declared in a project file or one of its
+	 * profiles. Properties may refer to other properties, recursively.
+	 * References, which can not be resolved (including cyclic ones), are kept
+	 * as they are.
+	 *
+	 * @param builtins
+	 *            Map(name:value) of variables, which take precedence over all
+	 *            properties.
+	 * @param declared
+	 *            Map(name:raw-value) of the declared properties.
+	 * @param available
+	 *            Map(name:property) of the already resolved properties, which
+	 *            are overridden by the declared properties, e.g. the inherited
+	 *            ones.
+	 * @return Map(name:property) of the available and the declared
+	 *         properties.
+	 */
+	public Map<String, PropertyDefinition> resolveProperties(final Map<String, String> builtins,
+			final Map<String, String> declared, final Map<String, PropertyDefinition> available, final File location,
+			final Optional<String> profile) {
+		final Map<String, PropertyDefinition> result = new LinkedHashMap<String, PropertyDefinition>(available);
+		if (declared.isEmpty()) {
+			return result;
+		}
+		final Map<String, String> resolved = new HashMap<String, String>();
+		for (final String name : declared.keySet()) {
+			final String value = resolveProperty(name, builtins, declared, available, resolved, new HashSet<String>());
+			result.put(name, new PropertyDefinition(name, value, location, profile));
+		}
+		return result;
+	}
+
+	/**
+	 * The properties to expand the coordinates of the project itself. The
+	 * built-in <code>project.*</code> variables are not available, as they
+	 * are not known yet.
+	 */
+	public Map<String, PropertyDefinition> coordinateProperties(final Map<String, String> declared,
+			final Map<String, PropertyDefinition> inherited, final File pomFile, final String... coordinates) {
+		for (final String coordinate : coordinates) {
+			if (coordinate != null && coordinate.indexOf('$') >= 0) {
+				return resolveProperties(Collections.<String, String> emptyMap(), declared, inherited, pomFile,
+						Optional.<String> none());
+			}
+		}
+		return inherited;
+	}
+
+	private String resolveProperty(final String name, final Map<String, String> builtins, final Map<String, String> declared,
+			final Map<String, PropertyDefinition> available, final Map<String, String> resolved, final Set<String> resolving) {
+		String value = resolved.get(name);
+		if (value != null) {
+			return value;
+		}
+		final String raw = declared.get(name).trim();
+		if (raw.indexOf('$') < 0) {
+			value = raw;
+		} else {
+			resolving.add(name);
+			final VariableExpander.Template template = VariableExpander.compile(raw);
+			final Map<String, String> vars = new HashMap<String, String>();
+			for (final String var : template.getNames()) {
+				if (builtins.containsKey(var)) {
+					vars.put(var, builtins.get(var));
+				} else if (declared.containsKey(var)) {
+					if (resolving.contains(var)) {
+						log.warn("Cyclic reference to property ${" + var + "} in property " + name);
+					} else {
+						vars.put(var, resolveProperty(var, builtins, declared, available, resolved, resolving));
+					}
+				} else if (available.containsKey(var)) {
+					vars.put(var, available.get(var).getValue());
+				}
+			}
+			resolving.remove(name);
+			value = template.expand(vars);
+		}
+		resolved.put(name, value);
+		return value;
+	}
+
+	/**
+	 * Create a used plugin from the raw values found in the project file.
+	 * Plugins without groupId get the {@link UsedPlugin#DEFAULT_GROUP_ID},
+	 * plugins without version an empty version.
+	 */
+	public UsedPlugin createUsedPlugin(final LocalArtifact artifact, final VariableExpander<String> vars,
+			final Map<String, PropertyDefinition> properties, final Optional<String> profile, final boolean managed,
+			final String rawGroupId, final String rawArtifactId, final String rawVersion) {
+		final String groupId = rawGroupId != null && !rawGroupId.trim().isEmpty() ? rawGroupId.trim()
+				: UsedPlugin.DEFAULT_GROUP_ID;
+		final String artifactId = rawArtifactId != null ? rawArtifactId.trim() : "";
+		final String version = rawVersion != null ? rawVersion.trim() : "";
+
+		final List<String> problems = new LinkedList<String>();
+		if (groupId.contains("$")) {
+			problems.add("Variable used in groupId (" + groupId + ")");
+		}
+		if (artifactId.contains("$")) {
+			problems.add("Variable used in artifactId (" + artifactId + ")");
+		}
+		PropertyDefinition versionProperty = null;
+		if (version.contains("$")) {
+			versionProperty = propertyReference(version, artifact, properties);
+			if (versionProperty == null) {
+				problems.add("Variable used in version (" + version + ")");
+			}
+		}
+
+		final UsedPlugin plugin = new UsedPlugin(new Artifact(vars.expand(groupId), vars.expand(artifactId),
+				vars.expand(version), "maven-plugin"), artifact, profile, managed);
+		if (!version.equals(plugin.getPluginArtifact().getVersion())) {
+			plugin.setDeclaredVersion(version);
+		}
+		plugin.setVersionProperty(versionProperty);
+		for (final String problem : problems) {
+			plugin.addChangeProtectBecause(problem);
+		}
+		return plugin;
+	}
+
 	/**
 	 * Map(dependency-key:list-of-dependencies).
 	 */
@@ -154,10 +417,84 @@ public class MavenXmlSupport {
 
 		final Map<String, List<Dependency>> depsAndNeeders = new LinkedHashMap<String, List<Dependency>>();
 
-		final VariableExpander<String> vars = new VariableExpander<String>();
-		vars.addVar("project.groupId", artifact.getGroup());
-		vars.addVar("project.artifactId", artifact.getArtifact());
-		vars.addVar("project.version", artifact.getVersion());
+		for (final Dependency dependency : readDirectDependencyList(artifact, project, profiles)) {
+			final String key = dependency.getDependencyArtifact().getGroup() + ":"
+					+ dependency.getDependencyArtifact().getArtifact();
+
+			List<Dependency> dependants;
+			if (depsAndNeeders.containsKey(key)) {
+				dependants = depsAndNeeders.get(key);
+			} else {
+				dependants = new LinkedList<Dependency>();
+				depsAndNeeders.put(key, dependants);
+			}
+			dependants.add(dependency);
+		}
+
+		return depsAndNeeders;
+	}
+
+	/**
+	 * The direct dependencies in declaration order. Dependencies of the
+	 * project come first, followed by the dependencies of the activated
+	 * profiles.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<Dependency> readDirectDependencyList(final LocalArtifact artifact, final Model project,
+			final List<String> profiles) {
+		return readDirectDependencyList(artifact, project, profiles, resolveProperties(projectVariables(artifact),
+				readProperties(project.getProperties()), Collections.<String, PropertyDefinition> emptyMap(),
+				artifact.getLocation(), Optional.<String> none()));
+	}
+
+	/**
+	 * The direct dependencies in declaration order. Dependencies of the
+	 * project come first, followed by the dependencies of the activated
+	 * profiles.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 * @param properties
+	 *            Map(name:property) of the resolved properties of the project.
+	 *            Properties declared in a profile are added for the
+	 *            dependencies of that profile.
+	 */
+	public List<Dependency> readDirectDependencyList(final LocalArtifact artifact, final Model project,
+			final List<String> profiles, final Map<String, PropertyDefinition> properties) {
+		return readDirectDependencyList(artifact, project, profiles, properties, DependencyManagement.EMPTY);
+	}
+
+	/**
+	 * The direct dependencies in declaration order. Dependencies of the
+	 * project come first, followed by the dependencies of the activated
+	 * profiles.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 * @param properties
+	 *            Map(name:property) of the resolved properties of the project.
+	 *            Properties declared in a profile are added for the
+	 *            dependencies of that profile.
+	 * @param management
+	 *            The effective dependency management, used for dependencies
+	 *            without version.
+	 */
+	public List<Dependency> readDirectDependencyList(final LocalArtifact artifact, final Model project,
+			final List<String> profiles, final Map<String, PropertyDefinition> properties,
+			final DependencyManagement management) {
+
+		final List<Dependency> result = new LinkedList<Dependency>();
+
+		final Map<String, Map<String, PropertyDefinition>> profileProperties = new HashMap<String, Map<String, PropertyDefinition>>();
+		for (final Profile profile : getProfiles(project, profiles)) {
+			profileProperties.put(profile.getId(), resolveProperties(projectVariables(artifact),
+					readProperties(profile.getProperties()), properties, artifact.getLocation(), Optional.some(profile.getId())));
+		}
 
 		final Dependencies dependencies = project.getDependencies();
 
@@ -184,83 +521,279 @@ public class MavenXmlSupport {
 			final Optional<String> profile = depTuple.a();
 			final org.apache.maven.pom.x400.Dependency dep = depTuple.b();
 
-			final String groupId = dep.getGroupId().trim();
-			final String artifactId = dep.getArtifactId().trim();
-			// FIXME: also consult dependencyManagement
-			final String version = Optional.lift(dep.getVersion()).map(d -> d.trim()).getOrElse(() -> "");
-			String classifier = dep.getClassifier();
-			if (classifier != null) {
-				classifier = classifier.trim();
-			}
-			String scope = dep.getScope();
-			if (scope == null) {
-				scope = "compile";
-			} else {
-				scope = scope.trim();
-			}
-			String systemPath = dep.getSystemPath();
-			if (systemPath != null) {
-				systemPath = systemPath.trim();
-			}
+			final List<String> exclusions = readExclusions(dep);
 
-			final List<String> problems = new LinkedList<String>();
+			final Map<String, PropertyDefinition> depProperties = profile.isDefined() ? profileProperties.get(profile.get())
+					: properties;
+			final Dependency dependency = createDependency(artifact, createProjectVariables(artifact, depProperties),
+					depProperties, management, profile, dep.getGroupId(), dep.getArtifactId(), dep.getVersion(),
+					dep.getClassifier(), dep.getScope(), dep.getSystemPath(), exclusions);
 
-			if (groupId.contains("$")) {
-				log.debug("Found variable in groupId: " + groupId
-						+ " -- project " + artifact.getLocation());
-				problems.add("Variable used in groupId (" + groupId + ")");
-			}
-			if (artifactId.contains("$")) {
-				log.debug("Found variable in artifactId: " + artifactId
-						+ " -- project " + artifact.getLocation());
-				problems.add("Variable used in artifactId (" + artifactId
-						+ ")");
+			result.add(dependency);
+		}
+
+		return result;
+	}
+
+	/**
+	 * List of <code>groupId:artifactId</code> of the exclusions of the
+	 * dependency.
+	 */
+	protected List<String> readExclusions(final org.apache.maven.pom.x400.Dependency dep) {
+		final List<String> exclusions = new LinkedList<String>();
+		if (dep.getExclusions() != null
+				&& dep.getExclusions().getExclusionArray() != null) {
+			for (final Exclusion e : dep.getExclusions().getExclusionArray()) {
+				exclusions.add(e.getGroupId().trim() + ":"
+						+ e.getArtifactId().trim());
 			}
-			if (version.contains("$")) {
+		}
+		return exclusions;
+	}
+
+	/**
+	 * Create a dependency of project <code>artifact</code> from the raw values
+	 * found in the project file. This is used by all project readers, so that
+	 * they produce the same result.
+	 *
+	 * If the version is a single reference to a property (e.g.
+	 * <code>${junit.version}</code>), the dependency remembers the property,
+	 * so that changing the version changes the property. All other variables
+	 * protect the dependency from being changed.
+	 *
+	 * A dependency without version takes the version of its entry in
+	 * <code>management</code>, changing the version changes that entry.
+	 *
+	 * @param properties
+	 *            Map(name:property) of the resolved properties visible to the
+	 *            dependency.
+	 * @param management
+	 *            The effective dependency management of the project.
+	 * @param exclusions
+	 *            List of <code>groupId:artifactId</code>.
+	 */
+	public Dependency createDependency(final LocalArtifact artifact, final VariableExpander<String> vars,
+			final Map<String, PropertyDefinition> properties, final DependencyManagement management,
+			final Optional<String> profile, String groupId, String artifactId, final String rawVersion, String classifier,
+			String scope, String systemPath, final List<String> exclusions) {
+
+		groupId = groupId.trim();
+		artifactId = artifactId.trim();
+		final String version = Optional.lift(rawVersion).map(d -> d.trim()).getOrElse(() -> "");
+		if (classifier != null) {
+			classifier = classifier.trim();
+		}
+		if (scope == null) {
+			scope = "compile";
+		} else {
+			scope = scope.trim();
+		}
+		if (systemPath != null) {
+			systemPath = systemPath.trim();
+		}
+
+		final List<String> problems = new LinkedList<String>();
+
+		if (groupId.contains("$")) {
+			log.debug("Found variable in groupId: " + groupId
+					+ " -- project " + artifact.getLocation());
+			problems.add("Variable used in groupId (" + groupId + ")");
+		}
+		if (artifactId.contains("$")) {
+			log.debug("Found variable in artifactId: " + artifactId
+					+ " -- project " + artifact.getLocation());
+			problems.add("Variable used in artifactId (" + artifactId
+					+ ")");
+		}
+		PropertyDefinition versionProperty = null;
+		if (version.contains("$")) {
+			versionProperty = propertyReference(version, artifact, properties);
+			if (versionProperty == null) {
 				log.debug("Found variable in version: " + version
 						+ " -- project " + artifact.getLocation());
 				problems.add("Variable used in version (" + version + ")");
 			}
+		}
 
-			final List<String> exclusions = new LinkedList<String>();
+		final Dependency managedBy = version.isEmpty()
+				? management.find(vars.expand(groupId), vars.expand(artifactId), classifier) : null;
 
-			if (dep.getExclusions() != null
-					&& dep.getExclusions().getExclusionArray() != null) {
-				for (final Exclusion e : dep.getExclusions().getExclusionArray()) {
-					exclusions.add(e.getGroupId().trim() + ":"
-							+ e.getArtifactId().trim());
-				}
-			}
+		final Artifact depArtifact = new Artifact(vars.expand(groupId), vars.expand(artifactId),
+				managedBy != null ? managedBy.getDependencyArtifact().getVersion() : vars.expand(version), "jar");
+		final Dependency dependency = new Dependency(depArtifact, artifact, profile,
+				classifier, scope, systemPath, exclusions);
+
+		if (!version.equals(depArtifact.getVersion())) {
+			dependency.setDeclaredVersion(version);
+		}
+		dependency.setVersionProperty(versionProperty);
+		dependency.setManagedBy(managedBy);
+		for (final String problem : problems) {
+			dependency.addChangeProtectBecause(problem);
+		}
+		if (managedBy != null && !managedBy.isChangeAllowed()) {
+			dependency.addChangeProtectBecause(managedBy.getChangeProtectBecause());
+		}
+
+		return dependency;
+	}
 
-			final Artifact depArtifact = new Artifact(vars.expand(groupId), vars
-					.expand(artifactId), vars.expand(version), "jar");
-			final Dependency dependency = new Dependency(depArtifact, artifact, profile,
-					classifier, scope, systemPath, exclusions);
+	/**
+	 * The property, if <code>value</code> is exactly a reference to a
+	 * (resolvable) property, but not to a built-in variable.
+	 */
+	protected PropertyDefinition propertyReference(final String value, final LocalArtifact artifact,
+			final Map<String, PropertyDefinition> properties) {
+		if (!value.startsWith("${") || !value.endsWith("}") || value.indexOf('$', 1) >= 0) {
+			return null;
+		}
+		final String name = value.substring(2, value.length() - 1);
+		if (projectVariables(artifact).containsKey(name)) {
+			return null;
+		}
+		final PropertyDefinition property = properties.get(name);
+		return property != null && property.getValue().indexOf('$') < 0 ? property : null;
+	}
 
-			for (final String problem : problems) {
-				dependency.addChangeProtectBecause(problem);
+	/**
+	 * Map(name:raw-value) of the <code>properties</code> element in
+	 * declaration order.
+	 */
+	public Map<String, String> readProperties(final XmlObject properties) {
+		final Map<String, String> result = new LinkedHashMap<String, String>();
+		if (properties == null) {
+			return result;
+		}
+		final XmlCursor cursor = properties.newCursor();
+		try {
+			if (cursor.toFirstChild()) {
+				do {
+					result.put(cursor.getName().getLocalPart(), cursor.getTextValue());
+				} while (cursor.toNextSibling());
 			}
+		} finally {
+			cursor.dispose();
+		}
+		return result;
+	}
 
-			final String key = depArtifact.getGroup() + ":"
-					+ depArtifact.getArtifact();
+	/**
+	 * Find the imported projects (BOMs), i.e. the entries with scope
+	 * <code>import</code> of the <code>dependencyManagement</code> section.
+	 */
+	public List<ProjectInfo> resolveImports(final File pomFile, final List<Dependency> managed, final ProjectResolver resolver) {
+		final List<ProjectInfo> imports = new LinkedList<ProjectInfo>();
+		for (final Dependency entry : managed) {
+			if ("import".equals(entry.getScope())) {
+				final Artifact bom = entry.getDependencyArtifact();
+				final ProjectInfo imported = resolver.resolveImport(pomFile, bom.getGroup(), bom.getArtifact(), bom.getVersion());
+				if (imported != null) {
+					imports.add(imported);
+				} else {
+					log.debug("Could not find imported project {} of project: {}", bom, pomFile);
+				}
+			}
+		}
+		return imports;
+	}
 
-			List<Dependency> dependants;
-			if (depsAndNeeders.containsKey(key)) {
-				dependants = depsAndNeeders.get(key);
-			} else {
-				dependants = new LinkedList<Dependency>();
-				depsAndNeeders.put(key, dependants);
+	/**
+	 * Create the effective dependency management of a project.
+	 *
+	 * @param managed
+	 *            The entries of the <code>dependencyManagement</code> section
+	 *            of the project. Imports are ignored.
+	 * @param imports
+	 *            The imported projects.
+	 * @param parent
+	 *            The parent project or <code>null</code>.
+	 */
+	public DependencyManagement createDependencyManagement(final List<Dependency> managed, final List<ProjectInfo> imports,
+			final ProjectInfo parent, final ProjectResolver resolver) {
+		final DependencyManagement parentManagement = parent != null ? resolver.getDependencyManagement(parent) : null;
+		if (managed.isEmpty() && imports.isEmpty() && (parentManagement == null || parentManagement.isEmpty())) {
+			return DependencyManagement.EMPTY;
+		}
+		final List<Dependency> entries = new ArrayList<Dependency>(managed.size());
+		for (final Dependency entry : managed) {
+			if (!"import".equals(entry.getScope())) {
+				entries.add(entry);
 			}
-			dependants.add(dependency);
 		}
+		final List<DependencyManagement> importManagements = new ArrayList<DependencyManagement>(imports.size());
+		for (final ProjectInfo imported : imports) {
+			importManagements.add(resolver.getDependencyManagement(imported));
+		}
+		return new DependencyManagement(entries, importManagements, parentManagement);
+	}
 
-		if (project.getParent() != null) {
-			log
-					.warn("Maven projects with parents currently not fully supported!. Found one at: "
-							+ artifact.getLocation());
+	/**
+	 * Read the project artifact, all direct dependencies (including those of
+	 * all profiles), the modules of all profiles and the resolved properties.
+	 * The properties of the parent are inherited, if <code>resolver</code>
+	 * finds it.
+	 */
+	public ProjectInfo readProjectInfo(final Model project, final File pomFile, final ProjectResolver resolver) {
+		final Parent parent = project.getParent();
+		ProjectInfo parentInfo = null;
+		if (parent != null) {
+			parentInfo = resolver.resolveParent(pomFile, parent.getGroupId(), parent.getArtifactId(), parent.getVersion(),
+					parent.isSetRelativePath() ? parent.getRelativePath() : null);
 		}
+		final Map<String, PropertyDefinition> inherited = parentInfo != null ? parentInfo.getProperties()
+				: Collections.<String, PropertyDefinition> emptyMap();
+		final Map<String, String> declared = readProperties(project.getProperties());
+
+		final LocalArtifact artifact = createLocalArtifact(project.getGroupId(), project.getArtifactId(),
+				project.getVersion(), project.getPackaging(), parent != null, parent != null ? parent.getGroupId() : null,
+				parent != null ? parent.getArtifactId() : null, parent != null ? parent.getVersion() : null,
+				coordinateProperties(declared, inherited, pomFile, project.getGroupId(), project.getArtifactId(),
+						project.getVersion()),
+				pomFile);
+		final Map<String, PropertyDefinition> properties = resolveProperties(projectVariables(artifact), declared,
+				inherited, pomFile, Optional.<String> none());
+		final VariableExpander<String> vars = createProjectVariables(artifact, properties);
+
+		final List<Dependency> managed = new LinkedList<Dependency>();
+		final org.apache.maven.pom.x400.DependencyManagement xManagement = project.getDependencyManagement();
+		if (xManagement != null && xManagement.getDependencies() != null) {
+			for (final org.apache.maven.pom.x400.Dependency dep : xManagement.getDependencies().getDependencyArray()) {
+				final Dependency entry = createDependency(artifact, vars, properties, DependencyManagement.EMPTY,
+						Optional.<String> none(), dep.getGroupId(), dep.getArtifactId(), dep.getVersion(), dep.getClassifier(),
+						dep.getScope(), dep.getSystemPath(), readExclusions(dep));
+				entry.setManaged(true);
+				managed.add(entry);
+			}
+		}
+		final List<ProjectInfo> imports = resolveImports(pomFile, managed, resolver);
+		final DependencyManagement management = createDependencyManagement(managed, imports, parentInfo, resolver);
 
-		return depsAndNeeders;
+		final List<File> importLocations = new ArrayList<File>(imports.size());
+		for (final ProjectInfo imported : imports) {
+			importLocations.add(imported.getArtifact().getLocation());
+		}
+
+		return new ProjectInfo(artifact,
+				readDirectDependencyList(artifact, project, Arrays.asList("*"), properties, management),
+				readProfileModules(project), properties, parentInfo != null ? parentInfo.getArtifact().getLocation() : null,
+				managed, importLocations, readUsedPlugins(artifact, project, properties));
+	}
+
+	/**
+	 * Map(profile-id:list-of-modules) of all profiles, in declaration order.
+	 */
+	public Map<String, List<String>> readProfileModules(final Model project) {
+		final Map<String, List<String>> modules = new LinkedHashMap<String, List<String>>();
+		final Profiles xProfiles = project.getProfiles();
+		if (xProfiles != null) {
+			for (final Profile profile : xProfiles.getProfileArray()) {
+				final org.apache.maven.pom.x400.Profile.Modules ms = profile.getModules();
+				if (ms != null) {
+					modules.put(profile.getId(), new ArrayList<String>(Arrays.asList(ms.getModuleArray())));
+				}
+			}
+		}
+		return modules;
 	}
 
 }
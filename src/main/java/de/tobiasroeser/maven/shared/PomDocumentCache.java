@@ -0,0 +1,148 @@
+package de.tobiasroeser.maven.shared;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.pom.x400.ProjectDocument;
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of parsed Maven project documents.
+ *
+ * Documents are keyed by their canonical file path and are only reused as long
+ * as size and last modification time of the file are unchanged. The cache
+ * holds at most <code>capacity</code> documents and evicts the least recently
+ * used one first.
+ *
+ * Callers that modify a returned document must either save it and report that
+ * with {@link #saved(File, ProjectDocument)} or drop it with
+ * {@link #invalidate(File)}.
+ *
+ * This class is thread-safe.
+ */
+public class PomDocumentCache {
+
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private final Logger log = LoggerFactory.getLogger(PomDocumentCache.class);
+
+	private final Map<String, CachedDocument> documents;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public PomDocumentCache(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Capacity must not be negative");
+		}
+		this.documents = new LinkedHashMap<String, CachedDocument>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CachedDocument> eldest) {
+				if (size() > capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Parse the given project file or return the already parsed document.
+	 */
+	public ProjectDocument parse(final File pomFile) throws XmlException, IOException {
+		final File file = pomFile.getCanonicalFile();
+		final String key = file.getPath();
+		final long size = file.length();
+		final long lastModified = file.lastModified();
+
+		synchronized (documents) {
+			final CachedDocument cached = documents.get(key);
+			if (cached != null) {
+				if (cached.size == size && cached.lastModified == lastModified) {
+					hits.incrementAndGet();
+					return cached.document;
+				}
+				log.debug("Project file changed on disk: {}", file);
+				documents.remove(key);
+			}
+		}
+
+		misses.incrementAndGet();
+		final ProjectDocument document = ProjectDocument.Factory.parse(file, MavenXmlSupport.instance.createXmlOptions());
+
+		synchronized (documents) {
+			documents.put(key, new CachedDocument(document, size, lastModified));
+		}
+		return document;
+	}
+
+	/**
+	 * Notify the cache, that the given document was written to
+	 * <code>pomFile</code>.
+	 */
+	public void saved(final File pomFile, final ProjectDocument document) throws IOException {
+		final File file = pomFile.getCanonicalFile();
+		synchronized (documents) {
+			documents.put(file.getPath(), new CachedDocument(document, file.length(), file.lastModified()));
+		}
+	}
+
+	/**
+	 * Drop the cached document of <code>pomFile</code>, if any.
+	 */
+	public void invalidate(final File pomFile) {
+		try {
+			final File file = pomFile.getCanonicalFile();
+			synchronized (documents) {
+				documents.remove(file.getPath());
+			}
+		} catch (final IOException e) {
+			log.debug("Could not invalidate cached project file: " + pomFile, e);
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public int size() {
+		synchronized (documents) {
+			return documents.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(size=" + size() + ",hits=" + getHits() + ",misses=" + getMisses() + ",evictions="
+				+ getEvictions() + ")";
+	}
+
+	private static class CachedDocument {
+		final ProjectDocument document;
+		final long size;
+		final long lastModified;
+
+		CachedDocument(final ProjectDocument document, final long size, final long lastModified) {
+			this.document = document;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+}
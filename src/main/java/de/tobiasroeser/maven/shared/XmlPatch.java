@@ -0,0 +1,547 @@
+package de.tobiasroeser.maven.shared;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Modifies the text content of single elements of an XML file without
+ * re-serializing the document.
+ *
+ * The file is scanned once to locate the byte ranges of all elements. When
+ * written, only the content of changed elements is replaced, all other bytes
+ * are copied through unchanged.
+ *
+ * Only simple text elements (no child elements, comments or CDATA sections)
+ * can be changed. Files with an internal DTD subset or an encoding other than
+ * UTF-8, US-ASCII or ISO-8859-1 are not supported.
+ */
+public class XmlPatch {
+
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+	private final File file;
+	private final byte[] bytes;
+	private final Charset charset;
+	private final Element root;
+	private final List<Element> changed = new LinkedList<Element>();
+
+	/**
+	 * Thrown, if a file or a requested change is not supported.
+	 */
+	public static class UnsupportedPatchException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		public UnsupportedPatchException(final String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Scan the given XML file.
+	 */
+	public static XmlPatch parse(final File file) throws IOException, UnsupportedPatchException {
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel channel = in.getChannel();
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new UnsupportedPatchException("File too large: " + file);
+			}
+			final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// read fully
+			}
+			return new XmlPatch(file, buffer.array());
+		} finally {
+			in.close();
+		}
+	}
+
+	protected XmlPatch(final File file, final byte[] bytes) throws UnsupportedPatchException {
+		this.file = file;
+		this.bytes = bytes;
+		this.charset = detectCharset();
+		this.root = scan();
+	}
+
+	/**
+	 * The document element.
+	 */
+	public Element getRoot() {
+		return root;
+	}
+
+	/**
+	 * <code>true</code>, if at least one element has a changed text.
+	 */
+	public boolean isChanged() {
+		return !changed.isEmpty();
+	}
+
+	/**
+	 * The elements with a changed text, in the order they were changed.
+	 */
+	public List<Element> getChangedElements() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * The element with the given path as returned by
+	 * {@link Element#getPath()} or <code>null</code>.
+	 */
+	public Element getElement(final String path) {
+		final String[] steps = path.split("/");
+		if (steps.length < 2 || !steps[0].isEmpty()) {
+			return null;
+		}
+		Element element = null;
+		for (int i = 1; i < steps.length; ++i) {
+			String name = steps[i];
+			int index = 1;
+			final int bracket = name.indexOf('[');
+			if (bracket > 0 && name.endsWith("]")) {
+				try {
+					index = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+				} catch (final NumberFormatException e) {
+					return null;
+				}
+				name = name.substring(0, bracket);
+			}
+			if (element == null) {
+				if (index != 1 || !root.name.equals(name)) {
+					return null;
+				}
+				element = root;
+			} else {
+				final List<Element> candidates = element.getChildren(name);
+				if (index < 1 || index > candidates.size()) {
+					return null;
+				}
+				element = candidates.get(index - 1);
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * The hex encoded SHA-1 hash of the scanned file content.
+	 */
+	public String getContentHash() {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+			final StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not supported", e);
+		}
+	}
+
+	/**
+	 * Write the (changed) document to <code>target</code>. All unchanged
+	 * content is taken from the scanned bytes. The content is first written to
+	 * a temporary file in the directory of the target, which then replaces the
+	 * target and gets its permissions.
+	 */
+	public void write(final File target) throws IOException {
+		write(target, false);
+	}
+
+	/**
+	 * Write the (changed) document to <code>target</code>.
+	 *
+	 * @param requireUnchanged
+	 *            If <code>true</code>, the target is not replaced, if its
+	 *            content differs from the scanned content. It is compared
+	 *            immediately before the replacement.
+	 * @see #write(File)
+	 */
+	public void write(final File target, final boolean requireUnchanged) throws IOException {
+		final List<Element> replacements = new ArrayList<Element>(changed);
+		Collections.sort(replacements, new Comparator<Element>() {
+			@Override
+			public int compare(final Element o1, final Element o2) {
+				return o1.contentStart < o2.contentStart ? -1 : (o1.contentStart == o2.contentStart ? 0 : 1);
+			}
+		});
+
+		final File absTarget = target.getAbsoluteFile();
+		final File tmpFile = File.createTempFile(absTarget.getName() + ".", ".tmp", absTarget.getParentFile());
+		boolean moved = false;
+		try {
+			final FileOutputStream out = new FileOutputStream(tmpFile);
+			try {
+				final FileChannel outChannel = out.getChannel();
+				int pos = 0;
+				for (final Element element : replacements) {
+					writeFully(outChannel, ByteBuffer.wrap(bytes, pos, element.contentStart - pos));
+					writeFully(outChannel, ByteBuffer.wrap(escape(element.text).getBytes(charset)));
+					pos = element.contentEnd;
+				}
+				writeFully(outChannel, ByteBuffer.wrap(bytes, pos, bytes.length - pos));
+			} finally {
+				out.close();
+			}
+
+			copyPermissions(absTarget, tmpFile);
+			if (requireUnchanged && !Arrays.equals(bytes, Files.readAllBytes(absTarget.toPath()))) {
+				throw new IOException("File changed since it was scanned: " + absTarget);
+			}
+			Files.move(tmpFile.toPath(), absTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			if (!moved) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	protected void writeFully(final FileChannel out, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * Copy the POSIX permissions of <code>from</code>, if it exists and the
+	 * file system supports them. Otherwise, only make <code>to</code> readable
+	 * for all, as temporary files are only readable by their owner.
+	 */
+	protected void copyPermissions(final File from, final File to) throws IOException {
+		final Path fromPath = from.toPath();
+		if (Files.exists(fromPath) && Files.getFileStore(fromPath).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			Files.setPosixFilePermissions(to.toPath(), Files.getPosixFilePermissions(fromPath));
+		} else {
+			to.setReadable(true, false);
+		}
+	}
+
+	protected Charset detectCharset() throws UnsupportedPatchException {
+		if (startsWith(0, "<?xml")) {
+			final int end = indexOf(0, "?>");
+			if (end < 0) {
+				throw new UnsupportedPatchException("Unterminated XML declaration");
+			}
+			final Matcher matcher = ENCODING.matcher(new String(bytes, 0, end, Charset.forName("ISO-8859-1")));
+			if (matcher.find()) {
+				final String encoding = matcher.group(1).toUpperCase();
+				if (encoding.equals("UTF-8") || encoding.equals("US-ASCII") || encoding.equals("ISO-8859-1")) {
+					return Charset.forName(encoding);
+				}
+				throw new UnsupportedPatchException("Unsupported encoding: " + encoding);
+			}
+		} else if (bytes.length > 1 && (bytes[0] == (byte) 0xfe || bytes[0] == (byte) 0xff)) {
+			throw new UnsupportedPatchException("Unsupported encoding: UTF-16");
+		}
+		return Charset.forName("UTF-8");
+	}
+
+	protected Element scan() throws UnsupportedPatchException {
+		final LinkedList<Element> stack = new LinkedList<Element>();
+		Element rootElement = null;
+
+		int pos = 0;
+		if (bytes.length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb && bytes[2] == (byte) 0xbf) {
+			// UTF-8 BOM
+			pos = 3;
+		}
+
+		while (true) {
+			final int start = indexOf(pos, "<");
+			if (start < 0) {
+				break;
+			}
+
+			if (startsWith(start, "<?")) {
+				pos = skipTo(start, "?>");
+			} else if (startsWith(start, "<!--")) {
+				if (!stack.isEmpty()) {
+					stack.getFirst().simple = false;
+				}
+				pos = skipTo(start + 4, "-->");
+			} else if (startsWith(start, "<![CDATA[")) {
+				if (!stack.isEmpty()) {
+					stack.getFirst().simple = false;
+				}
+				pos = skipTo(start, "]]>");
+			} else if (startsWith(start, "<!")) {
+				final int end = skipTo(start, ">");
+				if (indexOf(start, "[") >= 0 && indexOf(start, "[") < end) {
+					throw new UnsupportedPatchException("Internal DTD subsets are not supported");
+				}
+				pos = end;
+			} else if (startsWith(start, "</")) {
+				final int end = skipTo(start, ">");
+				final String name = localName(new String(bytes, start + 2, end - start - 3, charset).trim());
+				if (stack.isEmpty() || !stack.getFirst().name.equals(name)) {
+					throw new UnsupportedPatchException("Unexpected end tag: " + name);
+				}
+				stack.removeFirst().contentEnd = start;
+				pos = end;
+			} else {
+				int end = start + 1;
+				char quote = 0;
+				while (end < bytes.length && (quote != 0 || bytes[end] != '>')) {
+					final char c = (char) bytes[end];
+					if (quote != 0) {
+						if (c == quote) {
+							quote = 0;
+						}
+					} else if (c == '"' || c == '\'') {
+						quote = c;
+					}
+					++end;
+				}
+				if (end >= bytes.length) {
+					throw new UnsupportedPatchException("Unterminated start tag");
+				}
+				final boolean empty = bytes[end - 1] == '/';
+				int nameEnd = start + 1;
+				while (nameEnd < end && !isWhitespace(bytes[nameEnd]) && bytes[nameEnd] != '/') {
+					++nameEnd;
+				}
+				final Element element = new Element(localName(new String(bytes, start + 1, nameEnd - start - 1, charset)));
+				element.contentStart = end + 1;
+				element.contentEnd = end + 1;
+				element.empty = empty;
+
+				if (stack.isEmpty()) {
+					if (rootElement != null) {
+						throw new UnsupportedPatchException("More than one document element");
+					}
+					rootElement = element;
+				} else {
+					element.parent = stack.getFirst();
+					stack.getFirst().children.add(element);
+				}
+				if (!empty) {
+					stack.addFirst(element);
+				}
+				pos = end + 1;
+			}
+		}
+
+		if (rootElement == null || !stack.isEmpty()) {
+			throw new UnsupportedPatchException("Incomplete document");
+		}
+		return rootElement;
+	}
+
+	/**
+	 * @return The position after the next occurence of <code>token</code>.
+	 */
+	protected int skipTo(final int from, final String token) throws UnsupportedPatchException {
+		final int index = indexOf(from, token);
+		if (index < 0) {
+			throw new UnsupportedPatchException("Missing '" + token + "'");
+		}
+		return index + token.length();
+	}
+
+	protected int indexOf(final int from, final String token) {
+		for (int i = from; i <= bytes.length - token.length(); ++i) {
+			if (startsWith(i, token)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	protected boolean startsWith(final int pos, final String token) {
+		if (pos + token.length() > bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < token.length(); ++i) {
+			if (bytes[pos + i] != token.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected static boolean isWhitespace(final byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	protected static String localName(final String name) {
+		final int colon = name.indexOf(':');
+		return colon < 0 ? name : name.substring(colon + 1);
+	}
+
+	protected static String escape(final String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	protected static String unescape(final String text) throws UnsupportedPatchException {
+		if (text.indexOf('&') < 0) {
+			return text;
+		}
+		final StringBuilder result = new StringBuilder(text.length());
+		int pos = 0;
+		while (pos < text.length()) {
+			final int amp = text.indexOf('&', pos);
+			if (amp < 0) {
+				result.append(text, pos, text.length());
+				break;
+			}
+			result.append(text, pos, amp);
+			final int semi = text.indexOf(';', amp);
+			if (semi < 0) {
+				throw new UnsupportedPatchException("Unterminated entity reference");
+			}
+			final String entity = text.substring(amp + 1, semi);
+			if (entity.equals("amp")) {
+				result.append('&');
+			} else if (entity.equals("lt")) {
+				result.append('<');
+			} else if (entity.equals("gt")) {
+				result.append('>');
+			} else if (entity.equals("quot")) {
+				result.append('"');
+			} else if (entity.equals("apos")) {
+				result.append('\'');
+			} else if (entity.startsWith("#x")) {
+				result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+			} else if (entity.startsWith("#")) {
+				result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+			} else {
+				throw new UnsupportedPatchException("Unsupported entity reference: " + entity);
+			}
+			pos = semi + 1;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A located element.
+	 */
+	public class Element {
+		private final String name;
+		private Element parent;
+		private final List<Element> children = new LinkedList<Element>();
+		private int contentStart;
+		private int contentEnd;
+		private boolean empty;
+		private boolean simple = true;
+		private String text;
+
+		Element(final String name) {
+			this.name = name;
+		}
+
+		/**
+		 * The name of the element without namespace prefix.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public List<Element> getChildren() {
+			return children;
+		}
+
+		/**
+		 * The first child element with the given name or <code>null</code>.
+		 */
+		public Element getChild(final String childName) {
+			for (final Element child : children) {
+				if (child.name.equals(childName)) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		public List<Element> getChildren(final String childName) {
+			final List<Element> result = new LinkedList<Element>();
+			for (final Element child : children) {
+				if (child.name.equals(childName)) {
+					result.add(child);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * The path of this element from the document element, e.g.
+		 * <code>/project/dependencies/dependency[2]/version</code>. The
+		 * position is only given for elements with siblings of the same name.
+		 */
+		public String getPath() {
+			if (parent == null) {
+				return "/" + name;
+			}
+			final List<Element> siblings = parent.getChildren(name);
+			return parent.getPath() + "/" + name + (siblings.size() > 1 ? "[" + (siblings.indexOf(this) + 1) + "]" : "");
+		}
+
+		/**
+		 * The text content of this element as scanned.
+		 */
+		public String getOriginalText() throws UnsupportedPatchException {
+			checkSimple();
+			return unescape(new String(bytes, contentStart, contentEnd - contentStart, charset));
+		}
+
+		/**
+		 * The current (maybe changed) text content of this element.
+		 */
+		public String getText() throws UnsupportedPatchException {
+			if (text == null) {
+				checkSimple();
+				text = unescape(new String(bytes, contentStart, contentEnd - contentStart, charset));
+			}
+			return text;
+		}
+
+		/**
+		 * Replace the text content of this element.
+		 */
+		public void setText(final String newText) throws UnsupportedPatchException {
+			checkSimple();
+			if (empty) {
+				throw new UnsupportedPatchException("Cannot set text of empty element: " + name);
+			}
+			if (newText.equals(getText())) {
+				return;
+			}
+			text = newText;
+			if (!changed.contains(this)) {
+				changed.add(this);
+			}
+		}
+
+		protected void checkSimple() throws UnsupportedPatchException {
+			if (!simple || !children.isEmpty()) {
+				throw new UnsupportedPatchException("Not a simple text element: " + name);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + name + "," + contentStart + "-" + contentEnd + ")";
+		}
+	}
+
+}
@@ -1,11 +1,41 @@
 package de.tobiasroeser.maven.versionupdater;
 
+import java.util.Comparator;
+
 public class Artifact {
 
+	/**
+	 * Orders artifacts by groupId, artifactId and version. Versions are
+	 * compared by their {@link Version}, e.g. <code>1.10</code> is newer than
+	 * <code>1.9</code>.
+	 */
+	public static final Comparator<Artifact> ORDER = new Comparator<Artifact>() {
+		@Override
+		public int compare(Artifact o1, Artifact o2) {
+			if (o1.gaId != o2.gaId) {
+				int comp = o1.group.compareTo(o2.group);
+				if (comp == 0) {
+					comp = o1.artifact.compareTo(o2.artifact);
+				}
+				return comp;
+			}
+			if (o1.gavId == o2.gavId) {
+				return 0;
+			}
+			final int comp = o1.getParsedVersion().compareTo(o2.getParsedVersion());
+			return comp != 0 ? comp : o1.version.compareTo(o2.version);
+		}
+	};
+
 	private final String group;
 	private final String artifact;
 	private final String version;
 	private final String packaging;
+	/** The id of groupId:artifactId in the {@link CoordinateTable}. */
+	private final int gaId;
+	/** The id of groupId:artifactId:version in the {@link CoordinateTable}. */
+	private final int gavId;
+	private final int hash;
 
 	public Artifact(String group, String artifact, String version,
 			String packaging) {
@@ -18,10 +48,15 @@ public class Artifact {
 		if (version == null) {
 			throw new IllegalArgumentException("Version must not be null");
 		}
-		this.group = group;
-		this.artifact = artifact;
-		this.version = version;
-		this.packaging = packaging != null ? packaging : "jar";
+		final CoordinateTable table = CoordinateTable.instance;
+		final CoordinateTable.Gav gav = table.gav(group, artifact, version);
+		this.gaId = gav.getGaId();
+		this.gavId = gav.getGavId();
+		this.group = gav.getGroup();
+		this.artifact = gav.getArtifact();
+		this.version = gav.getVersion();
+		this.packaging = packaging != null ? table.intern(packaging) : "jar";
+		this.hash = computeHashCode();
 	}
 	
 	public Artifact(Artifact copy) {
@@ -29,6 +64,9 @@ public class Artifact {
 		this.artifact = copy.getArtifact();
 		this.version = copy.getVersion();
 		this.packaging = copy.getPackaging();
+		this.gaId = copy.getGaId();
+		this.gavId = copy.getGavId();
+		this.hash = copy.hash;
 	}
 
 	public String getGroup() {
@@ -43,10 +81,33 @@ public class Artifact {
 		return version;
 	}
 	
+	/**
+	 * The parsed version, shared by all artifacts with the same version.
+	 */
+	public Version getParsedVersion() {
+		return CoordinateTable.instance.getParsedVersion(gavId);
+	}
+
 	public String getPackaging() {
 		return packaging;
 	}
 
+	public int getGaId() {
+		return gaId;
+	}
+
+	public int getGavId() {
+		return gavId;
+	}
+
+	/**
+	 * The key <code>groupId:artifactId</code>. The returned string is shared by
+	 * all artifacts with the same key.
+	 */
+	public String getGaKey() {
+		return CoordinateTable.instance.getGaKey(gaId);
+	}
+
 	@Override
 	public String toString() {
 		return group + ":" + artifact + ":" + version;
@@ -54,6 +115,10 @@ public class Artifact {
 
 	@Override
 	public int hashCode() {
+		return hash;
+	}
+
+	private int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result
@@ -74,30 +139,12 @@ public class Artifact {
 		if (getClass() != obj.getClass())
 			return false;
 		Artifact other = (Artifact) obj;
-		if (artifact == null) {
-			if (other.artifact != null)
-				return false;
-		} else if (!artifact.equals(other.artifact))
-			return false;
-		if (group == null) {
-			if (other.group != null)
-				return false;
-		} else if (!group.equals(other.group))
+		if (hash != other.hash || gavId != other.gavId) {
 			return false;
-		if (packaging == null) {
-			if (other.packaging != null)
-				return false;
-		} else if (!packaging.equals(other.packaging))
-			return false;
-		if (version == null) {
-			if (other.version != null)
-				return false;
-		} else if (!version.equals(other.version))
-			return false;
-		return true;
+		}
+		return packaging.equals(other.packaging);
 	}
 
-
 	public boolean equalsByProjectNameAndVersion(Artifact other) {
 		if (this == other)
 			return true;
@@ -105,22 +152,7 @@ public class Artifact {
 			return false;
 		if (getClass() != other.getClass())
 			return false;
-		if (artifact == null) {
-			if (other.artifact != null)
-				return false;
-		} else if (!artifact.equals(other.artifact))
-			return false;
-		if (group == null) {
-			if (other.group != null)
-				return false;
-		} else if (!group.equals(other.group))
-			return false;
-		if (version == null) {
-			if (other.version != null)
-				return false;
-		} else if (!version.equals(other.version))
-			return false;
-		return true;
+		return gavId == other.gavId;
 	}
 
 	public boolean equalsByProjectName(Artifact other) {
@@ -130,18 +162,7 @@ public class Artifact {
 			return false;
 		if (getClass() != other.getClass())
 			return false;
-		if (artifact == null) {
-			if (other.artifact != null)
-				return false;
-		} else if (!artifact.equals(other.artifact))
-			return false;
-		if (group == null) {
-			if (other.group != null)
-				return false;
-		} else if (!group.equals(other.group))
-			return false;
-		return true;
+		return gaId == other.gaId;
 	}
 
-
 }
@@ -0,0 +1,352 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tobiasroeser.maven.shared.XmlPatch;
+import de.tobiasroeser.maven.shared.XmlPatch.UnsupportedPatchException;
+
+/**
+ * The changes of project files computed by a run with <code>--plan</code>,
+ * which can be reviewed and applied later, e.g. on other checkouts.
+ *
+ * For each file, a plan holds the hash of its content and the changed
+ * elements, each with its path, the old and the new text. Files below the
+ * base directory are stored relative to it.
+ *
+ * Applying first checks all files and changes and refuses to write anything,
+ * if a file changed since the plan was made. The files are then written in
+ * parallel, the changes of each file in the order of the plan. A file, which
+ * changed after the check, is not replaced. The files already written are
+ * logged, if not all files could be written.
+ */
+public class ChangePlan {
+
+	private static final String HEADER = "# mvu change plan 1";
+
+	private final Logger log = LoggerFactory.getLogger(ChangePlan.class);
+
+	private final File baseDir;
+	/** Map(stored-path:file-changes) */
+	private final Map<String, FileChanges> files = new LinkedHashMap<String, FileChanges>();
+	private boolean incomplete = false;
+
+	/**
+	 * @param baseDir
+	 *            The directory, relative file paths are resolved against.
+	 */
+	public ChangePlan(final File baseDir) {
+		this.baseDir = baseDir;
+	}
+
+	/**
+	 * Add the changed elements of <code>patch</code>. Changes of an element,
+	 * which is already part of the plan, replace its new text.
+	 */
+	public void add(final File file, final XmlPatch patch) throws UnsupportedPatchException {
+		final String path = relativize(file);
+		FileChanges fileChanges = files.get(path);
+		if (fileChanges == null) {
+			fileChanges = new FileChanges(patch.getContentHash());
+			files.put(path, fileChanges);
+		}
+		for (final XmlPatch.Element element : patch.getChangedElements()) {
+			fileChanges.add(new Change(element.getPath(), element.getOriginalText(), element.getText()));
+		}
+	}
+
+	/**
+	 * Mark this plan as incomplete, because some changes could not be
+	 * planned.
+	 */
+	public void setIncomplete() {
+		this.incomplete = true;
+	}
+
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	public boolean isEmpty() {
+		return files.isEmpty();
+	}
+
+	/**
+	 * The number of planned changes of all files.
+	 */
+	public int changeCount() {
+		int count = 0;
+		for (final FileChanges fileChanges : files.values()) {
+			count += fileChanges.changes.size();
+		}
+		return count;
+	}
+
+	public void write(final File planFile) throws IOException {
+		final PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(planFile), "UTF-8"));
+		try {
+			writer.print(HEADER + "\n");
+			for (final Map.Entry<String, FileChanges> e : files.entrySet()) {
+				writer.print("file\t" + escape(e.getKey()) + "\t" + e.getValue().hash + "\n");
+				for (final Change change : e.getValue().changes) {
+					writer.print("change\t" + escape(change.path) + "\t" + escape(change.oldText) + "\t" + escape(change.newText)
+							+ "\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) {
+			throw new IOException("Could not write plan file: " + planFile);
+		}
+	}
+
+	public static ChangePlan read(final File planFile, final File baseDir) throws IOException {
+		final ChangePlan plan = new ChangePlan(baseDir);
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(planFile), "UTF-8"));
+		try {
+			if (!HEADER.equals(reader.readLine())) {
+				throw new IOException("Not a change plan: " + planFile);
+			}
+			FileChanges fileChanges = null;
+			int lineNr = 1;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				++lineNr;
+				final String[] fields = line.split("\t", -1);
+				if (fields[0].equals("file") && fields.length == 3) {
+					fileChanges = new FileChanges(fields[2]);
+					plan.files.put(unescape(fields[1]), fileChanges);
+				} else if (fields[0].equals("change") && fields.length == 4 && fileChanges != null) {
+					fileChanges.add(new Change(unescape(fields[1]), unescape(fields[2]), unescape(fields[3])));
+				} else if (!line.isEmpty() && !line.startsWith("#")) {
+					throw new IOException("Invalid line " + lineNr + " in plan file: " + planFile);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return plan;
+	}
+
+	/**
+	 * Apply the plan.
+	 *
+	 * @param threads
+	 *            The number of files processed in parallel. <code>1</code> or
+	 *            less processes all files on the calling thread.
+	 * @param dryrun
+	 *            Only check, that the plan can be applied.
+	 * @return <code>true</code>, if all files could be checked and, unless
+	 *         <code>dryrun</code>, were written.
+	 */
+	public boolean apply(final int threads, final boolean dryrun) {
+		final List<Callable<XmlPatch>> checks = new ArrayList<Callable<XmlPatch>>(files.size());
+		for (final Map.Entry<String, FileChanges> e : files.entrySet()) {
+			final File file = resolve(e.getKey());
+			final FileChanges fileChanges = e.getValue();
+			checks.add(new Callable<XmlPatch>() {
+				@Override
+				public XmlPatch call() throws Exception {
+					return prepare(file, fileChanges);
+				}
+			});
+		}
+
+		final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			final List<XmlPatch> patches = invokeAll(executor, checks);
+			if (patches == null) {
+				log.error("Refusing to apply the plan. No file was changed.");
+				return false;
+			}
+			if (dryrun) {
+				log.info("(dryrun) I would apply " + changeCount() + " changes to " + patches.size() + " files");
+				return true;
+			}
+
+			final List<Callable<XmlPatch>> writes = new ArrayList<Callable<XmlPatch>>(patches.size());
+			final List<String> paths = new ArrayList<String>(files.keySet());
+			final List<File> written = Collections.synchronizedList(new ArrayList<File>(patches.size()));
+			for (int i = 0; i < patches.size(); ++i) {
+				final XmlPatch patch = patches.get(i);
+				final File file = resolve(paths.get(i));
+				writes.add(new Callable<XmlPatch>() {
+					@Override
+					public XmlPatch call() throws Exception {
+						log.info("Modifying file: " + file);
+						patch.write(file, true);
+						written.add(file);
+						return patch;
+					}
+				});
+			}
+			if (invokeAll(executor, writes) == null) {
+				if (written.isEmpty()) {
+					log.error("Could not apply the plan. No file was changed.");
+				} else {
+					log.error("Could not apply the plan completely. Already changed files: " + written);
+				}
+				return false;
+			}
+			return true;
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Scan the file, check its hash and apply its changes in memory.
+	 */
+	protected XmlPatch prepare(final File file, final FileChanges fileChanges) throws IOException, UnsupportedPatchException {
+		final XmlPatch patch = XmlPatch.parse(file);
+		if (!fileChanges.hash.equals(patch.getContentHash())) {
+			throw new IOException("File changed since the plan was made: " + file);
+		}
+		for (final Change change : fileChanges.changes) {
+			final XmlPatch.Element element = patch.getElement(change.path);
+			if (element == null) {
+				throw new IOException("Missing element " + change.path + " in file: " + file);
+			}
+			if (!change.oldText.equals(element.getText())) {
+				throw new IOException("Unexpected text of element " + change.path + " in file: " + file);
+			}
+			element.setText(change.newText);
+		}
+		return patch;
+	}
+
+	/**
+	 * Run all tasks and log their failures.
+	 *
+	 * @return The results in the order of the tasks or <code>null</code>, if
+	 *         any task failed.
+	 */
+	protected List<XmlPatch> invokeAll(final ExecutorService executor, final List<Callable<XmlPatch>> tasks) {
+		final List<XmlPatch> results = new ArrayList<XmlPatch>(tasks.size());
+		boolean failed = false;
+		if (executor == null) {
+			for (final Callable<XmlPatch> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (final Exception e) {
+					log.error(e.getMessage());
+					failed = true;
+				}
+			}
+		} else {
+			final List<Future<XmlPatch>> futures = new LinkedList<Future<XmlPatch>>();
+			for (final Callable<XmlPatch> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			for (final Future<XmlPatch> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (final ExecutionException e) {
+					log.error(e.getCause().getMessage());
+					failed = true;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					log.error("Interrupted while applying the plan");
+					return null;
+				}
+			}
+		}
+		return failed ? null : results;
+	}
+
+	protected String relativize(final File file) {
+		final String base = baseDir.getAbsolutePath() + File.separator;
+		final String path = file.getAbsolutePath();
+		return path.startsWith(base) ? path.substring(base.length()).replace(File.separatorChar, '/') : path;
+	}
+
+	protected File resolve(final String path) {
+		final File file = new File(path);
+		return file.isAbsolute() ? file : new File(baseDir, path.replace('/', File.separatorChar));
+	}
+
+	protected static String escape(final String text) {
+		return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	protected static String unescape(final String text) {
+		if (text.indexOf('\\') < 0) {
+			return text;
+		}
+		final StringBuilder result = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); ++i) {
+			final char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				final char next = text.charAt(++i);
+				result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(files=" + files.size() + ",changes=" + changeCount() + ")";
+	}
+
+	protected static class FileChanges {
+		private final String hash;
+		private final List<Change> changes = new LinkedList<Change>();
+
+		public FileChanges(final String hash) {
+			this.hash = hash;
+		}
+
+		/**
+		 * Add the change, or replace the new text of an earlier change of the
+		 * same element.
+		 */
+		public void add(final Change change) {
+			for (final Change existing : changes) {
+				if (existing.path.equals(change.path)) {
+					existing.newText = change.newText;
+					return;
+				}
+			}
+			changes.add(change);
+		}
+	}
+
+	protected static class Change {
+		private final String path;
+		private final String oldText;
+		private String newText;
+
+		public Change(final String path, final String oldText, final String newText) {
+			this.path = path;
+			this.oldText = oldText;
+			this.newText = newText;
+		}
+	}
+
+}
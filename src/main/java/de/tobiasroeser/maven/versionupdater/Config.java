@@ -2,13 +2,17 @@ package de.tobiasroeser.maven.versionupdater;
 
 import static de.tototec.utils.functional.FList.map;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import de.tobiasroeser.maven.shared.PomDocumentCache;
 import de.tototec.cmdoption.CmdOption;
 
 public class Config {
@@ -50,6 +54,18 @@ public class Config {
 	@CmdOption(names = "--exact", description = "When searching, only match exactly the same artifact keys")
 	public boolean exactMatch = false;
 
+	@CmdOption(names = "--match", args = {
+			"MODE" }, description = "When searching, match patterns as {0}: substring (default), exact, prefix, glob or regex. Patterns with a version (GROUP:ARTIFACT:VERSION) are matched against the versioned keys")
+	public SearchIndex.Mode match = SearchIndex.Mode.substring;
+
+	/**
+	 * The effective search mode, <code>--exact</code> takes precedence over
+	 * <code>--match</code>.
+	 */
+	public SearchIndex.Mode searchMode() {
+		return exactMatch ? SearchIndex.Mode.exact : match;
+	}
+
 	@CmdOption(names = "--filter-local", description = "Filter (when given) search to include/exclude local dependencies")
 	public Boolean filterLocal;
 
@@ -79,11 +95,11 @@ public class Config {
 	public List<String> updateArtifactVersion = new LinkedList<String>();
 
 	@CmdOption(names = "--search-artifacts", args = {
-			"PATTERN" }, maxCount = -1, description = "Search for artifact(s) with pattern {0} (supports --exact)")
+			"PATTERN" }, maxCount = -1, description = "Search for artifact(s) with pattern {0} (supports --exact and --match)")
 	public List<String> searchArtifacts = new LinkedList<String>();
 
 	@CmdOption(names = "--search-dependencies", args = {
-			"PATTERN" }, maxCount = -1, description = "Search for dependency(s) with pattern {0} (supports --exact})")
+			"PATTERN" }, maxCount = -1, description = "Search for dependency(s) with pattern {0} (supports --exact and --match)")
 	public List<String> searchDependencies = new LinkedList<String>();
 
 	@CmdOption(names = "--update-artifact-and-dep-version", args = {
@@ -94,12 +110,88 @@ public class Config {
 	// setDepVersions.add(key);
 	// }
 
-	@CmdOption(names = "--search-multi-version-deps", description = "Search dependecies, which are present with more to one version. (NOT IMPLEMENTED)")
+	@CmdOption(names = "--search-multi-version-deps", description = "Search dependencies, which are used in more than one version, and show their dependants per version (supports --filter-local and --filter-system)")
 	public boolean searchMultiVersionDeps;
 
-	@CmdOption(names = "--search-plugins", args = { "PLUGIN" }, maxCount = -1, description = "Search Maven-plugin {0} and the using project.")
+	@CmdOption(names = "--search-plugins", args = {
+			"PATTERN" }, maxCount = -1, description = "Search Maven-plugin(s) with pattern {0} and the using projects (supports --exact and --match)")
 	public List<String> searchPlugins = new LinkedList<String>();
 
+	@CmdOption(names = "--search-multi-version-plugins", description = "Search Maven-plugins, which are used in more than one version, and show their using projects per version")
+	public boolean searchMultiVersionPlugins;
+
+	/** List(plugin-key-with-version) */
+	@CmdOption(names = "--set-plugin-version", args = {
+			"PLUGIN" }, maxCount = -1, description = "Updates the versions of all usages of Maven-plugin {0} (GROUP:ARTIFACT:VERSION), which declare a version (supports --dryrun)")
+	public final List<String> setPluginVersions = new LinkedList<String>();
+
+	@CmdOption(names = "--list-transitive-dependants", args = {
+			"PATTERN" }, maxCount = -1, description = "List all local projects, which directly or transitively depend on the local projects matching pattern {0} (supports --exact and --match)")
+	public List<String> listTransitiveDependants = new LinkedList<String>();
+
+	@CmdOption(names = "--list-transitive-dependencies", args = {
+			"PATTERN" }, maxCount = -1, description = "List all local projects, the local projects matching pattern {0} directly or transitively depend on (supports --exact and --match)")
+	public List<String> listTransitiveDependencies = new LinkedList<String>();
+
+	/** Map(changes-file -> output-file) */
+	@CmdOption(names = "--affected-modules", args = { "CHANGES",
+			"FILE" }, maxCount = -1, description = "Read changed file paths (one per line) from file {0} and write the local projects, which must be rebuilt, as a comma separated list for 'mvn -pl' to file {1} ('-' for stdout, log messages then go to stderr) (supports --dryrun, --output-format)")
+	public final Map<String, String> affectedModules = new LinkedHashMap<String, String>();
+
+	@CmdOption(names = "--list-build-waves", description = "List the local projects in build waves, each wave only depends on the previous ones and can be built concurrently, and the critical path of the build. Cycles are reported.")
+	public boolean listBuildWaves;
+
+	@CmdOption(names = "--build-times", args = {
+			"FILE" }, description = "Weight the critical path with the build times in file {0} (lines 'groupId:artifactId seconds', default: 1 per project)")
+	public String buildTimes;
+
+	@CmdOption(names = "--plan", args = {
+			"FILE" }, description = "Do not modify project files, but write all changes to the change plan file {0}, to be reviewed and applied with --apply-plan")
+	public String plan;
+
+	@CmdOption(names = "--apply-plan", args = {
+			"FILE" }, description = "Apply the change plan file {0} in parallel (see --threads) without scanning the workspace. Nothing is applied, if a planned file changed since the plan was made (supports --dryrun)")
+	public String applyPlan;
+
+	@CmdOption(names = "--batch", args = {
+			"FILE" }, description = "After the other commands, run the steps of script file {0} ('-' for stdin) in order against the same scanned workspace. Each line holds the options of one step, e.g. '--set-dep-version G:A:V'. Each step sees the changes of the previous ones (supports --dryrun)")
+	public String batch;
+
+	@CmdOption(names = "--output-format", args = {
+			"FORMAT" }, description = "Write the results of listing and search commands as {0}: text (default, log messages), jsonl (JSON Lines) or csv. Records are written as they are found")
+	public ReportWriter.Format outputFormat = ReportWriter.Format.text;
+
+	@CmdOption(names = "--output", args = {
+			"FILE" }, description = "Write the records of --output-format jsonl or csv to file {0} instead of stdout. When writing to stdout, log messages go to stderr")
+	public String output;
+
+	@CmdOption(names = "--threads", args = { "N" }, description = "Use {0} parallel threads to scan for projects (default: 1)")
+	public int threads = 1;
+
+	@CmdOption(names = "--pom-cache-size", args = { "N" }, description = "Keep at most {0} parsed project files in memory (default: 1000)")
+	public int pomCacheSize = PomDocumentCache.DEFAULT_CAPACITY;
+
+	@CmdOption(names = "--index", description = "Keep an index of all scanned projects on disk and only re-read changed project files")
+	public boolean index = false;
+
+	@CmdOption(names = "--index-dir", args = { "DIR" }, description = "Store index files in directory {0} (default: ~/.mvu/index)")
+	public String indexDir = System.getProperty("user.home") + "/.mvu/index";
+
+	@CmdOption(names = "--xmlbeans-reader", description = "Read projects with the (slower) XmlBeans reader instead of the streaming reader")
+	public boolean xmlBeansReader = false;
+
+	@CmdOption(names = "--rewrite-poms", description = "Save modified project files by re-serializing the whole file instead of only replacing the changed values")
+	public boolean rewritePoms = false;
+
+	@CmdOption(names = "--daemon", description = "Run as daemon, which keeps the scanned projects in memory and serves requests of the mvu client")
+	public boolean daemon = false;
+
+	@CmdOption(names = "--daemon-port", args = { "PORT" }, description = "The local port of the daemon (default: 8397)")
+	public int daemonPort = VersionUpdaterDaemon.DEFAULT_PORT;
+
+	@CmdOption(names = "--stop-daemon", description = "Stop the running daemon (only supported by the mvu client)")
+	public boolean stopDaemon = false;
+
 	@CmdOption(names = { "--verbose", "-v" }, description = "Verbose output")
 	public boolean verbose = false;
 
@@ -114,10 +206,63 @@ public class Config {
 
 	}
 
+	/** The directory, relative paths are resolved against. */
+	public File baseDir = new File("").getAbsoluteFile();
+
 	private List<String> _profiles = Collections.unmodifiableList(new LinkedList<>());
 
 	public List<String> profiles() {
 		return _profiles;
 	}
 
+	/**
+	 * Resolve all relative directories and files against
+	 * <code>baseDir</code>. If no directory was given, <code>baseDir</code>
+	 * is used.
+	 */
+	public void resolvePaths(final File baseDir) {
+		this.baseDir = baseDir;
+		if (dirs.isEmpty()) {
+			dirs.add(baseDir.getPath());
+		} else {
+			final List<String> resolvedDirs = map(dirs, d -> resolve(baseDir, d));
+			dirs.clear();
+			dirs.addAll(resolvedDirs);
+		}
+
+		persistArtifactListTo = resolve(baseDir, persistArtifactListTo);
+		readArtifactListFrom = resolve(baseDir, readArtifactListFrom);
+		buildTimes = resolve(baseDir, buildTimes);
+		output = resolve(baseDir, output);
+		plan = resolve(baseDir, plan);
+		applyPlan = resolve(baseDir, applyPlan);
+		if (!"-".equals(batch)) {
+			batch = resolve(baseDir, batch);
+		}
+		indexDir = resolve(baseDir, indexDir);
+
+		for (final Map<String, String> fileMap : Arrays.asList(persistDeps, applyDeps)) {
+			final Map<String, String> resolved = new LinkedHashMap<String, String>();
+			for (final Entry<String, String> e : fileMap.entrySet()) {
+				resolved.put(resolve(baseDir, e.getKey()), e.getValue());
+			}
+			fileMap.clear();
+			fileMap.putAll(resolved);
+		}
+
+		final Map<String, String> resolvedAffected = new LinkedHashMap<String, String>();
+		for (final Entry<String, String> e : affectedModules.entrySet()) {
+			resolvedAffected.put(resolve(baseDir, e.getKey()), e.getValue().equals("-") ? "-" : resolve(baseDir, e.getValue()));
+		}
+		affectedModules.clear();
+		affectedModules.putAll(resolvedAffected);
+	}
+
+	private static String resolve(final File baseDir, final String path) {
+		if (path == null || new File(path).isAbsolute()) {
+			return path;
+		}
+		return new File(baseDir, path).getPath();
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns Maven coordinates into dense int ids.
+ *
+ * Each distinct <code>groupId:artifactId</code> (GA) pair and each distinct
+ * <code>groupId:artifactId:version</code> (GAV) tuple gets its own id, starting
+ * with <code>0</code>. Equal coordinates always share the same (interned)
+ * strings, so that artifacts and dependencies do not hold their own copies.
+ *
+ * The table only grows while in use. {@link VersionUpdater} clears it, when
+ * it starts a new session, i.e. when it reads all projects again. Ids of a
+ * previous session must not be used afterwards.
+ *
+ * This class is thread-safe. Lookups of known coordinates and all getters do
+ * not lock, only new ids are created under the lock of the table.
+ */
+public class CoordinateTable {
+
+	public static final CoordinateTable instance = new CoordinateTable();
+
+	/**
+	 * The coordinates of a GAV, as returned by
+	 * {@link CoordinateTable#gav(String, String, String)}.
+	 */
+	public static final class Gav {
+		private final Ga ga;
+		private final int gavId;
+		private final String version;
+		private final Version parsedVersion;
+
+		private Gav(final Ga ga, final int gavId, final String version, final Version parsedVersion) {
+			this.ga = ga;
+			this.gavId = gavId;
+			this.version = version;
+			this.parsedVersion = parsedVersion;
+		}
+
+		public String getGroup() {
+			return ga.group;
+		}
+
+		public String getArtifact() {
+			return ga.artifact;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public Version getParsedVersion() {
+			return parsedVersion;
+		}
+
+		public int getGaId() {
+			return ga.gaId;
+		}
+
+		public int getGavId() {
+			return gavId;
+		}
+	}
+
+	private static final class Ga {
+		private final int gaId;
+		private final String group;
+		private final String artifact;
+		private final String gaKey;
+		/** Map(version:gav) */
+		private final ConcurrentHashMap<String, Gav> gavs = new ConcurrentHashMap<String, Gav>();
+
+		private Ga(final int gaId, final String group, final String artifact) {
+			this.gaId = gaId;
+			this.group = group;
+			this.artifact = artifact;
+			this.gaKey = group + ":" + artifact;
+		}
+	}
+
+	/** The interned strings. */
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	/** Map(groupId:Map(artifactId:ga)) */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Ga>> gas = new ConcurrentHashMap<String, ConcurrentHashMap<String, Ga>>();
+	/**
+	 * Array(ga-id:ga) and Array(gav-id:gav). Both are only written under the
+	 * lock and assigned again after each write, so that readers see the new
+	 * elements.
+	 */
+	private volatile Ga[] gaById = new Ga[64];
+	private volatile Gav[] gavById = new Gav[64];
+	private volatile int gaCount;
+	private volatile int gavCount;
+
+	/**
+	 * Forget all coordinates. All ids handed out before become invalid.
+	 */
+	public synchronized void clear() {
+		strings.clear();
+		gas.clear();
+		gaById = new Ga[64];
+		gavById = new Gav[64];
+		gaCount = 0;
+		gavCount = 0;
+	}
+
+	/**
+	 * The id of the given GA, which is created if needed.
+	 */
+	public int ga(final String group, final String artifact) {
+		return getOrCreateGa(group, artifact).gaId;
+	}
+
+	private Ga getOrCreateGa(final String group, final String artifact) {
+		final ConcurrentHashMap<String, Ga> byArtifact = gas.get(group);
+		if (byArtifact != null) {
+			final Ga ga = byArtifact.get(artifact);
+			if (ga != null) {
+				return ga;
+			}
+		}
+		return createGa(group, artifact);
+	}
+
+	private synchronized Ga createGa(final String group, final String artifact) {
+		ConcurrentHashMap<String, Ga> byArtifact = gas.get(group);
+		if (byArtifact == null) {
+			byArtifact = new ConcurrentHashMap<String, Ga>();
+			gas.put(intern(group), byArtifact);
+		}
+		final Ga existing = byArtifact.get(artifact);
+		if (existing != null) {
+			return existing;
+		}
+
+		final Ga ga = new Ga(gaCount, intern(group), intern(artifact));
+		Ga[] array = gaById;
+		if (ga.gaId == array.length) {
+			final Ga[] newArray = new Ga[array.length * 2];
+			System.arraycopy(array, 0, newArray, 0, array.length);
+			array = newArray;
+		}
+		array[ga.gaId] = ga;
+		gaById = array;
+		gaCount = ga.gaId + 1;
+		byArtifact.put(ga.artifact, ga);
+		return ga;
+	}
+
+	/**
+	 * The id of the given GA or <code>-1</code>, if it is unknown.
+	 */
+	public int findGa(final String group, final String artifact) {
+		final ConcurrentHashMap<String, Ga> byArtifact = gas.get(group);
+		if (byArtifact != null) {
+			final Ga ga = byArtifact.get(artifact);
+			if (ga != null) {
+				return ga.gaId;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The id of the GA given as <code>groupId:artifactId</code> or
+	 * <code>-1</code>, if it is unknown or not a valid key.
+	 */
+	public int findGa(final String gaKey) {
+		final String[] split = gaKey.split(":", 2);
+		if (split.length != 2) {
+			return -1;
+		}
+		return findGa(split[0], split[1]);
+	}
+
+	/**
+	 * The id of the given GAV, which is created if needed.
+	 */
+	public int gav(final int gaId, final String version) {
+		return getOrCreateGav(getGa(gaId), version).gavId;
+	}
+
+	/**
+	 * The interned coordinates of the given GAV, which is created if needed.
+	 */
+	public Gav gav(final String group, final String artifact, final String version) {
+		return getOrCreateGav(getOrCreateGa(group, artifact), version);
+	}
+
+	private Gav getOrCreateGav(final Ga ga, final String version) {
+		final Gav gav = ga.gavs.get(version);
+		if (gav != null) {
+			return gav;
+		}
+		// parse outside of the lock, a concurrent parse of the same version is harmless
+		return createGav(ga, version, Version.parseMaven(version));
+	}
+
+	private synchronized Gav createGav(final Ga ga, final String version, final Version parsedVersion) {
+		final Gav existing = ga.gavs.get(version);
+		if (existing != null) {
+			return existing;
+		}
+
+		final Gav gav = new Gav(ga, gavCount, intern(version), parsedVersion);
+		Gav[] array = gavById;
+		if (gav.gavId == array.length) {
+			final Gav[] newArray = new Gav[array.length * 2];
+			System.arraycopy(array, 0, newArray, 0, array.length);
+			array = newArray;
+		}
+		array[gav.gavId] = gav;
+		gavById = array;
+		gavCount = gav.gavId + 1;
+		ga.gavs.put(gav.version, gav);
+		return gav;
+	}
+
+	/**
+	 * The shared instance of a string equal to <code>string</code>.
+	 */
+	public String intern(final String string) {
+		final String interned = strings.putIfAbsent(string, string);
+		return interned != null ? interned : string;
+	}
+
+	private Ga getGa(final int gaId) {
+		if (gaId >= gaCount) {
+			throw new IndexOutOfBoundsException("Unknown GA id: " + gaId);
+		}
+		return gaById[gaId];
+	}
+
+	private Gav getGav(final int gavId) {
+		if (gavId >= gavCount) {
+			throw new IndexOutOfBoundsException("Unknown GAV id: " + gavId);
+		}
+		return gavById[gavId];
+	}
+
+	public String getGroup(final int gaId) {
+		return getGa(gaId).group;
+	}
+
+	public String getArtifact(final int gaId) {
+		return getGa(gaId).artifact;
+	}
+
+	/**
+	 * The key <code>groupId:artifactId</code> of the given GA.
+	 */
+	public String getGaKey(final int gaId) {
+		return getGa(gaId).gaKey;
+	}
+
+	public String getVersion(final int gavId) {
+		return getGav(gavId).version;
+	}
+
+	/**
+	 * The parsed version of the given GAV, which is parsed only once.
+	 */
+	public Version getParsedVersion(final int gavId) {
+		return getGav(gavId).parsedVersion;
+	}
+
+	public int getGaId(final int gavId) {
+		return getGav(gavId).ga.gaId;
+	}
+
+	/**
+	 * The number of known GAs. All GA ids are smaller than this.
+	 */
+	public int gaCount() {
+		return gaCount;
+	}
+
+	/**
+	 * The number of known GAVs. All GAV ids are smaller than this.
+	 */
+	public int gavCount() {
+		return gavCount;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(gas=" + gaCount() + ",gavs=" + gavCount() + ")";
+	}
+
+}
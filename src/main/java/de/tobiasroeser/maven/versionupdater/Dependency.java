@@ -15,6 +15,10 @@ public class Dependency {
 	private final String classifier;
 	private final String systemPath;
 	private List<String> exclusions;
+	private Optional<PropertyDefinition> versionProperty = Optional.none();
+	private String declaredVersion;
+	private boolean managed;
+	private Optional<Dependency> managedBy = Optional.none();
 
 	public Dependency(final Artifact dependencyArtifact, final LocalArtifact project, final Optional<String> profile,
 			final String classifier, final String scope, final String systemPath,
@@ -23,7 +27,7 @@ public class Dependency {
 		this.project = project;
 		this.profile = profile;
 		this.classifier = classifier;
-		this.scope = scope;
+		this.scope = CoordinateTable.instance.intern(scope);
 		this.system = scope.trim().equals("system");
 		this.systemPath = systemPath;
 		this.exclusions = exclusions != null ? exclusions : Collections
@@ -56,6 +60,60 @@ public class Dependency {
 		return changeProtectBecause;
 	}
 
+	/**
+	 * The property, the version was taken from. If defined, the version is
+	 * changed by changing the property.
+	 */
+	public Optional<PropertyDefinition> getVersionProperty() {
+		return versionProperty;
+	}
+
+	public void setVersionProperty(final PropertyDefinition versionProperty) {
+		this.versionProperty = Optional.lift(versionProperty);
+	}
+
+	/**
+	 * The version as declared in the project file, e.g.
+	 * <code>${junit.version}</code>.
+	 */
+	public String getDeclaredVersion() {
+		return declaredVersion != null ? declaredVersion : dependencyArtifact.getVersion();
+	}
+
+	/**
+	 * @param declaredVersion
+	 *            The version as declared in the project file, if it differs
+	 *            from the version of the dependency artifact.
+	 */
+	public void setDeclaredVersion(final String declaredVersion) {
+		this.declaredVersion = declaredVersion;
+	}
+
+	/**
+	 * <code>true</code>, if this is an entry of the
+	 * <code>dependencyManagement</code> section of the project.
+	 */
+	public boolean isManaged() {
+		return managed;
+	}
+
+	public void setManaged(final boolean managed) {
+		this.managed = managed;
+	}
+
+	/**
+	 * The <code>dependencyManagement</code> entry, the version was taken
+	 * from, if the dependency has no version itself. If defined, the version
+	 * is changed by changing that entry.
+	 */
+	public Optional<Dependency> getManagedBy() {
+		return managedBy;
+	}
+
+	public void setManagedBy(final Dependency managedBy) {
+		this.managedBy = Optional.lift(managedBy);
+	}
+
 	public String getClassifier() {
 		return classifier;
 	}
@@ -100,12 +158,15 @@ public class Dependency {
 			additionalDepInfo = "(" + additionalDepInfo + ")";
 		}
 		String string = dependencyArtifact + additionalDepInfo
-				+ " (required by " + project;
+				+ (managed ? " (managed by " : " (required by ") + project;
 		if (verbose) {
 			string += " @ " + project.getLocation();
 			if(profile.isDefined()) {
 				string += " (" + profile.get() + ")";
 			}
+			if (managedBy.isDefined()) {
+				string += " (version managed by " + managedBy.get().getProject() + ")";
+			}
 		}
 		string += ")";
 
@@ -0,0 +1,84 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The effective dependency management of a project: its own
+ * <code>dependencyManagement</code> entries, followed by those of the imported
+ * projects (BOMs) in declaration order and those of the parent.
+ *
+ * Imported and inherited managements are referenced, not copied, so the
+ * management of a BOM or parent is built once and shared by all projects
+ * using it.
+ */
+public class DependencyManagement {
+
+	public static final DependencyManagement EMPTY = new DependencyManagement(Collections.<Dependency> emptyList(),
+			Collections.<DependencyManagement> emptyList(), null);
+
+	/** Map(groupId:artifactId:classifier:entry) */
+	private final Map<String, Dependency> entries;
+	private final List<DependencyManagement> imports;
+	private final DependencyManagement parent;
+
+	/**
+	 * @param entries
+	 *            The own entries, the first entry of a key wins.
+	 * @param imports
+	 *            The management of the imported projects in declaration order.
+	 * @param parent
+	 *            The management of the parent or <code>null</code>.
+	 */
+	public DependencyManagement(final List<Dependency> entries, final List<DependencyManagement> imports,
+			final DependencyManagement parent) {
+		this.entries = new HashMap<String, Dependency>(entries.size() * 2);
+		for (final Dependency entry : entries) {
+			final Artifact artifact = entry.getDependencyArtifact();
+			final String key = key(artifact.getGroup(), artifact.getArtifact(), entry.getClassifier());
+			if (!this.entries.containsKey(key)) {
+				this.entries.put(key, entry);
+			}
+		}
+		this.imports = imports;
+		this.parent = parent;
+	}
+
+	/**
+	 * The managing entry for the given dependency or <code>null</code>.
+	 */
+	public Dependency find(final String groupId, final String artifactId, final String classifier) {
+		return find(key(groupId, artifactId, classifier));
+	}
+
+	protected Dependency find(final String key) {
+		final Dependency entry = entries.get(key);
+		if (entry != null) {
+			return entry;
+		}
+		for (final DependencyManagement imported : imports) {
+			final Dependency importedEntry = imported.find(key);
+			if (importedEntry != null) {
+				return importedEntry;
+			}
+		}
+		return parent != null ? parent.find(key) : null;
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty() && imports.isEmpty() && parent == null;
+	}
+
+	protected static String key(final String groupId, final String artifactId, final String classifier) {
+		return groupId + ":" + artifactId + ":" + (classifier != null ? classifier : "");
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(entries=" + entries.size() + ",imports=" + imports.size() + ",parent="
+				+ (parent != null) + ")";
+	}
+
+}
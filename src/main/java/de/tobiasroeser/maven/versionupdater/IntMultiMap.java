@@ -0,0 +1,100 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A multimap with non-negative, dense int keys, e.g. ids of the
+ * {@link CoordinateTable}. The value lists are stored in an array indexed by
+ * the key. Keys are iterated in insertion order.
+ *
+ * This class is not thread-safe.
+ */
+public class IntMultiMap<V> {
+
+	private Object[] buckets;
+	private int[] keys;
+	private int keyCount = 0;
+
+	public IntMultiMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedMaxKey
+	 *            A hint, how large the keys will be.
+	 */
+	public IntMultiMap(final int expectedMaxKey) {
+		buckets = new Object[Math.max(16, expectedMaxKey + 1)];
+		keys = new int[16];
+	}
+
+	public void add(final int key, final V value) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Negative key: " + key);
+		}
+		if (key >= buckets.length) {
+			final Object[] newBuckets = new Object[Math.max(key + 1, buckets.length * 2)];
+			System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+			buckets = newBuckets;
+		}
+		@SuppressWarnings("unchecked")
+		List<V> values = (List<V>) buckets[key];
+		if (values == null) {
+			values = new LinkedList<V>();
+			buckets[key] = values;
+			if (keyCount == keys.length) {
+				final int[] newKeys = new int[keys.length * 2];
+				System.arraycopy(keys, 0, newKeys, 0, keys.length);
+				keys = newKeys;
+			}
+			keys[keyCount++] = key;
+		}
+		values.add(value);
+	}
+
+	/**
+	 * The values of the given key, or an empty list.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> get(final int key) {
+		if (key < 0 || key >= buckets.length || buckets[key] == null) {
+			return Collections.emptyList();
+		}
+		return (List<V>) buckets[key];
+	}
+
+	public boolean containsKey(final int key) {
+		return key >= 0 && key < buckets.length && buckets[key] != null;
+	}
+
+	/**
+	 * The number of keys.
+	 */
+	public int keyCount() {
+		return keyCount;
+	}
+
+	/**
+	 * The key at the given position, in insertion order.
+	 */
+	public int keyAt(final int index) {
+		if (index >= keyCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + keyCount);
+		}
+		return keys[index];
+	}
+
+	/**
+	 * The number of all values.
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < keyCount; ++i) {
+			size += get(keys[i]).size();
+		}
+		return size;
+	}
+
+}
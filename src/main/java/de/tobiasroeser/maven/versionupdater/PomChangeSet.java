@@ -0,0 +1,757 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.maven.pom.x400.Dependency.Exclusions;
+import org.apache.maven.pom.x400.Exclusion;
+import org.apache.maven.pom.x400.Model;
+import org.apache.maven.pom.x400.Model.Dependencies;
+import org.apache.maven.pom.x400.Plugin;
+import org.apache.maven.pom.x400.Profile;
+import org.apache.maven.pom.x400.ProjectDocument;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tobiasroeser.maven.shared.MavenXmlSupport;
+import de.tobiasroeser.maven.shared.PomDocumentCache;
+import de.tobiasroeser.maven.shared.XmlPatch;
+import de.tobiasroeser.maven.shared.XmlPatch.UnsupportedPatchException;
+import de.tototec.utils.functional.Optional;
+
+/**
+ * Collects edits of project files and applies them grouped by file: each
+ * affected file is parsed once, all its edits are applied in the order they
+ * were added, and it is saved once. Files, which would not change, are not
+ * written.
+ *
+ * By default, edits are written as {@link XmlPatch}, which only replaces the
+ * text of the changed elements and keeps the rest of the file byte-identical.
+ * If a file or an edit is not supported by the patch, or if
+ * <code>rewrite</code> is set, the file is saved with XmlBeans, which
+ * re-serializes the whole document.
+ *
+ * With a {@link ChangePlan}, the patched elements are recorded in the plan
+ * and no file is written. Edits, which can not be expressed as patch, can
+ * not be planned.
+ */
+public class PomChangeSet {
+
+	private final Logger log = LoggerFactory.getLogger(PomChangeSet.class);
+
+	private final PomDocumentCache pomCache;
+	private final PomIndex pomIndex;
+	private final boolean rewrite;
+	/** Map(canonical-project-file:list-of-edits) */
+	private final Map<File, List<PomEdit>> edits = new LinkedHashMap<File, List<PomEdit>>();
+	private ChangePlan plan;
+
+	/**
+	 * @param pomCache
+	 *            The cache used to parse and to notify about saved project
+	 *            files.
+	 * @param pomIndex
+	 *            The index to invalidate for modified project files.
+	 * @param rewrite
+	 *            If <code>true</code>, always save modified files with
+	 *            XmlBeans.
+	 */
+	public PomChangeSet(final PomDocumentCache pomCache, final PomIndex pomIndex, final boolean rewrite) {
+		this.pomCache = pomCache;
+		this.pomIndex = pomIndex;
+		this.rewrite = rewrite;
+	}
+
+	/**
+	 * Record all changes in <code>plan</code> instead of writing the
+	 * project files.
+	 */
+	public void setPlan(final ChangePlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Set the version of the project.
+	 */
+	public void setProjectVersion(final File pomFile, final String version) {
+		add(pomFile, new SetProjectVersion(version));
+	}
+
+	/**
+	 * Change the (non-profile) dependency <code>oldArtifact</code> to
+	 * <code>newArtifact</code>.
+	 */
+	public void changeDependency(final File pomFile, final Artifact oldArtifact, final Artifact newArtifact) {
+		add(pomFile, new ChangeDependency(oldArtifact, newArtifact, false));
+	}
+
+	/**
+	 * Change the (non-profile) managed dependency <code>oldArtifact</code> in
+	 * the <code>dependencyManagement</code> section to
+	 * <code>newArtifact</code>.
+	 */
+	public void changeManagedDependency(final File pomFile, final Artifact oldArtifact, final Artifact newArtifact) {
+		add(pomFile, new ChangeDependency(oldArtifact, newArtifact, true));
+	}
+
+	/**
+	 * Change the version of the plugin <code>oldArtifact</code>, whose version
+	 * is the declared version, in the build of the project or the given
+	 * profile to <code>version</code>.
+	 *
+	 * @param managed
+	 *            Change the plugin in the <code>pluginManagement</code>.
+	 */
+	public void changePlugin(final File pomFile, final Optional<String> profile, final boolean managed,
+			final Artifact oldArtifact, final String version) {
+		add(pomFile, new ChangePlugin(profile, managed, oldArtifact, version));
+	}
+
+	/**
+	 * Replace all (non-profile) dependencies of the project by the given
+	 * dependencies.
+	 */
+	public void setDependencies(final File pomFile, final List<Dependency> dependencies) {
+		add(pomFile, new SetDependencies(dependencies));
+	}
+
+	/**
+	 * Set the value of the existing property <code>name</code>, declared in
+	 * the project or in the given profile.
+	 */
+	public void setProperty(final File pomFile, final Optional<String> profile, final String name, final String value) {
+		final SetProperty edit = new SetProperty(profile, name, value);
+		final List<PomEdit> fileEdits = edits.get(canonical(pomFile));
+		if (fileEdits != null) {
+			for (final PomEdit other : fileEdits) {
+				if (other instanceof SetProperty && ((SetProperty) other).isSameProperty(edit)) {
+					if (((SetProperty) other).value.equals(value)) {
+						return;
+					}
+					log.warn("Conflicting values for property ${" + name + "} in " + pomFile + ": "
+							+ ((SetProperty) other).value + " and " + value + ". Using " + value);
+				}
+			}
+		}
+		add(pomFile, edit);
+	}
+
+	protected void add(final File pomFile, final PomEdit edit) {
+		final File file = canonical(pomFile);
+		List<PomEdit> fileEdits = edits.get(file);
+		if (fileEdits == null) {
+			fileEdits = new LinkedList<PomEdit>();
+			edits.put(file, fileEdits);
+		}
+		fileEdits.add(edit);
+	}
+
+	protected static File canonical(final File pomFile) {
+		try {
+			return pomFile.getCanonicalFile();
+		} catch (final IOException e) {
+			return pomFile.getAbsoluteFile();
+		}
+	}
+
+	public boolean isEmpty() {
+		return edits.isEmpty();
+	}
+
+	/**
+	 * Apply all collected edits and clear this change set.
+	 *
+	 * @return The number of modified files.
+	 */
+	public int apply() {
+		int modified = 0;
+		for (final Entry<File, List<PomEdit>> e : edits.entrySet()) {
+			if (apply(e.getKey(), e.getValue())) {
+				++modified;
+			}
+		}
+		edits.clear();
+		return modified;
+	}
+
+	protected boolean apply(final File pomFile, final List<PomEdit> fileEdits) {
+		if (plan != null) {
+			plan(pomFile, fileEdits);
+			return false;
+		}
+		if (!rewrite) {
+			try {
+				return patch(pomFile, fileEdits);
+			} catch (final UnsupportedPatchException e) {
+				log.debug("Cannot patch file: " + pomFile + ". Rewriting it. Reason: " + e.getMessage());
+			} catch (final IOException e) {
+				log.error("Could not process file: " + pomFile, e);
+				pomCache.invalidate(pomFile);
+				pomIndex.invalidate(pomFile);
+				return false;
+			}
+		}
+		return rewrite(pomFile, fileEdits);
+	}
+
+	/**
+	 * Apply the edits by only replacing the text of changed elements.
+	 */
+	protected boolean patch(final File pomFile, final List<PomEdit> fileEdits) throws IOException, UnsupportedPatchException {
+		final XmlPatch patch = XmlPatch.parse(pomFile);
+		if (!"project".equals(patch.getRoot().getName())) {
+			throw new UnsupportedPatchException("Not a Maven project file");
+		}
+
+		for (final PomEdit edit : fileEdits) {
+			if (edit.patch(patch.getRoot())) {
+				log.debug("Applied edit to {}: {}", pomFile, edit);
+			}
+		}
+
+		if (!patch.isChanged()) {
+			log.debug("Unchanged file: {}", pomFile);
+			return false;
+		}
+
+		log.info("Modifying file: " + pomFile);
+		patch.write(pomFile);
+		pomCache.invalidate(pomFile);
+		pomIndex.invalidate(pomFile);
+		return true;
+	}
+
+	/**
+	 * Record the elements changed by the edits in the {@link #plan}.
+	 */
+	protected void plan(final File pomFile, final List<PomEdit> fileEdits) {
+		try {
+			final XmlPatch patch = XmlPatch.parse(pomFile);
+			if (!"project".equals(patch.getRoot().getName())) {
+				throw new UnsupportedPatchException("Not a Maven project file");
+			}
+			for (final PomEdit edit : fileEdits) {
+				edit.patch(patch.getRoot());
+			}
+			if (patch.isChanged()) {
+				log.info("Planning changes of file: " + pomFile);
+				plan.add(pomFile, patch);
+			}
+		} catch (final UnsupportedPatchException e) {
+			log.error("Could not plan changes of file: " + pomFile + ". Reason: " + e.getMessage());
+			plan.setIncomplete();
+		} catch (final IOException e) {
+			log.error("Could not process file: " + pomFile, e);
+			plan.setIncomplete();
+		}
+	}
+
+	/**
+	 * Apply the edits to the XmlBeans document and save it.
+	 */
+	protected boolean rewrite(final File pomFile, final List<PomEdit> fileEdits) {
+		try {
+			final ProjectDocument o = pomCache.parse(pomFile);
+			final Model project = o.getProject();
+
+			boolean neededSave = false;
+			for (final PomEdit edit : fileEdits) {
+				if (edit.applyTo(project)) {
+					log.debug("Applied edit to {}: {}", pomFile, edit);
+					neededSave = true;
+				}
+			}
+
+			if (!neededSave) {
+				log.debug("Unchanged file: {}", pomFile);
+				return false;
+			}
+
+			log.info("Modifying file: " + pomFile);
+			o.save(pomFile);
+			pomCache.saved(pomFile, o);
+			pomIndex.invalidate(pomFile);
+			return true;
+
+		} catch (final XmlException e) {
+			log.error("Could not process file: " + pomFile, e);
+		} catch (final IOException e) {
+			pomCache.invalidate(pomFile);
+			pomIndex.invalidate(pomFile);
+			log.error("Could not process file: " + pomFile, e);
+		}
+		return false;
+	}
+
+	/**
+	 * A single edit of a project file.
+	 */
+	protected interface PomEdit {
+		/**
+		 * @return <code>true</code> if the project was changed.
+		 */
+		boolean applyTo(Model project);
+
+		/**
+		 * @param project
+		 *            The located <code>project</code> element.
+		 * @return <code>true</code> if the project was changed.
+		 * @throws UnsupportedPatchException
+		 *             If the edit can not be expressed as text patch.
+		 */
+		boolean patch(XmlPatch.Element project) throws UnsupportedPatchException;
+	}
+
+	protected static class SetProjectVersion implements PomEdit {
+		private final String version;
+
+		public SetProjectVersion(final String version) {
+			this.version = version;
+		}
+
+		@Override
+		public boolean applyTo(final Model project) {
+			if (version.equals(trim(project.getVersion()))) {
+				return false;
+			}
+			project.setVersion(version);
+			return true;
+		}
+
+		@Override
+		public boolean patch(final XmlPatch.Element project) throws UnsupportedPatchException {
+			final XmlPatch.Element versionElement = project.getChild("version");
+			if (versionElement == null) {
+				throw new UnsupportedPatchException("Missing project version");
+			}
+			if (version.equals(versionElement.getText().trim())) {
+				return false;
+			}
+			versionElement.setText(version);
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + version + ")";
+		}
+	}
+
+	protected static class ChangeDependency implements PomEdit {
+		private final Artifact oldArtifact;
+		private final Artifact newArtifact;
+		/** Change the dependency in the <code>dependencyManagement</code>. */
+		private final boolean managed;
+
+		public ChangeDependency(final Artifact oldArtifact, final Artifact newArtifact, final boolean managed) {
+			this.oldArtifact = oldArtifact;
+			this.newArtifact = newArtifact;
+			this.managed = managed;
+		}
+
+		@Override
+		public boolean applyTo(final Model project) {
+			final org.apache.maven.pom.x400.Dependency[] dependencies;
+			if (!managed) {
+				dependencies = project.getDependencies() != null ? project.getDependencies().getDependencyArray() : null;
+			} else if (project.getDependencyManagement() != null
+					&& project.getDependencyManagement().getDependencies() != null) {
+				dependencies = project.getDependencyManagement().getDependencies().getDependencyArray();
+			} else {
+				dependencies = null;
+			}
+			if (dependencies == null) {
+				return false;
+			}
+			boolean changed = false;
+			for (final org.apache.maven.pom.x400.Dependency dep : dependencies) {
+				if (oldArtifact.getGroup().equals(trim(dep.getGroupId()))
+						&& oldArtifact.getArtifact().equals(trim(dep.getArtifactId()))
+						&& oldArtifact.getVersion().equals(trim(dep.getVersion()))) {
+
+					if (!newArtifact.getGroup().equals(trim(dep.getGroupId()))) {
+						dep.setGroupId(newArtifact.getGroup());
+						changed = true;
+					}
+
+					if (!newArtifact.getArtifact().equals(trim(dep.getArtifactId()))) {
+						dep.setArtifactId(newArtifact.getArtifact());
+						changed = true;
+					}
+
+					if (!newArtifact.getVersion().equals(trim(dep.getVersion()))) {
+						dep.setVersion(newArtifact.getVersion());
+						changed = true;
+					}
+				}
+			}
+			return changed;
+		}
+
+		@Override
+		public boolean patch(final XmlPatch.Element project) throws UnsupportedPatchException {
+			final XmlPatch.Element parent = managed ? project.getChild("dependencyManagement") : project;
+			final XmlPatch.Element dependencies = parent != null ? parent.getChild("dependencies") : null;
+			if (dependencies == null) {
+				return false;
+			}
+			boolean changed = false;
+			for (final XmlPatch.Element dep : dependencies.getChildren("dependency")) {
+				final XmlPatch.Element groupId = dep.getChild("groupId");
+				final XmlPatch.Element artifactId = dep.getChild("artifactId");
+				final XmlPatch.Element version = dep.getChild("version");
+				if (oldArtifact.getGroup().equals(text(groupId))
+						&& oldArtifact.getArtifact().equals(text(artifactId))
+						&& oldArtifact.getVersion().equals(text(version))) {
+					changed |= patchText(groupId, newArtifact.getGroup());
+					changed |= patchText(artifactId, newArtifact.getArtifact());
+					changed |= patchText(version, newArtifact.getVersion());
+				}
+			}
+			return changed;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + (managed ? "managed " : "") + oldArtifact + " -> " + newArtifact + ")";
+		}
+	}
+
+	protected static class ChangePlugin implements PomEdit {
+		private final Optional<String> profile;
+		/** Change the plugin in the <code>pluginManagement</code>. */
+		private final boolean managed;
+		private final Artifact oldArtifact;
+		private final String version;
+
+		public ChangePlugin(final Optional<String> profile, final boolean managed, final Artifact oldArtifact,
+				final String version) {
+			this.profile = profile;
+			this.managed = managed;
+			this.oldArtifact = oldArtifact;
+			this.version = version;
+		}
+
+		protected boolean matches(final String groupId, final String artifactId, final String version) {
+			return oldArtifact.getGroup().equals(groupId != null ? groupId : UsedPlugin.DEFAULT_GROUP_ID)
+					&& oldArtifact.getArtifact().equals(artifactId) && oldArtifact.getVersion().equals(version);
+		}
+
+		@Override
+		public boolean applyTo(final Model project) {
+			boolean changed = false;
+			for (final Plugin plugin : MavenXmlSupport.instance.getPluginArray(project, profile, managed)) {
+				if (matches(trim(plugin.getGroupId()), trim(plugin.getArtifactId()), trim(plugin.getVersion()))
+						&& !version.equals(trim(plugin.getVersion()))) {
+					plugin.setVersion(version);
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		@Override
+		public boolean patch(final XmlPatch.Element project) throws UnsupportedPatchException {
+			XmlPatch.Element build = null;
+			if (!profile.isDefined()) {
+				build = project.getChild("build");
+			} else {
+				final XmlPatch.Element profiles = project.getChild("profiles");
+				if (profiles != null) {
+					for (final XmlPatch.Element p : profiles.getChildren("profile")) {
+						if (equal(profile.get(), text(p.getChild("id")))) {
+							build = p.getChild("build");
+						}
+					}
+				}
+			}
+			final XmlPatch.Element parent = managed && build != null ? build.getChild("pluginManagement") : build;
+			final XmlPatch.Element plugins = parent != null ? parent.getChild("plugins") : null;
+			if (plugins == null) {
+				return false;
+			}
+			boolean changed = false;
+			for (final XmlPatch.Element plugin : plugins.getChildren("plugin")) {
+				final XmlPatch.Element versionElement = plugin.getChild("version");
+				if (matches(text(plugin.getChild("groupId")), text(plugin.getChild("artifactId")), text(versionElement))) {
+					changed |= patchText(versionElement, version);
+				}
+			}
+			return changed;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + (managed ? "managed " : "") + oldArtifact + " -> " + version
+					+ (profile.isDefined() ? "," + profile.get() : "") + ")";
+		}
+	}
+
+	protected static class SetProperty implements PomEdit {
+		private final Optional<String> profile;
+		private final String name;
+		private final String value;
+
+		public SetProperty(final Optional<String> profile, final String name, final String value) {
+			this.profile = profile;
+			this.name = name;
+			this.value = value;
+		}
+
+		public boolean isSameProperty(final SetProperty other) {
+			return name.equals(other.name) && profile.isDefined() == other.profile.isDefined()
+					&& (!profile.isDefined() || equal(profile.get(), other.profile.get()));
+		}
+
+		@Override
+		public boolean applyTo(final Model project) {
+			XmlObject properties = null;
+			if (!profile.isDefined()) {
+				properties = project.getProperties();
+			} else if (project.getProfiles() != null) {
+				for (final Profile p : project.getProfiles().getProfileArray()) {
+					if (equal(profile.get(), trim(p.getId()))) {
+						properties = p.getProperties();
+					}
+				}
+			}
+			if (properties == null) {
+				return false;
+			}
+			final XmlCursor cursor = properties.newCursor();
+			try {
+				if (cursor.toFirstChild()) {
+					do {
+						if (name.equals(cursor.getName().getLocalPart())) {
+							if (value.equals(cursor.getTextValue().trim())) {
+								return false;
+							}
+							cursor.setTextValue(value);
+							return true;
+						}
+					} while (cursor.toNextSibling());
+				}
+			} finally {
+				cursor.dispose();
+			}
+			return false;
+		}
+
+		@Override
+		public boolean patch(final XmlPatch.Element project) throws UnsupportedPatchException {
+			XmlPatch.Element properties = null;
+			if (!profile.isDefined()) {
+				properties = project.getChild("properties");
+			} else {
+				final XmlPatch.Element profiles = project.getChild("profiles");
+				if (profiles != null) {
+					for (final XmlPatch.Element p : profiles.getChildren("profile")) {
+						if (equal(profile.get(), text(p.getChild("id")))) {
+							properties = p.getChild("properties");
+						}
+					}
+				}
+			}
+			if (properties == null) {
+				throw new UnsupportedPatchException("Missing properties");
+			}
+			return patchText(properties.getChild(name), value);
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + name + "=" + value + (profile.isDefined() ? "," + profile.get() : "") + ")";
+		}
+	}
+
+	protected static class SetDependencies implements PomEdit {
+		private final List<Dependency> dependencies;
+
+		public SetDependencies(final List<Dependency> dependencies) {
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public boolean applyTo(final Model project) {
+			if (sameDependencies(project.getDependencies())) {
+				return false;
+			}
+
+			project.setDependencies(Dependencies.Factory.newInstance(MavenXmlSupport.instance.createXmlOptions()));
+
+			for (final Dependency dep : dependencies) {
+
+				final org.apache.maven.pom.x400.Dependency mvnDep = project.getDependencies().addNewDependency();
+
+				mvnDep.setGroupId(dep.getDependencyArtifact().getGroup());
+				mvnDep.setArtifactId(dep.getDependencyArtifact().getArtifact());
+				if (!dep.getDependencyArtifact().getVersion().isEmpty()) {
+					// no version for managed dependencies
+					mvnDep.setVersion(dep.getDependencyArtifact().getVersion());
+				}
+				if (dep.getScope() != null) {
+					mvnDep.setScope(dep.getScope());
+				}
+				if (dep.getClassifier() != null) {
+					mvnDep.setClassifier(dep.getClassifier());
+				}
+				if (dep.getSystemPath() != null) {
+					mvnDep.setSystemPath(dep.getSystemPath());
+				}
+				if (dep.getExclusions().size() > 0) {
+					if (!mvnDep.isSetExclusions()) {
+						mvnDep.setExclusions(Exclusions.Factory.newInstance(MavenXmlSupport.instance.createXmlOptions()));
+					}
+					final Exclusions mvnExes = mvnDep.getExclusions();
+					for (final String e : dep.getExclusions()) {
+						final Exclusion mvnEx = mvnExes.addNewExclusion();
+						final String[] split = e.split(":");
+						mvnEx.setGroupId(split[0]);
+						mvnEx.setArtifactId(split[1]);
+					}
+				}
+
+			}
+			return true;
+		}
+
+		/**
+		 * Only supported, if the existing dependencies differ from the
+		 * dependencies to set in groupId, artifactId and version only.
+		 */
+		@Override
+		public boolean patch(final XmlPatch.Element project) throws UnsupportedPatchException {
+			final XmlPatch.Element existing = project.getChild("dependencies");
+			if (existing == null) {
+				throw new UnsupportedPatchException("Missing dependencies");
+			}
+			final List<XmlPatch.Element> mvnDeps = existing.getChildren("dependency");
+			if (mvnDeps.size() != dependencies.size()) {
+				throw new UnsupportedPatchException("Different number of dependencies");
+			}
+
+			int i = 0;
+			for (final Dependency dep : dependencies) {
+				final XmlPatch.Element mvnDep = mvnDeps.get(i++);
+				if (!scope(dep.getScope()).equals(scope(text(mvnDep.getChild("scope"))))
+						|| !equal(dep.getClassifier(), text(mvnDep.getChild("classifier")))
+						|| !equal(dep.getSystemPath(), text(mvnDep.getChild("systemPath")))) {
+					throw new UnsupportedPatchException("Changed dependency details");
+				}
+				final List<String> exclusions = new LinkedList<String>();
+				final XmlPatch.Element mvnExclusions = mvnDep.getChild("exclusions");
+				if (mvnExclusions != null) {
+					for (final XmlPatch.Element e : mvnExclusions.getChildren("exclusion")) {
+						exclusions.add(text(e.getChild("groupId")) + ":" + text(e.getChild("artifactId")));
+					}
+				}
+				if (!exclusions.equals(dep.getExclusions())) {
+					throw new UnsupportedPatchException("Changed dependency exclusions");
+				}
+			}
+
+			boolean changed = false;
+			i = 0;
+			for (final Dependency dep : dependencies) {
+				final XmlPatch.Element mvnDep = mvnDeps.get(i++);
+				final Artifact artifact = dep.getDependencyArtifact();
+				changed |= patchText(mvnDep.getChild("groupId"), artifact.getGroup());
+				changed |= patchText(mvnDep.getChild("artifactId"), artifact.getArtifact());
+				if (!artifact.getVersion().isEmpty() || mvnDep.getChild("version") != null) {
+					changed |= patchText(mvnDep.getChild("version"), artifact.getVersion());
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Check, if the existing dependencies already are exactly the
+		 * dependencies to set.
+		 */
+		protected boolean sameDependencies(final Dependencies existing) {
+			if (existing == null) {
+				return false;
+			}
+			final org.apache.maven.pom.x400.Dependency[] mvnDeps = existing.getDependencyArray();
+			if (mvnDeps.length != dependencies.size()) {
+				return false;
+			}
+			int i = 0;
+			for (final Dependency dep : dependencies) {
+				final org.apache.maven.pom.x400.Dependency mvnDep = mvnDeps[i++];
+				final Artifact artifact = dep.getDependencyArtifact();
+				if (!artifact.getGroup().equals(trim(mvnDep.getGroupId()))
+						|| !artifact.getArtifact().equals(trim(mvnDep.getArtifactId()))
+						|| !artifact.getVersion().equals(mvnDep.getVersion() != null ? mvnDep.getVersion().trim() : "")
+						|| !scope(dep.getScope()).equals(scope(trim(mvnDep.getScope())))
+						|| !equal(dep.getClassifier(), trim(mvnDep.getClassifier()))
+						|| !equal(dep.getSystemPath(), trim(mvnDep.getSystemPath()))) {
+					return false;
+				}
+				final List<String> exclusions = new LinkedList<String>();
+				if (mvnDep.getExclusions() != null) {
+					for (final Exclusion e : mvnDep.getExclusions().getExclusionArray()) {
+						exclusions.add(trim(e.getGroupId()) + ":" + trim(e.getArtifactId()));
+					}
+				}
+				if (!exclusions.equals(dep.getExclusions())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "(" + dependencies.size() + " dependencies)";
+		}
+	}
+
+	/**
+	 * The trimmed text of the element or <code>null</code>, if there is no
+	 * element.
+	 */
+	protected static String text(final XmlPatch.Element element) throws UnsupportedPatchException {
+		return element != null ? element.getText().trim() : null;
+	}
+
+	/**
+	 * Set the text of the element, if its trimmed text differs.
+	 *
+	 * @return <code>true</code> if the text was changed.
+	 */
+	protected static boolean patchText(final XmlPatch.Element element, final String value) throws UnsupportedPatchException {
+		if (element == null) {
+			throw new UnsupportedPatchException("Missing element");
+		}
+		if (value.equals(element.getText().trim())) {
+			return false;
+		}
+		element.setText(value);
+		return true;
+	}
+
+	/**
+	 * The given scope or the default scope <code>compile</code>.
+	 */
+	protected static String scope(final String scope) {
+		return scope != null ? scope : "compile";
+	}
+
+	protected static String trim(final String value) {
+		return value != null ? value.trim() : null;
+	}
+
+	protected static boolean equal(final String a, final String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
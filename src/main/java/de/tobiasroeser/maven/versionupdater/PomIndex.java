@@ -0,0 +1,965 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.pom.x400.Model;
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tobiasroeser.maven.shared.MavenStaxReader;
+import de.tobiasroeser.maven.shared.MavenXmlSupport;
+import de.tobiasroeser.maven.shared.PomDocumentCache;
+import de.tototec.utils.functional.Optional;
+
+/**
+ * An index of extracted {@link ProjectInfo}s, keyed by the canonical path of
+ * the project file. The location of all indexed artifacts is that canonical
+ * path.
+ *
+ * An entry is valid as long as the project file has the same size and
+ * modification time. If only the modification time changed, the content hash
+ * decides. Only changed project files are parsed again. Projects, which
+ * inherit from a local parent, are also parsed again, when the coordinates,
+ * resolved properties or dependencies of the parent changed.
+ *
+ * Parents are located by their <code>relativePath</code> or, if not found
+ * there, among the already indexed projects. Imported projects (BOMs) are
+ * located among the already indexed projects. If a parent or import is
+ * indexed later, the projects referring to it are parsed again on their next
+ * access. As each parent and BOM is indexed itself, all projects referring
+ * to it reuse its resolved properties, inherited dependencies and
+ * {@link DependencyManagement}.
+ *
+ * Projects are also parsed again, when the dependency management of an
+ * imported project changed. The parent and imports of an entry are checked
+ * only once per generation of the index, which changes, when something
+ * inheritable changed or with {@link #revalidate()}.
+ *
+ * When created with an index file, the index can be loaded from and saved to
+ * disk, so that it survives the current run.
+ *
+ * This class is thread-safe.
+ */
+public class PomIndex implements ProjectResolver {
+
+	private static final int MAGIC = 0x4d565549; // "MVUI"
+	private static final int FORMAT_VERSION = 5;
+	private static final byte[] NO_HASH = new byte[0];
+
+	private final Logger log = LoggerFactory.getLogger(PomIndex.class);
+
+	private final PomDocumentCache pomCache;
+	private final File indexFile;
+	private final boolean useXmlBeans;
+	private final ConcurrentMap<String, IndexEntry> entries = new ConcurrentHashMap<String, IndexEntry>();
+	/** Map(ga-key:canonical-path) of the indexed projects. */
+	private final ConcurrentMap<String, String> locations = new ConcurrentHashMap<String, String>();
+	/**
+	 * Map(canonical-path-of-parent + profiles:effective-dependencies-of-parent).
+	 * Values are removed, when an entry in the parent chain changes.
+	 */
+	private final ConcurrentMap<String, List<Dependency>> inheritedDependencies = new ConcurrentHashMap<String, List<Dependency>>();
+	/** Map(project:effective-dependency-management) of the indexed projects. */
+	private final ConcurrentMap<ProjectInfo, DependencyManagement> managements = new ConcurrentHashMap<ProjectInfo, DependencyManagement>();
+	private volatile boolean dirty = false;
+	/**
+	 * Increased, when the inheritable content of an entry changed or an entry
+	 * was added or removed. See {@link IndexEntry#validated}.
+	 */
+	private final AtomicLong generation = new AtomicLong(1);
+	/** The canonical paths of the project files currently read by this thread. */
+	private final ThreadLocal<Set<String>> reading = new ThreadLocal<Set<String>>() {
+		@Override
+		protected Set<String> initialValue() {
+			return new HashSet<String>();
+		}
+	};
+	/**
+	 * The ga-keys of the parents and imports, which could not be found while
+	 * reading the current project file in this thread.
+	 */
+	private final ThreadLocal<List<String>> missing = new ThreadLocal<List<String>>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param pomCache
+	 *            The cache used to parse changed project files, when
+	 *            <code>useXmlBeans</code> is set.
+	 * @param indexFile
+	 *            The file to persist the index. If <code>null</code>, the
+	 *            index is kept in memory only.
+	 * @param useXmlBeans
+	 *            If <code>true</code>, read project files with XmlBeans
+	 *            instead of the (faster) {@link MavenStaxReader}.
+	 */
+	public PomIndex(final PomDocumentCache pomCache, final File indexFile, final boolean useXmlBeans) {
+		this.pomCache = pomCache;
+		this.indexFile = indexFile;
+		this.useXmlBeans = useXmlBeans;
+	}
+
+	/**
+	 * The location of the index file for the given workspace directories
+	 * inside <code>indexDir</code>.
+	 */
+	public static File indexFileFor(final File indexDir, final List<String> dirs) throws IOException {
+		final StringBuilder key = new StringBuilder();
+		for (final String dir : dirs) {
+			key.append(new File(dir).getCanonicalPath()).append("\n");
+		}
+		return new File(indexDir, toHex(digest(key.toString().getBytes("UTF-8"))) + ".idx");
+	}
+
+	/**
+	 * Get the extracted information of the given project file. If the
+	 * project file is unknown or has changed, it will be parsed.
+	 */
+	public ProjectInfo getProjectInfo(final File pomFile) throws XmlException, IOException {
+		final File file = pomFile.getCanonicalFile();
+		final String key = file.getPath();
+		final long size = file.length();
+		final long lastModified = file.lastModified();
+
+		byte[] hash = null;
+
+		final IndexEntry entry = entries.get(key);
+		if (entry != null) {
+			if (entry.size == size && entry.lastModified == lastModified) {
+				if (areReferencesUnchanged(entry)) {
+					hits.incrementAndGet();
+					return entry.info;
+				}
+				hash = entry.hash;
+			} else if (entry.size == size && entry.hash.length > 0) {
+				// touched but maybe unchanged
+				hash = hash(file);
+				if (Arrays.equals(hash, entry.hash) && areReferencesUnchanged(entry)) {
+					hits.incrementAndGet();
+					put(key, new IndexEntry(entry.info, size, lastModified, hash, entry.referencesHash, entry.missing));
+					return entry.info;
+				}
+			}
+			log.debug("Project file or a referenced project changed since it was indexed: {}", file);
+		}
+
+		misses.incrementAndGet();
+		if (hash == null) {
+			// the hash is only needed, when we persist the index
+			hash = indexFile != null ? hash(file) : NO_HASH;
+		}
+
+		final ProjectInfo info;
+		final List<String> missingReferences = new LinkedList<String>();
+		final List<String> outerMissing = missing.get();
+		reading.get().add(key);
+		missing.set(missingReferences);
+		try {
+			info = useXmlBeans ? readWithXmlBeans(file) : readWithStax(file);
+		} finally {
+			reading.get().remove(key);
+			missing.set(outerMissing);
+		}
+
+		put(key, new IndexEntry(info, size, lastModified, hash, referencesHash(info), missingReferences));
+		return info;
+	}
+
+	protected void put(final String key, final IndexEntry entry) {
+		final IndexEntry old = entries.put(key, entry);
+		if (old == null || old.inheritanceHash != entry.inheritanceHash) {
+			// a new entry may be a missing parent or import of others
+			generation.incrementAndGet();
+		}
+		if (old != null && old.info != entry.info) {
+			managements.remove(old.info);
+			removeInheritedDependencies(key);
+		}
+		locations.put(entry.info.getArtifact().getGaKey(), key);
+		dirty = true;
+	}
+
+	/**
+	 * Remove the cached inherited dependencies of all parents, which are or
+	 * inherit from the project file <code>key</code>.
+	 */
+	protected void removeInheritedDependencies(final String key) {
+		for (final String cacheKey : inheritedDependencies.keySet()) {
+			String path = cacheKey.substring(0, cacheKey.indexOf('\n'));
+			final Set<String> seen = new HashSet<String>();
+			while (path != null && seen.add(path)) {
+				final IndexEntry entry = entries.get(path);
+				if (path.equals(key) || entry == null) {
+					inheritedDependencies.remove(cacheKey);
+					break;
+				}
+				final File parentLocation = entry.info.getParentLocation();
+				path = parentLocation != null ? parentLocation.getPath() : null;
+			}
+		}
+	}
+
+	/**
+	 * Check the parent and imported projects of all entries again on their
+	 * next access, e.g. when the project files may have changed since the
+	 * last run.
+	 */
+	public void revalidate() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Check, that the parent and imported projects of an entry are still the
+	 * same, and that no missing parent or import was indexed in the meantime.
+	 * A successful check holds for the current generation of the index.
+	 */
+	protected boolean areReferencesUnchanged(final IndexEntry entry) throws XmlException, IOException {
+		final long current = generation.get();
+		final List<File> references = new LinkedList<File>(entry.info.getImportLocations());
+		if (entry.info.getParentLocation() != null) {
+			references.add(entry.info.getParentLocation());
+		}
+		for (final File reference : references) {
+			if (reading.get().contains(reference.getPath())) {
+				return false;
+			}
+		}
+		if (entry.validated == current) {
+			return true;
+		}
+
+		for (final String gaKey : entry.missing) {
+			if (locations.containsKey(gaKey)) {
+				return false;
+			}
+		}
+		for (final File reference : references) {
+			if (!reference.isFile()) {
+				return false;
+			}
+		}
+		if (references.isEmpty() || referencesHash(entry.info) == entry.referencesHash) {
+			entry.validated = current;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A hash of everything a project inherits from its parent and imports.
+	 */
+	protected int referencesHash(final ProjectInfo info) throws XmlException, IOException {
+		int hash = 0;
+		if (info.getParentLocation() != null) {
+			hash = inheritanceHash(info.getParentLocation());
+		}
+		for (final File importLocation : info.getImportLocations()) {
+			hash = 31 * hash + inheritanceHash(importLocation);
+		}
+		return hash;
+	}
+
+	/**
+	 * The inheritance hash of the project file at <code>location</code>,
+	 * which is computed only once per indexed entry.
+	 */
+	protected int inheritanceHash(final File location) throws XmlException, IOException {
+		final ProjectInfo project = getProjectInfo(location);
+		final IndexEntry entry = entries.get(project.getArtifact().getLocation().getPath());
+		if (entry != null && entry.info == project) {
+			return entry.inheritanceHash;
+		}
+		return inheritanceHash(project, 0);
+	}
+
+	/**
+	 * A hash of everything a project inherits from or imports of
+	 * <code>project</code>, including what <code>project</code> itself
+	 * inherited or imported, given as <code>referencesHash</code>.
+	 */
+	protected static int inheritanceHash(final ProjectInfo project, final int referencesHash) {
+		int hash = project.getArtifact().toString().hashCode();
+		hash = 31 * hash + project.getProperties().hashCode();
+		for (final Dependency dep : project.getDependencies()) {
+			hash = 31 * hash + dependencyHash(dep);
+		}
+		for (final Dependency dep : project.getDependencyManagement()) {
+			hash = 31 * hash + dependencyHash(dep);
+		}
+		return 31 * hash + referencesHash;
+	}
+
+	protected static int dependencyHash(final Dependency dep) {
+		int hash = dependencyKey(dep).hashCode();
+		hash = 31 * hash + dep.getDependencyArtifact().getVersion().hashCode();
+		hash = 31 * hash + dep.getScope().hashCode();
+		hash = 31 * hash + (dep.getProfile().isDefined() ? String.valueOf(dep.getProfile().get()).hashCode() : 0);
+		return hash;
+	}
+
+	/**
+	 * Find the parent in the local file system, at <code>relativePath</code>
+	 * (default: <code>../pom.xml</code>), or among the already indexed
+	 * projects. The found project must have the declared groupId and
+	 * artifactId.
+	 */
+	@Override
+	public ProjectInfo resolveParent(final File pomFile, final String groupId, final String artifactId, final String version,
+			final String relativePath) {
+		if (groupId == null || artifactId == null) {
+			return null;
+		}
+		final String gaKey = groupId.trim() + ":" + artifactId.trim();
+
+		ProjectInfo parent = null;
+		// an empty relativePath disables the lookup in the file system
+		if (relativePath == null || !relativePath.trim().isEmpty()) {
+			File parentFile = new File(pomFile.getParentFile(), relativePath != null ? relativePath.trim() : "../pom.xml");
+			if (parentFile.isDirectory()) {
+				parentFile = new File(parentFile, "pom.xml");
+			}
+			if (parentFile.isFile()) {
+				parent = readParent(pomFile, parentFile, gaKey);
+			}
+		}
+		if (parent == null) {
+			final String indexed = locations.get(gaKey);
+			if (indexed != null) {
+				parent = readParent(pomFile, new File(indexed), gaKey);
+			}
+		}
+
+		if (parent == null) {
+			log.debug("Could not find parent {} of project: {}", gaKey, pomFile);
+			addMissing(gaKey);
+		} else if (version != null && !parent.getArtifact().getVersion().equals(version.trim())) {
+			log.debug("Using local parent {} of project {} with different version {}",
+					new Object[] { parent.getArtifact(), pomFile, version });
+		}
+		return parent;
+	}
+
+	/**
+	 * Find an imported project among the already indexed projects.
+	 */
+	@Override
+	public ProjectInfo resolveImport(final File pomFile, final String groupId, final String artifactId, final String version) {
+		final String gaKey = groupId + ":" + artifactId;
+		final String indexed = locations.get(gaKey);
+		final ProjectInfo imported = indexed != null ? readParent(pomFile, new File(indexed), gaKey) : null;
+		if (imported == null) {
+			addMissing(gaKey);
+		} else if (!imported.getArtifact().getVersion().equals(version)) {
+			log.debug("Using local project {} imported by project {} with different version {}",
+					new Object[] { imported.getArtifact(), pomFile, version });
+		}
+		return imported;
+	}
+
+	protected void addMissing(final String gaKey) {
+		final List<String> missingReferences = missing.get();
+		if (missingReferences != null) {
+			missingReferences.add(gaKey);
+		}
+	}
+
+	/**
+	 * The effective dependency management of the project, built once per
+	 * indexed project and shared by all projects importing or inheriting it.
+	 */
+	@Override
+	public DependencyManagement getDependencyManagement(final ProjectInfo project) {
+		DependencyManagement management = managements.get(project);
+		if (management == null) {
+			final List<ProjectInfo> imports = new ArrayList<ProjectInfo>(project.getImportLocations().size());
+			ProjectInfo parent = null;
+			try {
+				for (final File importLocation : project.getImportLocations()) {
+					imports.add(getProjectInfo(importLocation));
+				}
+				if (project.getParentLocation() != null) {
+					parent = getProjectInfo(project.getParentLocation());
+				}
+			} catch (final XmlException e) {
+				log.debug("Could not read a project referenced by: " + project.getArtifact().getLocation(), e);
+			} catch (final IOException e) {
+				log.debug("Could not read a project referenced by: " + project.getArtifact().getLocation(), e);
+			}
+			management = MavenXmlSupport.instance.createDependencyManagement(project.getDependencyManagement(), imports,
+					parent, this);
+			managements.put(project, management);
+		}
+		return management;
+	}
+
+	/**
+	 * @return The project at <code>parentFile</code>, if it is the project
+	 *         <code>gaKey</code>, else <code>null</code>.
+	 */
+	protected ProjectInfo readParent(final File pomFile, final File parentFile, final String gaKey) {
+		try {
+			if (reading.get().contains(parentFile.getCanonicalPath())) {
+				log.warn("Cyclic parent reference in project file: " + pomFile);
+				return null;
+			}
+			final ProjectInfo parent = getProjectInfo(parentFile);
+			if (!parent.getArtifact().getGaKey().equals(gaKey)) {
+				log.debug("Project {} at parent location of {} is not the declared parent", parent.getArtifact(), pomFile);
+				return null;
+			}
+			return parent;
+		} catch (final XmlException e) {
+			log.debug("Could not read parent of project: " + pomFile, e);
+		} catch (final IOException e) {
+			log.debug("Could not read parent of project: " + pomFile, e);
+		}
+		return null;
+	}
+
+	/**
+	 * The dependencies inherited from the parents of the project, i.e. the
+	 * effective dependencies of its parent. The result is shared by all
+	 * projects with the same parent.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<Dependency> getInheritedDependencies(final ProjectInfo info, final List<String> profiles)
+			throws XmlException, IOException {
+		final File parentLocation = info.getParentLocation();
+		if (parentLocation == null) {
+			return Collections.emptyList();
+		}
+		final String key = parentLocation.getPath() + "\n" + profiles;
+		List<Dependency> inherited = inheritedDependencies.get(key);
+		if (inherited == null) {
+			inherited = Collections.unmodifiableList(getEffectiveDependencies(getProjectInfo(parentLocation), profiles));
+			inheritedDependencies.put(key, inherited);
+		}
+		return inherited;
+	}
+
+	/**
+	 * The direct dependencies of the project and the given profiles, followed
+	 * by the inherited dependencies, which are not overridden by the project.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<Dependency> getEffectiveDependencies(final ProjectInfo info, final List<String> profiles)
+			throws XmlException, IOException {
+		final List<Dependency> dependencies = info.getDependencies(profiles);
+		final List<Dependency> inherited = getInheritedDependencies(info, profiles);
+		if (inherited.isEmpty()) {
+			return dependencies;
+		}
+		final Set<String> declared = new HashSet<String>();
+		for (final Dependency dep : dependencies) {
+			declared.add(dependencyKey(dep));
+		}
+		for (final Dependency dep : inherited) {
+			if (!declared.contains(dependencyKey(dep))) {
+				dependencies.add(dep);
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * The key identifying a dependency in the dependencies section:
+	 * <code>groupId:artifactId:classifier</code>.
+	 */
+	protected static String dependencyKey(final Dependency dependency) {
+		final Artifact artifact = dependency.getDependencyArtifact();
+		return artifact.getGroup() + ":" + artifact.getArtifact() + ":"
+				+ (dependency.getClassifier() != null ? dependency.getClassifier() : "");
+	}
+
+	/**
+	 * Drop the entry of <code>pomFile</code>, e.g. after it was modified.
+	 */
+	public void invalidate(final File pomFile) {
+		try {
+			final IndexEntry old = entries.remove(pomFile.getCanonicalPath());
+			if (old != null) {
+				generation.incrementAndGet();
+				managements.remove(old.info);
+				removeInheritedDependencies(old.info.getArtifact().getLocation().getPath());
+				dirty = true;
+			}
+		} catch (final IOException e) {
+			log.debug("Could not invalidate indexed project file: " + pomFile, e);
+		}
+	}
+
+	protected ProjectInfo readWithStax(final File file) throws XmlException, IOException {
+		try {
+			return MavenStaxReader.instance.readProjectInfo(file, this);
+		} catch (final XMLStreamException e) {
+			throw new XmlException(e.getMessage(), e);
+		}
+	}
+
+	protected ProjectInfo readWithXmlBeans(final File file) throws XmlException, IOException {
+		final Model project = pomCache.parse(file).getProject();
+		return MavenXmlSupport.instance.readProjectInfo(project, file, this);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(size=" + size() + ",hits=" + getHits() + ",misses=" + getMisses() + ",file=" + indexFile
+				+ ")";
+	}
+
+	/**
+	 * Load the index from the index file, if it exists. An unreadable index
+	 * file is ignored.
+	 */
+	public void load() {
+		if (indexFile == null || !indexFile.isFile()) {
+			return;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+					log.debug("Ignoring index file with unsupported format: {}", indexFile);
+					return;
+				}
+				final int count = in.readInt();
+				for (int i = 0; i < count; ++i) {
+					final String path = in.readUTF();
+					final IndexEntry entry = readEntry(in, new File(path));
+					entries.put(path, entry);
+					locations.put(entry.info.getArtifact().getGaKey(), path);
+				}
+				log.debug("Loaded {} entries from index file: {}", count, indexFile);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			log.warn("Could not read index file: " + indexFile + ". Ignoring it.", e);
+			entries.clear();
+			locations.clear();
+			managements.clear();
+		}
+		dirty = false;
+	}
+
+	/**
+	 * Write the index to the index file, if it has changed. Entries of no
+	 * longer existing project files are dropped.
+	 */
+	public void save() {
+		if (indexFile == null || !dirty) {
+			return;
+		}
+
+		final File dir = indexFile.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			log.warn("Could not create directory for index file: " + dir);
+			return;
+		}
+
+		final File tmpFile = new File(dir, indexFile.getName() + ".tmp");
+		try {
+			final Map<String, IndexEntry> toSave = new LinkedHashMap<String, IndexEntry>();
+			for (final Entry<String, IndexEntry> e : entries.entrySet()) {
+				if (new File(e.getKey()).isFile()) {
+					toSave.put(e.getKey(), e.getValue());
+				}
+			}
+
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(toSave.size());
+				for (final Entry<String, IndexEntry> e : toSave.entrySet()) {
+					out.writeUTF(e.getKey());
+					writeEntry(out, e.getValue());
+				}
+			} finally {
+				out.close();
+			}
+
+			if (indexFile.exists() && !indexFile.delete()) {
+				throw new IOException("Could not replace index file: " + indexFile);
+			}
+			if (!tmpFile.renameTo(indexFile)) {
+				throw new IOException("Could not rename " + tmpFile + " to " + indexFile);
+			}
+			dirty = false;
+			log.debug("Saved {} entries to index file: {}", toSave.size(), indexFile);
+
+		} catch (final IOException e) {
+			log.warn("Could not write index file: " + indexFile, e);
+			tmpFile.delete();
+		}
+	}
+
+	private IndexEntry readEntry(final DataInputStream in, final File pomFile) throws IOException {
+		final long size = in.readLong();
+		final long lastModified = in.readLong();
+		final byte[] hash = new byte[in.readUnsignedShort()];
+		in.readFully(hash);
+		final String parentPath = readNullableUTF(in);
+		final int referencesHash = in.readInt();
+
+		final LocalArtifact artifact = new LocalArtifact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), pomFile);
+
+		final Map<String, PropertyDefinition> properties = new LinkedHashMap<String, PropertyDefinition>();
+		final int propertyCount = in.readInt();
+		for (int i = 0; i < propertyCount; ++i) {
+			final PropertyDefinition property = readProperty(in);
+			properties.put(property.getName(), property);
+		}
+
+		final Map<String, List<String>> profileModules = new LinkedHashMap<String, List<String>>();
+		final int profileCount = in.readInt();
+		for (int i = 0; i < profileCount; ++i) {
+			final String profile = readNullableUTF(in);
+			final int moduleCount = in.readInt();
+			final List<String> modules = new ArrayList<String>(moduleCount);
+			for (int j = 0; j < moduleCount; ++j) {
+				modules.add(in.readUTF());
+			}
+			profileModules.put(profile, modules);
+		}
+
+		final int depCount = in.readInt();
+		final List<Dependency> dependencies = new ArrayList<Dependency>(depCount);
+		for (int i = 0; i < depCount; ++i) {
+			dependencies.add(readDependency(in, artifact));
+		}
+
+		final int managedCount = in.readInt();
+		final List<Dependency> dependencyManagement = new ArrayList<Dependency>(managedCount);
+		for (int i = 0; i < managedCount; ++i) {
+			dependencyManagement.add(readDependency(in, artifact));
+		}
+
+		final int importCount = in.readInt();
+		final List<File> importLocations = new ArrayList<File>(importCount);
+		for (int i = 0; i < importCount; ++i) {
+			importLocations.add(new File(in.readUTF()));
+		}
+
+		final int missingCount = in.readInt();
+		final List<String> missingReferences = new ArrayList<String>(missingCount);
+		for (int i = 0; i < missingCount; ++i) {
+			missingReferences.add(in.readUTF());
+		}
+
+		final int pluginCount = in.readInt();
+		final List<UsedPlugin> plugins = new ArrayList<UsedPlugin>(pluginCount);
+		for (int i = 0; i < pluginCount; ++i) {
+			plugins.add(readPlugin(in, artifact));
+		}
+
+		final File parentLocation = parentPath != null ? new File(parentPath) : null;
+		return new IndexEntry(new ProjectInfo(artifact, dependencies, profileModules, properties, parentLocation,
+				dependencyManagement, importLocations, plugins), size, lastModified, hash, referencesHash, missingReferences);
+	}
+
+	private UsedPlugin readPlugin(final DataInputStream in, final LocalArtifact project) throws IOException {
+		final Artifact pluginArtifact = new Artifact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+		final Optional<String> profile = in.readBoolean() ? Optional.some(readNullableUTF(in)) : Optional.<String> none();
+		final boolean managed = in.readBoolean();
+		final String changeProtectBecause = readNullableUTF(in);
+		final String declaredVersion = readNullableUTF(in);
+		final PropertyDefinition versionProperty = in.readBoolean() ? readProperty(in) : null;
+
+		final UsedPlugin plugin = new UsedPlugin(pluginArtifact, project, profile, managed);
+		if (changeProtectBecause != null) {
+			plugin.addChangeProtectBecause(changeProtectBecause);
+		}
+		plugin.setDeclaredVersion(declaredVersion);
+		plugin.setVersionProperty(versionProperty);
+		return plugin;
+	}
+
+	private Dependency readDependency(final DataInputStream in, final LocalArtifact project) throws IOException {
+		final Artifact depArtifact = new Artifact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+		final String classifier = readNullableUTF(in);
+		final String scope = in.readUTF();
+		final String systemPath = readNullableUTF(in);
+		final Optional<String> profile = in.readBoolean() ? Optional.some(readNullableUTF(in)) : Optional.<String> none();
+		final int exclusionCount = in.readInt();
+		final List<String> exclusions = new LinkedList<String>();
+		for (int j = 0; j < exclusionCount; ++j) {
+			exclusions.add(in.readUTF());
+		}
+		final String changeProtectBecause = readNullableUTF(in);
+		final String declaredVersion = readNullableUTF(in);
+		final PropertyDefinition versionProperty = in.readBoolean() ? readProperty(in) : null;
+		final boolean managed = in.readBoolean();
+		Dependency managedBy = null;
+		if (in.readBoolean()) {
+			final String group = in.readUTF();
+			final String artifact = in.readUTF();
+			final String version = in.readUTF();
+			final String packaging = in.readUTF();
+			managedBy = readDependency(in, new LocalArtifact(group, artifact, version, packaging, new File(in.readUTF())));
+		}
+
+		final Dependency dependency = new Dependency(depArtifact, project, profile, classifier, scope, systemPath, exclusions);
+		if (changeProtectBecause != null) {
+			dependency.addChangeProtectBecause(changeProtectBecause);
+		}
+		dependency.setDeclaredVersion(declaredVersion);
+		dependency.setVersionProperty(versionProperty);
+		dependency.setManaged(managed);
+		dependency.setManagedBy(managedBy);
+		return dependency;
+	}
+
+	private void writeEntry(final DataOutputStream out, final IndexEntry entry) throws IOException {
+		out.writeLong(entry.size);
+		out.writeLong(entry.lastModified);
+		out.writeShort(entry.hash.length);
+		out.write(entry.hash);
+		final File parentLocation = entry.info.getParentLocation();
+		writeNullableUTF(out, parentLocation != null ? parentLocation.getPath() : null);
+		out.writeInt(entry.referencesHash);
+
+		final LocalArtifact artifact = entry.info.getArtifact();
+		out.writeUTF(artifact.getGroup());
+		out.writeUTF(artifact.getArtifact());
+		out.writeUTF(artifact.getVersion());
+		out.writeUTF(artifact.getPackaging());
+
+		final Map<String, PropertyDefinition> properties = entry.info.getProperties();
+		out.writeInt(properties.size());
+		for (final PropertyDefinition property : properties.values()) {
+			writeProperty(out, property);
+		}
+
+		final Map<String, List<String>> profileModules = entry.info.getProfileModules();
+		out.writeInt(profileModules.size());
+		for (final Entry<String, List<String>> e : profileModules.entrySet()) {
+			writeNullableUTF(out, e.getKey());
+			out.writeInt(e.getValue().size());
+			for (final String module : e.getValue()) {
+				out.writeUTF(module);
+			}
+		}
+
+		final List<Dependency> dependencies = entry.info.getDependencies();
+		out.writeInt(dependencies.size());
+		for (final Dependency dep : dependencies) {
+			writeDependency(out, dep);
+		}
+
+		final List<Dependency> dependencyManagement = entry.info.getDependencyManagement();
+		out.writeInt(dependencyManagement.size());
+		for (final Dependency dep : dependencyManagement) {
+			writeDependency(out, dep);
+		}
+
+		final List<File> importLocations = entry.info.getImportLocations();
+		out.writeInt(importLocations.size());
+		for (final File importLocation : importLocations) {
+			out.writeUTF(importLocation.getPath());
+		}
+
+		out.writeInt(entry.missing.size());
+		for (final String gaKey : entry.missing) {
+			out.writeUTF(gaKey);
+		}
+
+		final List<UsedPlugin> plugins = entry.info.getPlugins();
+		out.writeInt(plugins.size());
+		for (final UsedPlugin plugin : plugins) {
+			writePlugin(out, plugin);
+		}
+	}
+
+	private void writePlugin(final DataOutputStream out, final UsedPlugin plugin) throws IOException {
+		final Artifact pluginArtifact = plugin.getPluginArtifact();
+		out.writeUTF(pluginArtifact.getGroup());
+		out.writeUTF(pluginArtifact.getArtifact());
+		out.writeUTF(pluginArtifact.getVersion());
+		out.writeUTF(pluginArtifact.getPackaging());
+		out.writeBoolean(plugin.getProfile().isDefined());
+		if (plugin.getProfile().isDefined()) {
+			writeNullableUTF(out, plugin.getProfile().get());
+		}
+		out.writeBoolean(plugin.isManaged());
+		writeNullableUTF(out, plugin.getChangeProtectBecause());
+		writeNullableUTF(out, plugin.getDeclaredVersion().equals(pluginArtifact.getVersion()) ? null : plugin.getDeclaredVersion());
+		out.writeBoolean(plugin.getVersionProperty().isDefined());
+		if (plugin.getVersionProperty().isDefined()) {
+			writeProperty(out, plugin.getVersionProperty().get());
+		}
+	}
+
+	private void writeDependency(final DataOutputStream out, final Dependency dep) throws IOException {
+		final Artifact depArtifact = dep.getDependencyArtifact();
+		out.writeUTF(depArtifact.getGroup());
+		out.writeUTF(depArtifact.getArtifact());
+		out.writeUTF(depArtifact.getVersion());
+		out.writeUTF(depArtifact.getPackaging());
+		writeNullableUTF(out, dep.getClassifier());
+		out.writeUTF(dep.getScope());
+		writeNullableUTF(out, dep.getSystemPath());
+		out.writeBoolean(dep.getProfile().isDefined());
+		if (dep.getProfile().isDefined()) {
+			writeNullableUTF(out, dep.getProfile().get());
+		}
+		out.writeInt(dep.getExclusions().size());
+		for (final String exclusion : dep.getExclusions()) {
+			out.writeUTF(exclusion);
+		}
+		writeNullableUTF(out, dep.getChangeProtectBecause());
+		writeNullableUTF(out, dep.getDeclaredVersion().equals(depArtifact.getVersion()) ? null : dep.getDeclaredVersion());
+		out.writeBoolean(dep.getVersionProperty().isDefined());
+		if (dep.getVersionProperty().isDefined()) {
+			writeProperty(out, dep.getVersionProperty().get());
+		}
+		out.writeBoolean(dep.isManaged());
+		out.writeBoolean(dep.getManagedBy().isDefined());
+		if (dep.getManagedBy().isDefined()) {
+			final Dependency managedBy = dep.getManagedBy().get();
+			final LocalArtifact project = managedBy.getProject();
+			out.writeUTF(project.getGroup());
+			out.writeUTF(project.getArtifact());
+			out.writeUTF(project.getVersion());
+			out.writeUTF(project.getPackaging());
+			out.writeUTF(project.getLocation().getPath());
+			writeDependency(out, managedBy);
+		}
+	}
+
+	private static PropertyDefinition readProperty(final DataInputStream in) throws IOException {
+		final String name = in.readUTF();
+		final String value = in.readUTF();
+		final File location = new File(in.readUTF());
+		final String profile = readNullableUTF(in);
+		return new PropertyDefinition(name, value, location, Optional.lift(profile));
+	}
+
+	private static void writeProperty(final DataOutputStream out, final PropertyDefinition property) throws IOException {
+		out.writeUTF(property.getName());
+		out.writeUTF(property.getValue());
+		out.writeUTF(property.getLocation().getPath());
+		writeNullableUTF(out, property.getProfile().isDefined() ? property.getProfile().get() : null);
+	}
+
+	private static String readNullableUTF(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeNullableUTF(final DataOutputStream out, final String string) throws IOException {
+		out.writeBoolean(string != null);
+		if (string != null) {
+			out.writeUTF(string);
+		}
+	}
+
+	private static byte[] hash(final File file) throws IOException {
+		final MessageDigest digest = newDigest();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buf = new byte[8192];
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				digest.update(buf, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	private static byte[] digest(final byte[] bytes) {
+		return newDigest().digest(bytes);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not supported by this JVM", e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	private static class IndexEntry {
+		final ProjectInfo info;
+		final long size;
+		final long lastModified;
+		final byte[] hash;
+		/** The hash of the parent and imports at the time of reading. */
+		final int referencesHash;
+		/** The ga-keys of the parent and imports, which were not found. */
+		final List<String> missing;
+		/** The hash of what other projects inherit from or import of this one. */
+		final int inheritanceHash;
+		/**
+		 * The generation of the index, in which the parent and imports were
+		 * last found unchanged.
+		 */
+		volatile long validated = 0;
+
+		IndexEntry(final ProjectInfo info, final long size, final long lastModified, final byte[] hash, final int referencesHash,
+				final List<String> missing) {
+			this.info = info;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.referencesHash = referencesHash;
+			this.missing = missing;
+			this.inheritanceHash = PomIndex.inheritanceHash(info, referencesHash);
+		}
+	}
+
+}
@@ -0,0 +1,193 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The information extracted from a single Maven project file: the project
+ * artifact, its direct dependencies, modules of all profiles, the resolved
+ * properties and the used plugins.
+ */
+public class ProjectInfo {
+
+	private final LocalArtifact artifact;
+	private final List<Dependency> dependencies;
+	private final Map<String, List<String>> profileModules;
+	private final Map<String, PropertyDefinition> properties;
+	private final File parentLocation;
+	private final List<Dependency> dependencyManagement;
+	private final List<File> importLocations;
+	private final List<UsedPlugin> plugins;
+
+	/**
+	 * @param dependencies
+	 *            All direct dependencies (including those of all profiles) in
+	 *            declaration order.
+	 * @param profileModules
+	 *            Map(profile-id:list-of-modules) in declaration order.
+	 */
+	public ProjectInfo(final LocalArtifact artifact, final List<Dependency> dependencies,
+			final Map<String, List<String>> profileModules) {
+		this(artifact, dependencies, profileModules, Collections.<String, PropertyDefinition> emptyMap(), null,
+				Collections.<Dependency> emptyList(), Collections.<File> emptyList(), Collections.<UsedPlugin> emptyList());
+	}
+
+	/**
+	 * @param dependencies
+	 *            All direct dependencies (including those of all profiles) in
+	 *            declaration order.
+	 * @param profileModules
+	 *            Map(profile-id:list-of-modules) in declaration order.
+	 * @param properties
+	 *            Map(name:property) of the resolved properties of the project
+	 *            (without profiles), including the inherited ones.
+	 * @param parentLocation
+	 *            The project file of the parent, the properties were
+	 *            inherited from, or <code>null</code>.
+	 * @param dependencyManagement
+	 *            The entries of the <code>dependencyManagement</code> section
+	 *            in declaration order.
+	 * @param importLocations
+	 *            The project files of the imported projects (BOMs), which were
+	 *            found locally.
+	 * @param plugins
+	 *            The plugins used in the build and pluginManagement sections
+	 *            (including those of all profiles) in declaration order.
+	 */
+	public ProjectInfo(final LocalArtifact artifact, final List<Dependency> dependencies,
+			final Map<String, List<String>> profileModules, final Map<String, PropertyDefinition> properties,
+			final File parentLocation, final List<Dependency> dependencyManagement, final List<File> importLocations,
+			final List<UsedPlugin> plugins) {
+		this.artifact = artifact;
+		this.dependencies = Collections.unmodifiableList(dependencies);
+		this.profileModules = Collections.unmodifiableMap(profileModules);
+		this.properties = Collections.unmodifiableMap(properties);
+		this.parentLocation = parentLocation;
+		this.dependencyManagement = Collections.unmodifiableList(dependencyManagement);
+		this.importLocations = Collections.unmodifiableList(importLocations);
+		this.plugins = Collections.unmodifiableList(plugins);
+	}
+
+	public LocalArtifact getArtifact() {
+		return artifact;
+	}
+
+	/**
+	 * All direct dependencies, including those of all profiles.
+	 */
+	public List<Dependency> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * The direct dependencies of the project and the given profiles.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<Dependency> getDependencies(final List<String> profiles) {
+		final boolean includeAllProfiles = profiles.contains("*");
+		final List<Dependency> result = new LinkedList<Dependency>();
+		for (final Dependency dependency : dependencies) {
+			if (!dependency.getProfile().isDefined() || includeAllProfiles || profiles.contains(dependency.getProfile().get())) {
+				result.add(dependency);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Map(profile-id:list-of-modules).
+	 */
+	public Map<String, List<String>> getProfileModules() {
+		return profileModules;
+	}
+
+	/**
+	 * The modules of the given profiles.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<String> getModules(final List<String> profiles) {
+		final boolean includeAllProfiles = profiles.contains("*");
+		final List<String> result = new LinkedList<String>();
+		for (final Entry<String, List<String>> e : profileModules.entrySet()) {
+			if (includeAllProfiles || profiles.contains(e.getKey())) {
+				result.addAll(e.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Map(name:property) of the resolved properties of the project (without
+	 * profiles), including the properties inherited from the parent.
+	 */
+	public Map<String, PropertyDefinition> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * The project file of the parent, the properties were inherited from, or
+	 * <code>null</code>.
+	 */
+	public File getParentLocation() {
+		return parentLocation;
+	}
+
+	/**
+	 * The entries of the <code>dependencyManagement</code> section in
+	 * declaration order, including the imports.
+	 */
+	public List<Dependency> getDependencyManagement() {
+		return dependencyManagement;
+	}
+
+	/**
+	 * The project files of the imported projects (BOMs), which were found
+	 * locally.
+	 */
+	public List<File> getImportLocations() {
+		return importLocations;
+	}
+
+	/**
+	 * All used plugins, including those of the pluginManagement sections and
+	 * of all profiles.
+	 */
+	public List<UsedPlugin> getPlugins() {
+		return plugins;
+	}
+
+	/**
+	 * The used plugins of the project and the given profiles, including
+	 * those of the pluginManagement sections.
+	 *
+	 * @profiles List of activated profiles. If the sprecial profile name
+	 *           <code>"*"</code> (Asterisk) is found, all profiles will be
+	 *           included.
+	 */
+	public List<UsedPlugin> getPlugins(final List<String> profiles) {
+		final boolean includeAllProfiles = profiles.contains("*");
+		final List<UsedPlugin> result = new LinkedList<UsedPlugin>();
+		for (final UsedPlugin plugin : plugins) {
+			if (!plugin.getProfile().isDefined() || includeAllProfiles || profiles.contains(plugin.getProfile().get())) {
+				result.add(plugin);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + artifact + ",dependencies=" + dependencies.size() + ",modules=" + profileModules + ")";
+	}
+
+}
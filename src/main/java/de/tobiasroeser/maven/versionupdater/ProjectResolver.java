@@ -0,0 +1,56 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+
+/**
+ * Locates the parent and the imported projects of a project file, so that
+ * project readers can inherit their properties and managed dependencies.
+ */
+public interface ProjectResolver {
+
+	/**
+	 * @param pomFile
+	 *            The project file declaring the parent.
+	 * @param relativePath
+	 *            The declared <code>relativePath</code> or <code>null</code>.
+	 * @return The parent project or <code>null</code>, if it is not available
+	 *         locally.
+	 */
+	ProjectInfo resolveParent(File pomFile, String groupId, String artifactId, String version, String relativePath);
+
+	/**
+	 * @param pomFile
+	 *            The project file importing the project in its
+	 *            <code>dependencyManagement</code> section.
+	 * @return The imported project (BOM) or <code>null</code>, if it is not
+	 *         available locally.
+	 */
+	ProjectInfo resolveImport(File pomFile, String groupId, String artifactId, String version);
+
+	/**
+	 * The effective dependency management of the given project.
+	 */
+	DependencyManagement getDependencyManagement(ProjectInfo project);
+
+	/**
+	 * Never finds a project.
+	 */
+	ProjectResolver NONE = new ProjectResolver() {
+		@Override
+		public ProjectInfo resolveParent(final File pomFile, final String groupId, final String artifactId, final String version,
+				final String relativePath) {
+			return null;
+		}
+
+		@Override
+		public ProjectInfo resolveImport(final File pomFile, final String groupId, final String artifactId, final String version) {
+			return null;
+		}
+
+		@Override
+		public DependencyManagement getDependencyManagement(final ProjectInfo project) {
+			return DependencyManagement.EMPTY;
+		}
+	};
+
+}
@@ -0,0 +1,79 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+
+import de.tototec.utils.functional.Optional;
+
+/**
+ * A property declared in the <code>&lt;properties&gt;</code> section of a
+ * project file or of one of its profiles. The value is already resolved, i.e.
+ * references to other properties are replaced.
+ */
+public class PropertyDefinition {
+
+	private final String name;
+	private final String value;
+	private final File location;
+	private final Optional<String> profile;
+
+	/**
+	 * @param location
+	 *            The project file declaring the property.
+	 * @param profile
+	 *            The profile declaring the property, if any.
+	 */
+	public PropertyDefinition(final String name, final String value, final File location, final Optional<String> profile) {
+		this.name = name;
+		this.value = value;
+		this.location = location;
+		this.profile = profile;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The resolved value.
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	public File getLocation() {
+		return location;
+	}
+
+	public Optional<String> getProfile() {
+		return profile;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = name.hashCode();
+		hash = 31 * hash + value.hashCode();
+		hash = 31 * hash + location.getPath().hashCode();
+		hash = 31 * hash + (profile.isDefined() ? profile.get().hashCode() : 0);
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final PropertyDefinition other = (PropertyDefinition) obj;
+		return name.equals(other.name) && value.equals(other.value) && location.getPath().equals(other.location.getPath())
+				&& profile.isDefined() == other.profile.isDefined()
+				&& (!profile.isDefined() || profile.get().equals(other.profile.get()));
+	}
+
+	@Override
+	public String toString() {
+		return "${" + name + "}=" + value + " @ " + location + (profile.isDefined() ? " (" + profile.get() + ")" : "");
+	}
+
+}
@@ -0,0 +1,412 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The dependency graph of the local artifacts of a workspace.
+ *
+ * Each artifact is a node with a dense id, its position in the list of
+ * artifacts given to the constructor. An edge leads from a dependant to a
+ * local artifact it depends on. Dependencies to other versions of a local
+ * artifact are no edges, as they are not built in the workspace.
+ *
+ * Cycles are detected as strongly connected components (Tarjan). The
+ * transitive closures are computed once per direction over the components,
+ * one {@link BitSet} of nodes per component, which needs about
+ * <code>n&sup2; / 8</code> bytes for <code>n</code> artifacts (2 MB for 4,000
+ * artifacts).
+ *
+ * This class is thread-safe.
+ */
+public class ReactorGraph {
+
+	/**
+	 * Provides the dependencies of an artifact.
+	 */
+	public static interface DependenciesOf {
+		/**
+		 * The artifacts, the given artifact depends on (local or not).
+		 */
+		Collection<? extends Artifact> dependenciesOf(LocalArtifact artifact);
+	}
+
+	private final LocalArtifact[] nodes;
+	/** The (first) node of each gav-id, or <code>-1</code>. */
+	private final int[] nodeByGavId;
+	/** The dependencies of each node, without duplicates. */
+	private final int[][] dependencies;
+	/** The dependants of each node, without duplicates. */
+	private final int[][] dependants;
+	/** The component of each node. */
+	private final int[] components;
+	/**
+	 * The nodes of each component, components in reverse topological order,
+	 * dependencies first.
+	 */
+	private final int[][] componentNodes;
+
+	private BitSet[] dependencyClosure;
+	private BitSet[] dependantClosure;
+
+	/**
+	 * @param artifacts
+	 *            The local artifacts, in reactor order.
+	 * @param dependenciesOf
+	 *            The dependencies of the artifacts.
+	 */
+	public ReactorGraph(final List<LocalArtifact> artifacts, final DependenciesOf dependenciesOf) {
+		nodes = artifacts.toArray(new LocalArtifact[artifacts.size()]);
+
+		nodeByGavId = new int[CoordinateTable.instance.gavCount()];
+		Arrays.fill(nodeByGavId, -1);
+		for (int node = 0; node < nodes.length; ++node) {
+			if (nodeByGavId[nodes[node].getGavId()] < 0) {
+				nodeByGavId[nodes[node].getGavId()] = node;
+			}
+		}
+
+		dependencies = new int[nodes.length][];
+		final int[] dependantCounts = new int[nodes.length];
+		final BitSet seen = new BitSet(nodes.length);
+		for (int node = 0; node < nodes.length; ++node) {
+			final Collection<? extends Artifact> deps = dependenciesOf.dependenciesOf(nodes[node]);
+			final int[] edges = new int[deps.size()];
+			int count = 0;
+			seen.clear();
+			for (final Artifact dep : deps) {
+				final int gavId = dep.getGavId();
+				final int target = gavId < nodeByGavId.length ? nodeByGavId[gavId] : -1;
+				if (target >= 0 && target != node && !seen.get(target)) {
+					seen.set(target);
+					edges[count++] = target;
+					++dependantCounts[target];
+				}
+			}
+			dependencies[node] = Arrays.copyOf(edges, count);
+		}
+
+		dependants = new int[nodes.length][];
+		for (int node = 0; node < nodes.length; ++node) {
+			dependants[node] = new int[dependantCounts[node]];
+		}
+		final int[] fill = new int[nodes.length];
+		for (int node = 0; node < nodes.length; ++node) {
+			for (final int target : dependencies[node]) {
+				dependants[target][fill[target]++] = node;
+			}
+		}
+
+		components = new int[nodes.length];
+		componentNodes = findComponents();
+	}
+
+	/**
+	 * Find the strongly connected components with Tarjan's algorithm,
+	 * iteratively to support deep graphs.
+	 *
+	 * @return The nodes of each component, in the order the components are
+	 *         completed, which is dependencies first.
+	 */
+	private int[][] findComponents() {
+		final int n = nodes.length;
+		final int[] index = new int[n];
+		Arrays.fill(index, -1);
+		final int[] lowLink = new int[n];
+		final BitSet onStack = new BitSet(n);
+		final int[] stack = new int[n];
+		int stackSize = 0;
+		final int[] callStack = new int[n];
+		final int[] edgePos = new int[n];
+		final List<int[]> result = new ArrayList<int[]>();
+		int nextIndex = 0;
+
+		for (int root = 0; root < n; ++root) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = lowLink[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack.set(root);
+			edgePos[root] = 0;
+
+			while (depth > 0) {
+				final int node = callStack[depth - 1];
+				if (edgePos[node] < dependencies[node].length) {
+					final int target = dependencies[node][edgePos[node]++];
+					if (index[target] < 0) {
+						index[target] = lowLink[target] = nextIndex++;
+						stack[stackSize++] = target;
+						onStack.set(target);
+						edgePos[target] = 0;
+						callStack[depth++] = target;
+					} else if (onStack.get(target)) {
+						lowLink[node] = Math.min(lowLink[node], index[target]);
+					}
+					continue;
+				}
+
+				--depth;
+				if (depth > 0) {
+					final int caller = callStack[depth - 1];
+					lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+				}
+				if (lowLink[node] == index[node]) {
+					int start = stackSize;
+					do {
+						--start;
+					} while (stack[start] != node);
+					final int[] members = Arrays.copyOfRange(stack, start, stackSize);
+					Arrays.sort(members);
+					for (final int member : members) {
+						onStack.clear(member);
+						components[member] = result.size();
+					}
+					stackSize = start;
+					result.add(members);
+				}
+			}
+		}
+		return result.toArray(new int[result.size()][]);
+	}
+
+	/**
+	 * The local artifacts, in reactor order.
+	 */
+	public List<LocalArtifact> getArtifacts() {
+		return Collections.unmodifiableList(Arrays.asList(nodes));
+	}
+
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * The id of the given artifact, or <code>-1</code>.
+	 */
+	public int nodeOf(final LocalArtifact artifact) {
+		final int gavId = artifact.getGavId();
+		if (gavId < nodeByGavId.length && nodeByGavId[gavId] >= 0 && nodes[nodeByGavId[gavId]] == artifact) {
+			return nodeByGavId[gavId];
+		}
+		for (int node = 0; node < nodes.length; ++node) {
+			if (nodes[node] == artifact) {
+				return node;
+			}
+		}
+		return -1;
+	}
+
+	public LocalArtifact getArtifact(final int node) {
+		return nodes[node];
+	}
+
+	/**
+	 * The ids of the direct local dependencies of the node.
+	 */
+	public int[] getDependencies(final int node) {
+		return dependencies[node].clone();
+	}
+
+	/**
+	 * The ids of the direct local dependants of the node.
+	 */
+	public int[] getDependants(final int node) {
+		return dependants[node].clone();
+	}
+
+	/**
+	 * All nodes, the given nodes directly or transitively depend on. The
+	 * given nodes are only included, if they are part of a cycle or depend on
+	 * each other.
+	 */
+	public BitSet getTransitiveDependencies(final BitSet nodes) {
+		return closureOf(nodes, getDependencyClosure());
+	}
+
+	/**
+	 * All nodes, which directly or transitively depend on the given nodes.
+	 * The given nodes are only included, if they are part of a cycle or
+	 * depend on each other.
+	 */
+	public BitSet getTransitiveDependants(final BitSet nodes) {
+		return closureOf(nodes, getDependantClosure());
+	}
+
+	/**
+	 * The artifacts of the given nodes, in reactor order.
+	 */
+	public List<LocalArtifact> getArtifacts(final BitSet nodes) {
+		final List<LocalArtifact> artifacts = new ArrayList<LocalArtifact>(nodes.cardinality());
+		for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+			artifacts.add(this.nodes[node]);
+		}
+		return artifacts;
+	}
+
+	/**
+	 * The cycles of the graph, each given by its artifacts in reactor order.
+	 */
+	public List<List<LocalArtifact>> getCycles() {
+		final List<List<LocalArtifact>> cycles = new ArrayList<List<LocalArtifact>>();
+		for (final int[] members : componentNodes) {
+			if (members.length > 1) {
+				final List<LocalArtifact> cycle = new ArrayList<LocalArtifact>(members.length);
+				for (final int member : members) {
+					cycle.add(nodes[member]);
+				}
+				cycles.add(cycle);
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * The build wave of each node, starting with <code>0</code>. A node is
+	 * in the wave after the last wave of its dependencies, so all nodes of a
+	 * wave can be built concurrently. The nodes of a cycle are in the same
+	 * wave.
+	 */
+	public int[] getWaves() {
+		final int[] componentWaves = new int[componentNodes.length];
+		final int[] waves = new int[nodes.length];
+		for (int component = 0; component < componentNodes.length; ++component) {
+			int wave = 0;
+			for (final int member : componentNodes[component]) {
+				for (final int target : dependencies[member]) {
+					if (components[target] != component) {
+						wave = Math.max(wave, componentWaves[components[target]] + 1);
+					}
+				}
+			}
+			componentWaves[component] = wave;
+			for (final int member : componentNodes[component]) {
+				waves[member] = wave;
+			}
+		}
+		return waves;
+	}
+
+	/**
+	 * The longest chain of dependencies, weighted by the build time of each
+	 * node. The nodes of a cycle are weighted with their total build time.
+	 *
+	 * @param weights
+	 *            The build time of each node.
+	 * @return The nodes of the critical path, dependencies first.
+	 */
+	public int[] getCriticalPath(final double[] weights) {
+		final double[] finish = new double[componentNodes.length];
+		// the preceding component on the longest path, or -1
+		final int[] previous = new int[componentNodes.length];
+		int last = -1;
+		for (int component = 0; component < componentNodes.length; ++component) {
+			double start = 0;
+			previous[component] = -1;
+			double weight = 0;
+			for (final int member : componentNodes[component]) {
+				weight += weights[member];
+				for (final int target : dependencies[member]) {
+					final int targetComponent = components[target];
+					if (targetComponent != component && finish[targetComponent] > start) {
+						start = finish[targetComponent];
+						previous[component] = targetComponent;
+					}
+				}
+			}
+			finish[component] = start + weight;
+			if (last < 0 || finish[component] > finish[last]) {
+				last = component;
+			}
+		}
+
+		final List<int[]> path = new LinkedList<int[]>();
+		int length = 0;
+		for (int component = last; component >= 0; component = previous[component]) {
+			path.add(0, componentNodes[component]);
+			length += componentNodes[component].length;
+		}
+		final int[] result = new int[length];
+		int pos = 0;
+		for (final int[] members : path) {
+			System.arraycopy(members, 0, result, pos, members.length);
+			pos += members.length;
+		}
+		return result;
+	}
+
+	private BitSet closureOf(final BitSet nodes, final BitSet[] closure) {
+		final BitSet result = new BitSet(this.nodes.length);
+		final BitSet done = new BitSet(componentNodes.length);
+		for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+			final int component = components[node];
+			if (!done.get(component)) {
+				done.set(component);
+				result.or(closure[component]);
+			}
+		}
+		return result;
+	}
+
+	private synchronized BitSet[] getDependencyClosure() {
+		if (dependencyClosure == null) {
+			// components are completed dependencies first
+			dependencyClosure = computeClosure(dependencies, 0, componentNodes.length, 1);
+		}
+		return dependencyClosure;
+	}
+
+	private synchronized BitSet[] getDependantClosure() {
+		if (dependantClosure == null) {
+			dependantClosure = computeClosure(dependants, componentNodes.length - 1, -1, -1);
+		}
+		return dependantClosure;
+	}
+
+	/**
+	 * Compute the reachable nodes of each component, visiting the components
+	 * in an order, in which all successors of a component are visited before
+	 * the component itself.
+	 */
+	private BitSet[] computeClosure(final int[][] edges, final int from, final int to, final int step) {
+		final BitSet[] closure = new BitSet[componentNodes.length];
+		for (int component = from; component != to; component += step) {
+			final BitSet reachable = new BitSet(nodes.length);
+			final int[] members = componentNodes[component];
+			if (members.length > 1) {
+				for (final int member : members) {
+					reachable.set(member);
+				}
+			}
+			for (final int member : members) {
+				for (final int target : edges[member]) {
+					final int targetComponent = components[target];
+					if (targetComponent != component && !reachable.get(target)) {
+						reachable.set(target);
+						reachable.or(closure[targetComponent]);
+					}
+				}
+			}
+			closure[component] = reachable;
+		}
+		return closure;
+	}
+
+	@Override
+	public String toString() {
+		int edges = 0;
+		for (final int[] deps : dependencies) {
+			edges += deps.length;
+		}
+		return getClass().getSimpleName() + "(nodes=" + nodes.length + ",edges=" + edges + ",components="
+				+ componentNodes.length + ")";
+	}
+
+}
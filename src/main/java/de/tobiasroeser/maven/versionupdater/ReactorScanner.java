@@ -0,0 +1,161 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans directories for Maven projects and recursively follows their modules.
+ *
+ * With more than one thread, the module tree is scanned with a fork-join pool.
+ * The result is always in the same order as a sequential scan produces it,
+ * which is: a project followed by the projects of its modules, depth-first.
+ */
+public class ReactorScanner {
+
+	private final Logger log = LoggerFactory.getLogger(ReactorScanner.class);
+
+	private final String pomFileName;
+	private final List<String> profiles;
+	private final int threads;
+	private final PomIndex pomIndex;
+
+	/**
+	 * @param profiles
+	 *            The profiles used to detect modules.
+	 * @param threads
+	 *            The number of parallel workers. <code>1</code> or less scans
+	 *            sequentially on the calling thread.
+	 * @param pomIndex
+	 *            The index used to read the project files.
+	 */
+	public ReactorScanner(final String pomFileName, final List<String> profiles, final int threads, final PomIndex pomIndex) {
+		this.pomFileName = pomFileName;
+		this.profiles = profiles;
+		this.threads = threads;
+		this.pomIndex = pomIndex;
+	}
+
+	public List<LocalArtifact> scan(final Collection<String> dirs) {
+		if (threads <= 1) {
+			return scanSequential(dirs);
+		}
+
+		log.debug("Scanning with {} threads", threads);
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new ScanTask(dirs));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	protected List<LocalArtifact> scanSequential(final Collection<String> dirs) {
+		final List<LocalArtifact> artifacts = new LinkedList<LocalArtifact>();
+		for (final String dir : dirs) {
+			final ScannedPom pom = readPom(dir);
+			if (pom != null) {
+				artifacts.add(pom.artifact);
+				artifacts.addAll(scanSequential(pom.moduleDirs));
+			}
+		}
+		return artifacts;
+	}
+
+	/**
+	 * Read the project in directory <code>dir</code>.
+	 *
+	 * @return The project or <code>null</code>, if there is no (readable)
+	 *         project.
+	 */
+	protected ScannedPom readPom(final String dir) {
+		final File pomFile = new File(dir, pomFileName);
+		if (!pomFile.exists() || !pomFile.isFile()) {
+			return null;
+		}
+
+		try {
+			final ProjectInfo info = pomIndex.getProjectInfo(pomFile);
+
+			final List<String> modules = info.getModules(profiles);
+			final List<String> moduleDirs = new ArrayList<String>(modules.size());
+			for (final String module : modules) {
+				moduleDirs.add(new File(dir, module).getPath());
+			}
+
+			return new ScannedPom(info.getArtifact(), moduleDirs);
+
+		} catch (final XmlException e) {
+			log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
+		} catch (final IOException e) {
+			log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
+		}
+		return null;
+	}
+
+	protected static class ScannedPom {
+		final LocalArtifact artifact;
+		final List<String> moduleDirs;
+
+		ScannedPom(final LocalArtifact artifact, final List<String> moduleDirs) {
+			this.artifact = artifact;
+			this.moduleDirs = moduleDirs;
+		}
+	}
+
+	/**
+	 * Scans a list of directories. Each directory (and each module) is scanned
+	 * in its own sub task, results are joined in the order of the given
+	 * directories.
+	 */
+	private class ScanTask extends RecursiveTask<List<LocalArtifact>> {
+		private static final long serialVersionUID = 1L;
+
+		private final Collection<String> dirs;
+
+		public ScanTask(final Collection<String> dirs) {
+			this.dirs = dirs;
+		}
+
+		@Override
+		protected List<LocalArtifact> compute() {
+			if (dirs.size() == 1) {
+				final String dir = dirs.iterator().next();
+				final ScannedPom pom = readPom(dir);
+				if (pom == null) {
+					return Collections.emptyList();
+				}
+				final List<LocalArtifact> artifacts = new LinkedList<LocalArtifact>();
+				artifacts.add(pom.artifact);
+				if (!pom.moduleDirs.isEmpty()) {
+					artifacts.addAll(new ScanTask(pom.moduleDirs).compute());
+				}
+				return artifacts;
+			}
+
+			final List<ScanTask> tasks = new ArrayList<ScanTask>(dirs.size());
+			for (final String dir : dirs) {
+				tasks.add(new ScanTask(Arrays.asList(dir)));
+			}
+			invokeAll(tasks);
+
+			final List<LocalArtifact> artifacts = new LinkedList<LocalArtifact>();
+			for (final ScanTask task : tasks) {
+				artifacts.addAll(task.join());
+			}
+			return artifacts;
+		}
+	}
+
+}
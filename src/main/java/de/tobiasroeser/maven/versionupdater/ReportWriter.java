@@ -0,0 +1,228 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the results of the listing commands as machine-readable records,
+ * one record per line. Records are written as they are produced, so the
+ * memory needed for reporting does not grow with the size of the workspace
+ * and consumers can start reading before all results are known.
+ *
+ * All records have the same columns, see {@link #COLUMNS}. Columns, which do
+ * not apply to a record type, are empty.
+ */
+public abstract class ReportWriter implements Closeable {
+
+	public enum Format {
+		/** Human readable log messages (no records). */
+		text,
+		/** One JSON object per line. */
+		jsonl,
+		/** Comma separated values with a header line. */
+		csv
+	}
+
+	/** The columns of all records. */
+	public static final String[] COLUMNS = { "type", "groupId", "artifactId", "version", "project", "detail" };
+
+	private final Writer writer;
+	private final boolean closeStream;
+
+	protected ReportWriter(final OutputStream out, final boolean closeStream) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+		this.closeStream = closeStream;
+	}
+
+	/**
+	 * Open a writer for the given format.
+	 *
+	 * @param out
+	 *            The stream to write to, if <code>file</code> is
+	 *            <code>null</code>. It is not closed.
+	 * @param file
+	 *            The file to write or <code>null</code>.
+	 * @return The writer or <code>null</code> for {@link Format#text}.
+	 */
+	public static ReportWriter open(final Format format, final OutputStream out, final File file) throws IOException {
+		if (format == Format.text) {
+			return null;
+		}
+		final OutputStream stream = file != null ? new FileOutputStream(file) : out;
+		final ReportWriter writer = format == Format.csv ? new CsvWriter(stream, file != null) : new JsonLinesWriter(stream,
+				file != null);
+		writer.start();
+		return writer;
+	}
+
+	/**
+	 * Write a record.
+	 *
+	 * @param type
+	 *            The record type, e.g. <code>dependency</code>.
+	 * @param artifact
+	 *            The artifact the record is about or <code>null</code>. An
+	 *            empty version is written as empty column.
+	 * @param project
+	 *            The project, e.g. the dependant, or <code>null</code>.
+	 * @param detail
+	 *            Additional information, e.g. the scope, or
+	 *            <code>null</code>.
+	 */
+	public void write(final String type, final Artifact artifact, final Artifact project, final Object detail)
+			throws IOException {
+		write(type, artifact != null ? artifact.getGavId() : -1, project, detail);
+	}
+
+	/**
+	 * Write a record.
+	 *
+	 * @param gavId
+	 *            The id of the artifact the record is about or
+	 *            <code>-1</code>.
+	 * @see #write(String, Artifact, Artifact, Object)
+	 */
+	public void write(final String type, final int gavId, final Artifact project, final Object detail) throws IOException {
+		final CoordinateTable table = CoordinateTable.instance;
+		final int gaId = gavId >= 0 ? table.getGaId(gavId) : -1;
+		final String version = gavId >= 0 ? table.getVersion(gavId) : "";
+		writeRecord(new String[] { type, gaId >= 0 ? table.getGroup(gaId) : null, gaId >= 0 ? table.getArtifact(gaId) : null,
+				version.isEmpty() ? null : version,
+				project != null ? project.getGroup() + ":" + project.getArtifact() + ":" + project.getVersion() : null,
+				detail != null ? detail.toString() : null });
+	}
+
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closeStream) {
+			writer.close();
+		} else {
+			writer.flush();
+		}
+	}
+
+	protected Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Called once before the first record.
+	 */
+	protected void start() throws IOException {
+	}
+
+	/**
+	 * @param values
+	 *            The values in the order of {@link #COLUMNS}, missing values
+	 *            are <code>null</code>.
+	 */
+	protected abstract void writeRecord(String[] values) throws IOException;
+
+	protected static class JsonLinesWriter extends ReportWriter {
+
+		public JsonLinesWriter(final OutputStream out, final boolean closeStream) throws IOException {
+			super(out, closeStream);
+		}
+
+		@Override
+		protected void writeRecord(final String[] values) throws IOException {
+			final Writer writer = getWriter();
+			writer.write('{');
+			boolean first = true;
+			for (int i = 0; i < values.length; ++i) {
+				if (values[i] == null) {
+					continue;
+				}
+				if (!first) {
+					writer.write(',');
+				}
+				first = false;
+				writeString(writer, COLUMNS[i]);
+				writer.write(':');
+				writeString(writer, values[i]);
+			}
+			writer.write("}\n");
+		}
+
+		protected void writeString(final Writer writer, final String value) throws IOException {
+			writer.write('"');
+			for (int i = 0; i < value.length(); ++i) {
+				final char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						writer.write(String.format("\\u%04x", (int) c));
+					} else {
+						writer.write(c);
+					}
+				}
+			}
+			writer.write('"');
+		}
+	}
+
+	protected static class CsvWriter extends ReportWriter {
+
+		public CsvWriter(final OutputStream out, final boolean closeStream) throws IOException {
+			super(out, closeStream);
+		}
+
+		@Override
+		protected void start() throws IOException {
+			writeRecord(COLUMNS);
+		}
+
+		@Override
+		protected void writeRecord(final String[] values) throws IOException {
+			final Writer writer = getWriter();
+			for (int i = 0; i < values.length; ++i) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				if (values[i] != null) {
+					writeValue(writer, values[i]);
+				}
+			}
+			writer.write("\r\n");
+		}
+
+		/**
+		 * Write the value, quoted as described in RFC 4180 if needed.
+		 */
+		protected void writeValue(final Writer writer, final String value) throws IOException {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+				writer.write(value);
+				return;
+			}
+			writer.write('"');
+			writer.write(value.replace("\"", "\"\""));
+			writer.write('"');
+		}
+	}
+
+}
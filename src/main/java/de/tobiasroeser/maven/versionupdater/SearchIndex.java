@@ -0,0 +1,448 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A search index over the GA keys (<code>groupId:artifactId</code>) and GAV
+ * keys (<code>groupId:artifactId:version</code>) of an {@link IntMultiMap},
+ * whose keys are GA ids.
+ *
+ * Patterns containing at least two colons are matched against the GAV keys,
+ * all other patterns against the GA keys. Patterns are answered with the help
+ * of a trigram index, a sorted key list (for prefixes) and a hash table (for
+ * exact keys). Patterns which can not be answered by the index (e.g. regular
+ * expressions) are matched together in one pass over all keys.
+ *
+ * The index is immutable and thread-safe.
+ */
+public class SearchIndex {
+
+	/**
+	 * How a search pattern is matched against a key.
+	 */
+	public static enum Mode {
+		/** The key contains the pattern. */
+		substring,
+		/** The key equals the pattern. */
+		exact,
+		/** The key starts with the pattern. */
+		prefix,
+		/**
+		 * The whole key matches the pattern, in which <code>*</code> matches
+		 * any number of characters and <code>?</code> matches one character.
+		 */
+		glob,
+		/** The key contains a match of the regular expression. */
+		regex
+	}
+
+	/**
+	 * The result of a single search pattern.
+	 */
+	public static class Match {
+		private final BitSet positions;
+		private final BitSet gavIds;
+
+		Match(final BitSet positions, final BitSet gavIds) {
+			this.positions = positions;
+			this.gavIds = gavIds;
+		}
+
+		/**
+		 * A match of all keys of an {@link IntMultiMap} with
+		 * <code>keyCount</code> keys.
+		 */
+		public static Match all(final int keyCount) {
+			final BitSet positions = new BitSet(keyCount);
+			positions.set(0, keyCount);
+			return new Match(positions, null);
+		}
+
+		/**
+		 * The next matching key position (as used by
+		 * {@link IntMultiMap#keyAt(int)}) starting at <code>from</code>, or
+		 * <code>-1</code>.
+		 */
+		public int nextPosition(final int from) {
+			return positions.nextSetBit(from);
+		}
+
+		/**
+		 * <code>true</code>, if the version with the given GAV id of a matching
+		 * key also matches. This is always the case for GA patterns.
+		 */
+		public boolean matchesVersion(final int gavId) {
+			return gavIds == null || gavIds.get(gavId);
+		}
+
+		public int size() {
+			return positions.cardinality();
+		}
+	}
+
+	/**
+	 * Returns the GAV id of a value of the indexed {@link IntMultiMap}.
+	 */
+	public static interface GavIdOf<T> {
+		int gavIdOf(T value);
+	}
+
+	private final Keys gaKeys;
+	private final Keys gavKeys;
+
+	/**
+	 * @param gaIds
+	 *            IntMultiMap(ga-id:value)
+	 * @param gavIdsOf
+	 *            Returns the GAV id of a value.
+	 */
+	public <T> SearchIndex(final IntMultiMap<T> gaIds, final GavIdOf<? super T> gavIdsOf) {
+		final CoordinateTable table = CoordinateTable.instance;
+		final int keyCount = gaIds.keyCount();
+
+		final List<String> gaKeyList = new ArrayList<String>(keyCount);
+		final int[] gaPositions = new int[keyCount];
+		final List<String> gavKeyList = new ArrayList<String>(keyCount);
+		final List<Integer> gavPositions = new ArrayList<Integer>(keyCount);
+		final List<Integer> gavIdList = new ArrayList<Integer>(keyCount);
+
+		final BitSet seenGavIds = new BitSet();
+		for (int i = 0; i < keyCount; ++i) {
+			final int gaId = gaIds.keyAt(i);
+			gaKeyList.add(table.getGaKey(gaId));
+			gaPositions[i] = i;
+			for (final T value : gaIds.get(gaId)) {
+				final int gavId = gavIdsOf.gavIdOf(value);
+				if (!seenGavIds.get(gavId)) {
+					seenGavIds.set(gavId);
+					gavKeyList.add(table.getGaKey(gaId) + ":" + table.getVersion(gavId));
+					gavPositions.add(i);
+					gavIdList.add(gavId);
+				}
+			}
+		}
+
+		gaKeys = new Keys(gaKeyList.toArray(new String[gaKeyList.size()]), gaPositions, null);
+		gavKeys = new Keys(gavKeyList.toArray(new String[gavKeyList.size()]), toIntArray(gavPositions), toIntArray(gavIdList));
+	}
+
+	/**
+	 * Search all patterns at once.
+	 *
+	 * @return One {@link Match} per pattern, in the same order.
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             If a regular expression is invalid.
+	 */
+	public List<Match> search(final List<String> patterns, final Mode mode) {
+		final List<Match> matches = new ArrayList<Match>(patterns.size());
+		final List<Query> gaScans = new LinkedList<Query>();
+		final List<Query> gavScans = new LinkedList<Query>();
+
+		for (final String pattern : patterns) {
+			final boolean gav = pattern.indexOf(':') != pattern.lastIndexOf(':');
+			final Keys keys = gav ? gavKeys : gaKeys;
+			final Query query = new Query(keys, pattern, mode, new Match(new BitSet(), gav ? new BitSet() : null));
+			matches.add(query.match);
+
+			final int[] candidates = keys.candidates(query);
+			if (candidates == null) {
+				(gav ? gavScans : gaScans).add(query);
+			} else {
+				for (final int candidate : candidates) {
+					query.test(candidate);
+				}
+			}
+		}
+
+		scan(gaKeys, gaScans);
+		scan(gavKeys, gavScans);
+
+		return matches;
+	}
+
+	/**
+	 * Match all queries in one pass over all keys.
+	 */
+	private void scan(final Keys keys, final List<Query> queries) {
+		if (queries.isEmpty()) {
+			return;
+		}
+		for (int k = 0; k < keys.keys.length; ++k) {
+			for (final Query query : queries) {
+				query.test(k);
+			}
+		}
+	}
+
+	private static int[] toIntArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+		int i = 0;
+		for (final Integer value : list) {
+			array[i++] = value.intValue();
+		}
+		return array;
+	}
+
+	/**
+	 * A single search pattern and its result.
+	 */
+	private static class Query {
+		private final Keys keys;
+		private final String pattern;
+		private final Mode mode;
+		private final Matcher matcher;
+		private final Match match;
+
+		public Query(final Keys keys, final String pattern, final Mode mode, final Match match) {
+			this.keys = keys;
+			this.pattern = pattern;
+			this.mode = mode;
+			this.match = match;
+			switch (mode) {
+			case glob:
+				matcher = Pattern.compile(globToRegex(pattern)).matcher("");
+				break;
+			case regex:
+				matcher = Pattern.compile(pattern).matcher("");
+				break;
+			default:
+				matcher = null;
+			}
+		}
+
+		/**
+		 * Test the key with index <code>k</code> and record it, if it
+		 * matches.
+		 */
+		public void test(final int k) {
+			final String key = keys.keys[k];
+			final boolean matches;
+			switch (mode) {
+			case substring:
+				matches = key.contains(pattern);
+				break;
+			case exact:
+				matches = key.equals(pattern);
+				break;
+			case prefix:
+				matches = key.startsWith(pattern);
+				break;
+			case glob:
+				matches = matcher.reset(key).matches();
+				break;
+			default:
+				matches = matcher.reset(key).find();
+			}
+			if (matches) {
+				match.positions.set(keys.positions[k]);
+				if (match.gavIds != null) {
+					match.gavIds.set(keys.gavIds[k]);
+				}
+			}
+		}
+
+		private static String globToRegex(final String glob) {
+			final StringBuilder regex = new StringBuilder();
+			for (final String literal : literals(glob)) {
+				if (literal.equals("*")) {
+					regex.append(".*");
+				} else if (literal.equals("?")) {
+					regex.append(".");
+				} else {
+					regex.append(Pattern.quote(literal));
+				}
+			}
+			return regex.toString();
+		}
+
+		/**
+		 * Split a glob pattern into literals and the wildcards
+		 * <code>*</code> and <code>?</code>.
+		 */
+		private static List<String> literals(final String glob) {
+			final List<String> parts = new LinkedList<String>();
+			int start = 0;
+			for (int i = 0; i < glob.length(); ++i) {
+				final char c = glob.charAt(i);
+				if (c == '*' || c == '?') {
+					if (i > start) {
+						parts.add(glob.substring(start, i));
+					}
+					parts.add(String.valueOf(c));
+					start = i + 1;
+				}
+			}
+			if (start < glob.length()) {
+				parts.add(glob.substring(start));
+			}
+			return parts;
+		}
+	}
+
+	/**
+	 * The indexed keys of one kind (GA or GAV).
+	 */
+	private static class Keys {
+		private static final int[] NONE = new int[0];
+
+		private final String[] keys;
+		/** The position of the GA of each key in the indexed multimap. */
+		private final int[] positions;
+		/** The GAV id of each key, or <code>null</code> for GA keys. */
+		private final int[] gavIds;
+		/** The key indexes in key order. */
+		private final int[] sorted;
+		/** Map(key:key-index) */
+		private final Map<String, Integer> exact;
+		/** Map(trigram:key-indexes) */
+		private final Map<String, int[]> trigrams;
+
+		public Keys(final String[] keys, final int[] positions, final int[] gavIds) {
+			this.keys = keys;
+			this.positions = positions;
+			this.gavIds = gavIds;
+
+			final Integer[] order = new Integer[keys.length];
+			exact = new HashMap<String, Integer>(keys.length * 2);
+			for (int k = 0; k < keys.length; ++k) {
+				order[k] = k;
+				exact.put(keys[k], k);
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(final Integer o1, final Integer o2) {
+					return keys[o1.intValue()].compareTo(keys[o2.intValue()]);
+				}
+			});
+			sorted = new int[keys.length];
+			for (int i = 0; i < order.length; ++i) {
+				sorted[i] = order[i].intValue();
+			}
+
+			// two passes: count, then fill the posting lists
+			final Map<String, int[]> counts = new HashMap<String, int[]>();
+			for (int k = 0; k < keys.length; ++k) {
+				final String key = keys[k];
+				for (int i = 0; i + 3 <= key.length(); ++i) {
+					final String trigram = key.substring(i, i + 3);
+					if (key.indexOf(trigram) == i) {
+						final int[] count = counts.get(trigram);
+						if (count == null) {
+							counts.put(trigram, new int[] { 1 });
+						} else {
+							++count[0];
+						}
+					}
+				}
+			}
+			trigrams = new HashMap<String, int[]>(counts.size() * 2);
+			for (final Map.Entry<String, int[]> e : counts.entrySet()) {
+				trigrams.put(e.getKey(), new int[e.getValue()[0]]);
+				e.getValue()[0] = 0;
+			}
+			for (int k = 0; k < keys.length; ++k) {
+				final String key = keys[k];
+				for (int i = 0; i + 3 <= key.length(); ++i) {
+					final String trigram = key.substring(i, i + 3);
+					if (key.indexOf(trigram) == i) {
+						final int[] count = counts.get(trigram);
+						trigrams.get(trigram)[count[0]++] = k;
+					}
+				}
+			}
+		}
+
+		/**
+		 * The indexes of all keys, which may match the query, or
+		 * <code>null</code>, if all keys need to be tested.
+		 */
+		public int[] candidates(final Query query) {
+			final String pattern = query.pattern;
+			switch (query.mode) {
+			case exact:
+				final Integer k = exact.get(pattern);
+				return k == null ? NONE : new int[] { k.intValue() };
+			case prefix:
+				return prefixCandidates(pattern);
+			case substring:
+				return trigramCandidates(pattern);
+			case glob:
+				int[] best = null;
+				final List<String> literals = Query.literals(pattern);
+				for (final String literal : literals) {
+					if (!literal.equals("*") && !literal.equals("?")) {
+						best = smaller(best, trigramCandidates(literal));
+					}
+				}
+				if (!literals.isEmpty() && !pattern.startsWith("*") && !pattern.startsWith("?")) {
+					best = smaller(best, prefixCandidates(literals.get(0)));
+				}
+				return best;
+			default:
+				return null;
+			}
+		}
+
+		private static int[] smaller(final int[] a, final int[] b) {
+			if (a == null) {
+				return b;
+			}
+			if (b == null) {
+				return a;
+			}
+			return a.length <= b.length ? a : b;
+		}
+
+		/**
+		 * The keys, which contain all trigrams of <code>literal</code>, as
+		 * the smallest posting list, or <code>null</code> if the literal is
+		 * too short.
+		 */
+		private int[] trigramCandidates(final String literal) {
+			if (literal.length() < 3) {
+				return null;
+			}
+			int[] best = null;
+			for (int i = 0; i + 3 <= literal.length(); ++i) {
+				final int[] posting = trigrams.get(literal.substring(i, i + 3));
+				if (posting == null) {
+					return NONE;
+				}
+				best = smaller(best, posting);
+			}
+			return best;
+		}
+
+		/**
+		 * The keys starting with <code>prefix</code>.
+		 */
+		private int[] prefixCandidates(final String prefix) {
+			// lower bound of prefix in sorted keys
+			int lo = 0;
+			int hi = sorted.length;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (keys[sorted[mid]].compareTo(prefix) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			int end = lo;
+			while (end < sorted.length && keys[sorted[end]].startsWith(prefix)) {
+				++end;
+			}
+			return Arrays.copyOfRange(sorted, lo, end);
+		}
+	}
+
+}
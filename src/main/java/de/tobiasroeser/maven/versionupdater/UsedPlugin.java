@@ -1,25 +1,114 @@
 package de.tobiasroeser.maven.versionupdater;
 
+import de.tototec.utils.functional.Optional;
+
+/**
+ * A Maven plugin used in the build section of a project or one of its
+ * profiles, or an entry of their <code>pluginManagement</code> sections.
+ */
 public class UsedPlugin {
 
-	private final String version;
-	private final LocalArtifact usingProject;
-	private final String groupId;
-	private final String artifactId;
+	/** The groupId of plugins, which do not declare one. */
+	public static final String DEFAULT_GROUP_ID = "org.apache.maven.plugins";
+
+	private final Artifact pluginArtifact;
+	private final LocalArtifact project;
+	private final Optional<String> profile;
+	private final boolean managed;
+	private Optional<PropertyDefinition> versionProperty = Optional.none();
+	private String declaredVersion;
+	private String changeProtectBecause;
+
+	/**
+	 * @param pluginArtifact
+	 *            The plugin with an empty version, if none is declared.
+	 * @param managed
+	 *            <code>true</code>, if this is an entry of a
+	 *            <code>pluginManagement</code> section.
+	 */
+	public UsedPlugin(final Artifact pluginArtifact, final LocalArtifact project, final Optional<String> profile,
+			final boolean managed) {
+		this.pluginArtifact = pluginArtifact;
+		this.project = project;
+		this.profile = profile;
+		this.managed = managed;
+	}
+
+	public Artifact getPluginArtifact() {
+		return pluginArtifact;
+	}
+
+	public LocalArtifact getProject() {
+		return project;
+	}
+
+	public Optional<String> getProfile() {
+		return profile;
+	}
+
+	/**
+	 * <code>true</code>, if this is an entry of a
+	 * <code>pluginManagement</code> section.
+	 */
+	public boolean isManaged() {
+		return managed;
+	}
+
+	public void addChangeProtectBecause(final String changeProtectBecause) {
+		if (this.changeProtectBecause == null) {
+			this.changeProtectBecause = changeProtectBecause;
+		} else {
+			this.changeProtectBecause += ", " + changeProtectBecause;
+		}
+	}
+
+	public boolean isChangeAllowed() {
+		return changeProtectBecause == null;
+	}
+
+	public String getChangeProtectBecause() {
+		return changeProtectBecause;
+	}
+
+	/**
+	 * The property, the version was taken from. If defined, the version is
+	 * changed by changing the property.
+	 */
+	public Optional<PropertyDefinition> getVersionProperty() {
+		return versionProperty;
+	}
+
+	public void setVersionProperty(final PropertyDefinition versionProperty) {
+		this.versionProperty = Optional.lift(versionProperty);
+	}
+
+	/**
+	 * The version as declared in the project file, e.g.
+	 * <code>${plugin.version}</code>.
+	 */
+	public String getDeclaredVersion() {
+		return declaredVersion != null ? declaredVersion : pluginArtifact.getVersion();
+	}
 
-	public UsedPlugin(String groupId, String artifactId, String version,
-			LocalArtifact usingProject) {
-		this.groupId = groupId != null && !groupId.equals("") ? groupId
-				: "org.apacge.maven.plugins";
-		this.artifactId = artifactId;
-		this.version = version;
-		this.usingProject = usingProject;
+	/**
+	 * @param declaredVersion
+	 *            The version as declared in the project file, if it differs
+	 *            from the version of the plugin artifact.
+	 */
+	public void setDeclaredVersion(final String declaredVersion) {
+		this.declaredVersion = declaredVersion;
 	}
 
 	@Override
 	public String toString() {
-		return groupId + ":" + artifactId
-				+ (version != null ? ":" + version : "") + " @ " + usingProject;
+		String string = pluginArtifact.getGroup() + ":" + pluginArtifact.getArtifact()
+				+ (pluginArtifact.getVersion().isEmpty() ? "" : ":" + pluginArtifact.getVersion())
+				+ (managed ? " (managed by " : " (used by ") + project;
+		if (profile.isDefined()) {
+			string += " (" + profile.get() + ")";
+		}
+		string += ")";
+		return string;
 	}
 
 }
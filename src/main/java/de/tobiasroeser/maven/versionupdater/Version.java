@@ -0,0 +1,273 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A parsed Maven or OSGi version, which can be compared without allocating.
+ *
+ * A version consists of numeric segments (<code>1.2.3</code>) and an optional
+ * qualifier. Trailing zero segments are ignored, so <code>1.0</code> and
+ * <code>1.0.0</code> are equal.
+ *
+ * Maven qualifiers are ordered like Maven does for the well-known ones:
+ * <code>alpha &lt; beta &lt; milestone &lt; rc &lt; snapshot &lt; (release) &lt; sp</code>
+ * , followed by all other qualifiers in lexical order. A number after a
+ * well-known qualifier (<code>rc2</code>) is compared numerically, and a
+ * trailing <code>-SNAPSHOT</code> sorts before the same version without it.
+ *
+ * OSGi versions have at most three numeric segments and any qualifier sorts
+ * after the version without qualifier, in lexical order.
+ *
+ * Use {@link Artifact#getParsedVersion()} to get the cached version of an
+ * artifact.
+ */
+public class Version implements Comparable<Version> {
+
+	private static final int[] NO_NUMBERS = new int[0];
+
+	private static final int RANK_ALPHA = 0;
+	private static final int RANK_BETA = 1;
+	private static final int RANK_MILESTONE = 2;
+	private static final int RANK_RC = 3;
+	private static final int RANK_SNAPSHOT = 4;
+	private static final int RANK_RELEASE = 5;
+	private static final int RANK_SP = 6;
+	private static final int RANK_OTHER = 7;
+
+	private static final int TAIL_SNAPSHOT = 0;
+	private static final int TAIL_NONE = 1;
+	private static final int TAIL_OTHER = 2;
+
+	private final String text;
+	/** The numeric segments, without trailing zeros. */
+	private final int[] numbers;
+	private final int rank;
+	/** The number after a well-known qualifier. */
+	private final int number;
+	private final int tailRank;
+	/** The rest of the qualifier, compared lexically. */
+	private final String tail;
+	private final int hash;
+
+	private Version(final String text, final int[] numbers, final int rank, final int number, final int tailRank, final String tail) {
+		this.text = text;
+		this.numbers = numbers;
+		this.rank = rank;
+		this.number = number;
+		this.tailRank = tailRank;
+		this.tail = CoordinateTable.instance.intern(tail);
+		this.hash = 31 * (31 * (31 * (31 * Arrays.hashCode(numbers) + rank) + number) + tailRank) + tail.hashCode();
+	}
+
+	/**
+	 * Parse a Maven version, e.g. <code>1.2.0-rc1-SNAPSHOT</code>.
+	 */
+	public static Version parseMaven(final String text) {
+		final String version = text.trim();
+		final int length = version.length();
+
+		int[] numbers = new int[4];
+		int count = 0;
+		int pos = 0;
+		while (pos < length && isDigit(version.charAt(pos))) {
+			final int end = digitsEnd(version, pos);
+			if (count == numbers.length) {
+				numbers = Arrays.copyOf(numbers, count * 2);
+			}
+			numbers[count++] = parseInt(version, pos, end);
+			pos = end;
+			if (pos + 1 < length && version.charAt(pos) == '.' && isDigit(version.charAt(pos + 1))) {
+				++pos;
+			} else {
+				break;
+			}
+		}
+		if (pos < length && isSeparator(version.charAt(pos))) {
+			++pos;
+		}
+
+		final String qualifier = version.substring(pos).toLowerCase(Locale.ENGLISH);
+
+		// well-known qualifier word, optional number, rest
+		int wordEnd = 0;
+		while (wordEnd < qualifier.length() && Character.isLetter(qualifier.charAt(wordEnd))) {
+			++wordEnd;
+		}
+		final int rank = rank(qualifier.substring(0, wordEnd));
+		if (rank == RANK_OTHER) {
+			return new Version(text, trim(numbers, count), rank, 0, TAIL_OTHER, qualifier);
+		}
+
+		int numberStart = wordEnd;
+		if (wordEnd > 0 && numberStart < qualifier.length() && isSeparator(qualifier.charAt(numberStart))
+				&& numberStart + 1 < qualifier.length() && isDigit(qualifier.charAt(numberStart + 1))) {
+			++numberStart;
+		}
+		final int numberEnd = digitsEnd(qualifier, numberStart);
+		final int number = numberEnd > numberStart ? parseInt(qualifier, numberStart, numberEnd) : 0;
+
+		int tailStart = numberEnd > numberStart ? numberEnd : wordEnd;
+		if (tailStart < qualifier.length() && isSeparator(qualifier.charAt(tailStart))) {
+			++tailStart;
+		}
+		final String tail = qualifier.substring(tailStart);
+		final int tailRank = tail.isEmpty() ? TAIL_NONE : tail.equals("snapshot") ? TAIL_SNAPSHOT : TAIL_OTHER;
+
+		return new Version(text, trim(numbers, count), rank, number, tailRank, tailRank == TAIL_OTHER ? tail : "");
+	}
+
+	/**
+	 * Parse an OSGi version, e.g. <code>1.2.0.v20100101</code>.
+	 */
+	public static Version parseOsgi(final String text) {
+		final String version = text.trim();
+		final int[] numbers = new int[3];
+		int count = 0;
+		int pos = 0;
+		while (count < 3 && pos < version.length() && isDigit(version.charAt(pos))) {
+			final int end = digitsEnd(version, pos);
+			numbers[count++] = parseInt(version, pos, end);
+			pos = end;
+			if (pos < version.length() && version.charAt(pos) == '.') {
+				++pos;
+			} else {
+				break;
+			}
+		}
+		final String qualifier = version.substring(pos);
+		return new Version(text, trim(numbers, count), qualifier.isEmpty() ? RANK_RELEASE : RANK_OTHER, 0,
+				qualifier.isEmpty() ? TAIL_NONE : TAIL_OTHER, qualifier);
+	}
+
+	/**
+	 * The version as given.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * <code>true</code>, if this is a snapshot version.
+	 */
+	public boolean isSnapshot() {
+		return rank == RANK_SNAPSHOT || tailRank == TAIL_SNAPSHOT;
+	}
+
+	@Override
+	public int compareTo(final Version o) {
+		final int length = Math.max(numbers.length, o.numbers.length);
+		for (int i = 0; i < length; ++i) {
+			final int n1 = i < numbers.length ? numbers[i] : 0;
+			final int n2 = i < o.numbers.length ? o.numbers[i] : 0;
+			if (n1 != n2) {
+				return n1 < n2 ? -1 : 1;
+			}
+		}
+		if (rank != o.rank) {
+			return rank < o.rank ? -1 : 1;
+		}
+		if (number != o.number) {
+			return number < o.number ? -1 : 1;
+		}
+		if (tailRank != o.tailRank) {
+			return tailRank < o.tailRank ? -1 : 1;
+		}
+		return tail == o.tail ? 0 : tail.compareTo(o.tail);
+	}
+
+	public boolean isNewerThan(final Version o) {
+		return compareTo(o) > 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Versions are equal, if they have the same order, e.g.
+	 * <code>1.0</code> and <code>1.0.0</code>.
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final Version other = (Version) obj;
+		return hash == other.hash && compareTo(other) == 0;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private static int rank(final String word) {
+		if (word.isEmpty() || word.equals("ga") || word.equals("final") || word.equals("release")) {
+			return RANK_RELEASE;
+		}
+		if (word.equals("alpha") || word.equals("a")) {
+			return RANK_ALPHA;
+		}
+		if (word.equals("beta") || word.equals("b")) {
+			return RANK_BETA;
+		}
+		if (word.equals("milestone") || word.equals("m")) {
+			return RANK_MILESTONE;
+		}
+		if (word.equals("rc") || word.equals("cr")) {
+			return RANK_RC;
+		}
+		if (word.equals("snapshot")) {
+			return RANK_SNAPSHOT;
+		}
+		if (word.equals("sp")) {
+			return RANK_SP;
+		}
+		return RANK_OTHER;
+	}
+
+	private static int[] trim(final int[] numbers, final int count) {
+		int length = count;
+		while (length > 0 && numbers[length - 1] == 0) {
+			--length;
+		}
+		return length == 0 ? NO_NUMBERS : Arrays.copyOf(numbers, length);
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isSeparator(final char c) {
+		return c == '.' || c == '-' || c == '_';
+	}
+
+	private static int digitsEnd(final String s, final int start) {
+		int end = start;
+		while (end < s.length() && isDigit(s.charAt(end))) {
+			++end;
+		}
+		return end;
+	}
+
+	/**
+	 * Parse the digits between <code>start</code> and <code>end</code>,
+	 * saturating at {@link Integer#MAX_VALUE}.
+	 */
+	private static int parseInt(final String s, final int start, final int end) {
+		long value = 0;
+		for (int i = start; i < end; ++i) {
+			value = value * 10 + (s.charAt(i) - '0');
+			if (value > Integer.MAX_VALUE) {
+				return Integer.MAX_VALUE;
+			}
+		}
+		return (int) value;
+	}
+
+}
@@ -1,7 +1,5 @@
 package de.tobiasroeser.maven.versionupdater;
 
-import static de.tototec.utils.functional.FList.flatMap;
-
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
@@ -9,34 +7,33 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.logging.LogFactory;
-import org.apache.maven.pom.x400.Dependency.Exclusions;
-import org.apache.maven.pom.x400.Exclusion;
-import org.apache.maven.pom.x400.Model;
-import org.apache.maven.pom.x400.Model.Dependencies;
-import org.apache.maven.pom.x400.ProjectDocument;
 import org.apache.xmlbeans.XmlException;
-import org.jackage.util.VariableExpander;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.tobiasroeser.maven.shared.MavenXmlSupport;
+import de.tobiasroeser.maven.shared.PomDocumentCache;
 import de.tototec.cmdoption.CmdlineParser;
 import de.tototec.cmdoption.CmdlineParserException;
 import de.tototec.utils.functional.Optional;
@@ -45,7 +42,45 @@ public class VersionUpdater {
 
 	// private String pomTemplateFileName = "pom.xml.template";
 	private String pomFileName = "pom.xml";
+	/**
+	 * A resident session is restarted, when the {@link CoordinateTable} holds
+	 * more than twice the GAVs after the first scan of the session plus this
+	 * number, e.g. because projects were changed repeatedly.
+	 */
+	private static final int MIN_COORDINATE_GROWTH = 10000;
+
 	private final Logger log = LoggerFactory.getLogger(VersionUpdater.class);
+	/** The parsed project files of the current session. */
+	private PomDocumentCache pomCache = new PomDocumentCache(PomDocumentCache.DEFAULT_CAPACITY);
+	/** The extracted project information of the current session. */
+	private PomIndex pomIndex = new PomIndex(pomCache, null, false);
+	/**
+	 * If <code>true</code>, keep project cache and index across runs with the
+	 * same settings.
+	 */
+	private boolean resident = false;
+	/** The settings of the current project cache and index. */
+	private String session;
+	/**
+	 * The number of GAVs in the {@link CoordinateTable} after the first scan
+	 * of the current session.
+	 */
+	private int sessionGavCount;
+	/**
+	 * The writer for the results of listing commands of the current run or
+	 * <code>null</code>, if they are logged as text.
+	 */
+	private ReportWriter report;
+	/**
+	 * The plan recording the changes of the current run or <code>null</code>,
+	 * if changes are written.
+	 */
+	private ChangePlan plan;
+	/**
+	 * The standard output of the current run. Log messages are moved to
+	 * stderr, if results are written to it.
+	 */
+	private PrintStream stdout = System.out;
 
 	public static void main(final String[] args) {
 		try {
@@ -58,6 +93,15 @@ public class VersionUpdater {
 	}
 
 	public int run(final String[] args) {
+		return run(args, null);
+	}
+
+	/**
+	 * @param workingDir
+	 *            If not <code>null</code>, resolve all relative paths against
+	 *            this directory instead of the current working directory.
+	 */
+	public int run(final String[] args, final File workingDir) {
 		final Config config = new Config();
 		final CmdlineParser cp = new CmdlineParser(config);
 		cp.setProgramName("mvu");
@@ -67,9 +111,7 @@ public class VersionUpdater {
 			System.err.println(e.getMessage());
 			return 1;
 		}
-		if (config.verbose) {
-			Dependency.setVerbose(config.verbose);
-		}
+		Dependency.setVerbose(config.verbose);
 		if (config.help) {
 			final StringBuilder sb = new StringBuilder();
 			sb.append("Maven Version Updater " + BuildConfig.mvuVersion() + " - " + BuildConfig.mvuCopyright() + "\n\n");
@@ -77,151 +119,619 @@ public class VersionUpdater {
 			System.out.println(sb);
 			return 0;
 		}
-		for (final String key : config.updateArtifactAndDepVersion) {
-			config.updateArtifactVersion.add(key);
-			config.setDepVersions.add(key);
+		if (config.daemon) {
+			if (resident) {
+				System.err.println("Already running as daemon");
+				return 1;
+			}
+			return new VersionUpdaterDaemon(config.daemonPort).run();
+		}
+		if (config.stopDaemon) {
+			System.err.println("Option --stop-daemon is only supported by the mvu client");
+			return 1;
+		}
+
+		if (workingDir != null) {
+			config.resolvePaths(workingDir);
 		}
 
 		return run(config);
 	}
 
 	public int run(final Config config) {
+		stdout = System.out;
 		try {
 			final List<String> dirs = config.dirs;
 			if (dirs.size() == 0) {
 				dirs.add(".");
 			}
 
+			if (config.applyPlan != null) {
+				final ChangePlan planToApply = ChangePlan.read(new File(config.applyPlan), config.baseDir);
+				log.info("Applying " + planToApply + " from: " + config.applyPlan);
+				return planToApply.apply(config.threads, config.dryrun) ? 0 : 1;
+			}
+			if (config.plan != null) {
+				plan = new ChangePlan(config.baseDir);
+			}
+
+			report = ReportWriter.open(config.outputFormat, stdout, config.output != null ? new File(config.output) : null);
+			if (report != null && config.output == null) {
+				// keep the records on stdout free of log messages
+				System.setOut(System.err);
+			}
+
+			List<Config> operations = Collections.emptyList();
+			if (config.batch != null) {
+				operations = readBatch(config);
+				if (operations == null) {
+					return 1;
+				}
+			}
+			final List<Config> allOperations = new ArrayList<Config>(operations);
+			allOperations.add(0, config);
+			for (final Config operation : allOperations) {
+				if (report == null && operation.affectedModules.containsValue("-")) {
+					// keep the list of modules on stdout free of log messages
+					System.setOut(System.err);
+				}
+			}
+			if (config.batch != null) {
+				log.info("Running " + operations.size() + " steps of batch script: "
+						+ ("-".equals(config.batch) ? "stdin" : config.batch));
+			}
+
 			final List<String> profiles = config.profiles();
 			log.debug("Profiles: {}", profiles);
 
+			File indexFile = null;
+			if (config.index) {
+				indexFile = PomIndex.indexFileFor(new File(config.indexDir), dirs);
+				log.debug("Using index file: {}", indexFile);
+			}
+			final String newSession = config.pomCacheSize + ":" + indexFile + ":" + config.xmlBeansReader;
+			final boolean newSessionNeeded = !resident || !newSession.equals(session)
+					|| CoordinateTable.instance.gavCount() > 2 * sessionGavCount + MIN_COORDINATE_GROWTH;
+			if (newSessionNeeded) {
+				// all ids of the previous session are dropped with its projects
+				CoordinateTable.instance.clear();
+				pomCache = new PomDocumentCache(config.pomCacheSize);
+				pomIndex = new PomIndex(pomCache, indexFile, config.xmlBeansReader);
+				pomIndex.load();
+				session = newSession;
+			} else {
+				log.debug("Reusing project cache and index");
+				pomIndex.revalidate();
+			}
+
 			log.info("Scanning for projects based on: " + dirs);
-			final List<LocalArtifact> reactorArtifacts = scanReactorArtifacts(dirs, profiles);
+			final List<LocalArtifact> reactorArtifacts = scanReactorArtifacts(dirs, profiles, config.threads);
+			WorkspaceIndex workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			if (newSessionNeeded) {
+				sessionGavCount = CoordinateTable.instance.gavCount();
+			}
+
+			workspace = runOperations(config, reactorArtifacts, profiles, workspace);
 
-			if (config.listArtifacts) {
-				log.info("Local artifacts:\n  - " + formatList(reactorArtifacts, "\n  - "));
+			for (final Config operation : operations) {
+				workspace = runOperations(operation, reactorArtifacts, profiles, workspace);
 			}
 
-			if (config.listDependencies) {
-				showDependencies(reactorArtifacts, null, config.exactMatch, config.filterLocal, config.filterSystem, profiles);
+			if (plan != null) {
+				plan.write(new File(config.plan));
+				log.info("Wrote " + plan + " to: " + config.plan);
+				if (plan.isIncomplete()) {
+					log.error("Some changes could not be planned, see above");
+					pomIndex.save();
+					return 1;
+				}
 			}
 
-			// Produce some output
-			if (config.listDepsAndDependants) {
-				log.info("Analyzing dependencies...");
-				final Map<Artifact, List<Dependency>> reactorDependencies = evaluateDirectArtifactDependencies(reactorArtifacts);
+			pomIndex.save();
 
-				log.info(MessageFormat.format("Found {0} projects. Checking for duplicates...", reactorArtifacts.size()));
-				checkForDuplicates(reactorArtifacts);
-				log.info("Found the following artifacts: \n  " + formatList(reactorArtifacts, "\n  "));
+			if (config.verbose) {
+				log.info("Project file cache: " + pomCache);
+				log.info("Project index: " + pomIndex);
+			}
 
-				final Map<String, List<LocalArtifact>> localArtifacts = buildArtifactMultiMap(reactorArtifacts);
-				final Map<String, List<LocalArtifact>> depKeysToDependants = buildDependencyMultiMap(reactorDependencies);
+			// if (config.generateExcludes.size() > 0) {
+			// for (Entry<String, String> e : config.generateExcludes
+			// .entrySet()) {
+			// generateExcludes(e.getKey(), e.getValue(),
+			// reactorArtifacts, config.dryrun);
+			// }
+			// }
 
-				final StringBuilder depResult = new StringBuilder();
-				for (final Boolean showLocal : new Boolean[] { false, true }) {
-					for (final Entry<String, List<LocalArtifact>> dep : depKeysToDependants.entrySet()) {
-						final boolean local = localArtifacts.containsKey(dep.getKey());
-						if (local == showLocal) {
-							depResult.append((MessageFormat.format("\n  {2} {0}\n   - {1}", dep.getKey(), formatList(dep.getValue(), "\n   - "),
-									local ? "LOCAL" : "")));
-						}
+			return 0;
+		} catch (final PatternSyntaxException e) {
+			log.error("Invalid search pattern: " + e.getMessage());
+			return 1;
+		} catch (final Exception e) {
+			log.error("Errors occured.", e);
+			return 1;
+		} finally {
+			if (report != null) {
+				try {
+					report.close();
+				} catch (final IOException e) {
+					log.error("Could not write output: " + (config.output != null ? config.output : "stdout"), e);
+				}
+				report = null;
+			}
+			plan = null;
+			System.setOut(stdout);
+			stdout = System.out;
+		}
+	}
+
+	/**
+	 * Run the listing, search and modification commands of
+	 * <code>config</code> in their fixed order.
+	 *
+	 * @return The workspace index, which is rebuilt after project files were
+	 *         modified.
+	 */
+	private WorkspaceIndex runOperations(final Config config, final List<LocalArtifact> reactorArtifacts,
+			final List<String> profiles, WorkspaceIndex workspace) throws Exception {
+		for (final String key : config.updateArtifactAndDepVersion) {
+			config.updateArtifactVersion.add(key);
+			config.setDepVersions.add(key);
+		}
+		config.updateArtifactAndDepVersion.clear();
+
+		if (config.listArtifacts) {
+			if (report != null) {
+				for (final LocalArtifact artifact : workspace.getArtifacts()) {
+					report.write("artifact", artifact, null, artifact.getLocation());
+				}
+				report.flush();
+			} else {
+				log.info("Local artifacts:\n  - " + formatList(workspace.getArtifacts(), "\n  - "));
+			}
+		}
+
+		if (config.listDependencies) {
+			showDependencies(workspace, null, config.filterLocal, config.filterSystem);
+		}
+
+		// Produce some output
+		if (config.listDepsAndDependants && report != null) {
+			checkForDuplicates(workspace.getArtifacts());
+			final IntMultiMap<Dependency> reactorDependencies = workspace.getDependenciesByGav();
+			for (int i = 0; i < reactorDependencies.keyCount(); ++i) {
+				for (final Dependency dependency : reactorDependencies.get(reactorDependencies.keyAt(i))) {
+					report.write("dependant", dependency.getDependencyArtifact(), dependency.getProject(),
+							workspace.isLocal(dependency.getDependencyArtifact().getGaId()) ? "local" : null);
+				}
+			}
+			report.flush();
+
+		} else if (config.listDepsAndDependants) {
+			log.info("Analyzing dependencies...");
+			final IntMultiMap<Dependency> reactorDependencies = workspace.getDependenciesByGav();
+
+			log.info(MessageFormat.format("Found {0} projects. Checking for duplicates...", workspace.getArtifacts().size()));
+			checkForDuplicates(workspace.getArtifacts());
+			log.info("Found the following artifacts: \n  " + formatList(workspace.getArtifacts(), "\n  "));
+
+			final IntMultiMap<LocalArtifact> depKeysToDependants = buildDependencyMultiMap(reactorDependencies);
+
+			final StringBuilder depResult = new StringBuilder();
+			for (final Boolean showLocal : new Boolean[] { false, true }) {
+				for (int i = 0; i < depKeysToDependants.keyCount(); ++i) {
+					final int gaId = depKeysToDependants.keyAt(i);
+					final boolean local = workspace.isLocal(gaId);
+					if (local == showLocal) {
+						depResult.append((MessageFormat.format("\n  {2} {0}\n   - {1}", CoordinateTable.instance.getGaKey(gaId),
+								formatList(depKeysToDependants.get(gaId), "\n   - "), local ? "LOCAL" : "")));
 					}
 				}
-				log.info(MessageFormat.format("Found {0} dependencies: {1}", reactorDependencies.size(), depResult));
 			}
+			log.info(MessageFormat.format("Found {0} dependencies: {1}", reactorDependencies.keyCount(), depResult));
+		}
 
-			if (config.searchArtifacts.size() > 0) {
-				final Map<String, List<LocalArtifact>> artifactMultiMap = buildArtifactMultiMap(reactorArtifacts);
-				findOrSearchArtifacts(config.searchArtifacts, "artifact", config.exactMatch, artifactMultiMap);
+		if (config.searchArtifacts.size() > 0) {
+			findOrSearchArtifacts(config.searchArtifacts, "artifact", config.searchMode(), workspace);
+		}
+
+		if (config.searchDependencies.size() > 0) {
+			for (final SearchIndex.Match match : workspace.getDependencySearchIndex().search(config.searchDependencies,
+					config.searchMode())) {
+				showDependencies(workspace, match, config.filterLocal, null);
 			}
+		}
 
-			if (config.searchDependencies.size() > 0) {
-				for (final String search : config.searchDependencies) {
-					showDependencies(reactorArtifacts, search, config.exactMatch, config.filterLocal, null, profiles);
+		if (config.searchPlugins.size() > 0) {
+			for (final SearchIndex.Match match : workspace.getPluginSearchIndex().search(config.searchPlugins,
+					config.searchMode())) {
+				showPlugins(workspace, match);
+			}
+		}
+
+		if (config.listTransitiveDependants.size() > 0 || config.listTransitiveDependencies.size() > 0
+				|| config.affectedModules.size() > 0 || config.listBuildWaves) {
+			final ReactorGraph graph = buildReactorGraph(workspace, profiles);
+			if (config.listTransitiveDependants.size() > 0) {
+				final BitSet nodes = findNodes(graph, config.listTransitiveDependants, config.searchMode(), workspace);
+				if (report != null) {
+					writeArtifacts("transitive-dependant", graph.getArtifacts(graph.getTransitiveDependants(nodes)));
+				} else {
+					log.info("Found transitive dependants of " + formatList(graph.getArtifacts(nodes), ", ") + ":\n  - "
+							+ formatList(graph.getArtifacts(graph.getTransitiveDependants(nodes)), "\n  - "));
 				}
 			}
+			if (config.listTransitiveDependencies.size() > 0) {
+				final BitSet nodes = findNodes(graph, config.listTransitiveDependencies, config.searchMode(), workspace);
+				if (report != null) {
+					writeArtifacts("transitive-dependency", graph.getArtifacts(graph.getTransitiveDependencies(nodes)));
+				} else {
+					log.info("Found transitive dependencies of " + formatList(graph.getArtifacts(nodes), ", ") + ":\n  - "
+							+ formatList(graph.getArtifacts(graph.getTransitiveDependencies(nodes)), "\n  - "));
+				}
+			}
+			for (final Entry<String, String> e : config.affectedModules.entrySet()) {
+				writeAffectedModules(graph, e.getKey(), e.getValue(), config.baseDir, config.dryrun);
+			}
+			if (config.listBuildWaves) {
+				showBuildWaves(graph, config.buildTimes);
+			}
+		}
+
+		if (config.searchMultiVersionDeps) {
+			searchMultiVersionDeps(workspace, config.filterLocal, config.filterSystem);
+		}
+
+		if (config.searchMultiVersionPlugins) {
+			searchMultiVersionPlugins(workspace);
+		}
 
-			if (config.searchMultiVersionDeps) {
-				searchMultiVersionDeps(reactorArtifacts);
+		if (config.detectLocalVersionMismatch) {
+			reportVersionMismatch(workspace, null);
+		}
+
+		if (config.alignLocalDepVersion.size() > 0) {
+			final List<VersionMismatch> mismatches = reportVersionMismatch(workspace, config.alignLocalDepVersion);
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final VersionMismatch vm : mismatches) {
+				modifyDependencyVersion(vm.getDependency(), vm.getArtifact().getVersion(), workspace, config.dryrun, changeSet);
 			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			}
+		}
 
-			if (config.detectLocalVersionMismatch) {
-				reportVersionMismatch(reactorArtifacts, null);
+		if (config.setDepVersions.size() > 0) {
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final String key : config.setDepVersions) {
+				final String[] split = key.split(":", 3);
+				if (split.length != 3) {
+					throw new IllegalAccessException("Illegal dependency key given: " + key);
+				}
+				for (final Dependency dependency : workspace.getDependencies(CoordinateTable.instance.findGa(split[0], split[1]))) {
+					modifyDependencyVersion(dependency, split[2], workspace, config.dryrun, changeSet);
+				}
+			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
 			}
+		}
 
-			if (config.alignLocalDepVersion.size() > 0) {
-				final List<VersionMismatch> mismatches = reportVersionMismatch(reactorArtifacts, config.alignLocalDepVersion);
-				for (final VersionMismatch vm : mismatches) {
-					modifyDependencyVersion(vm.getDependency(), vm.getArtifact().getVersion(), config.dryrun);
+		if (config.setPluginVersions.size() > 0) {
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final String key : config.setPluginVersions) {
+				final String[] split = key.split(":", 3);
+				if (split.length != 3) {
+					throw new IllegalArgumentException("Illegal plugin key given: " + key);
+				}
+				for (final UsedPlugin plugin : workspace.getPlugins(CoordinateTable.instance.findGa(split[0], split[1]))) {
+					modifyPluginVersion(plugin, split[2], workspace, config.dryrun, changeSet);
 				}
 			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			}
+		}
+
+		if (config.persistArtifactListTo != null) {
+			persistArtifactListTo(workspace.getArtifacts(), config.persistArtifactListTo, config.dryrun);
+		}
 
-			if (config.setDepVersions.size() > 0) {
-				final Map<String, List<Dependency>> deps = findDirectArtifactDependencies(reactorArtifacts, profiles);
-				for (final String key : config.setDepVersions) {
-					final String[] split = key.split(":", 3);
-					if (split.length != 3) {
-						throw new IllegalAccessException("Illegal dependency key given: " + key);
+		if (config.readArtifactListFrom != null) {
+			readAndCheckArtifactList(workspace, config.readArtifactListFrom);
+		}
+
+		if (config.persistDeps.size() > 0) {
+			for (final Entry<String, String> e : config.persistDeps.entrySet()) {
+				saveDepsToFile(e.getKey(), e.getValue(), workspace, config.dryrun, profiles);
+			}
+		}
+
+		if (config.applyDeps.size() > 0) {
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final Entry<String, String> e : config.applyDeps.entrySet()) {
+				updateProjectDeps(e.getKey(), e.getValue(), workspace, config.dryrun, changeSet);
+			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			}
+		}
+
+		if (config.replaceDeps.size() > 0) {
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final Entry<String, String> e : config.replaceDeps.entrySet()) {
+				replaceDependency(e.getKey(), e.getValue(), workspace, config.dryrun, changeSet);
+			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			}
+		}
+
+		if (config.updateArtifactVersion.size() > 0) {
+			final PomChangeSet changeSet = newChangeSet(config);
+			for (final String artifact : config.updateArtifactVersion) {
+				updateProjectVersion(workspace, artifact, config.dryrun, changeSet);
+			}
+			if (changeSet.apply() > 0) {
+				workspace = buildWorkspaceIndex(reactorArtifacts, profiles);
+			}
+		}
+
+		return workspace;
+	}
+
+	/**
+	 * Options, which configure the scan of the workspace or the output and
+	 * can not be changed by a step of a batch script.
+	 */
+	private static final List<String> BATCH_UNSUPPORTED_OPTIONS = Arrays.asList("--help", "-h", "--directory", "-d",
+			"--profile", "--batch", "--threads", "--pom-cache-size", "--index", "--index-dir", "--xmlbeans-reader",
+			"--output-format", "--output", "--plan", "--apply-plan", "--daemon", "--daemon-port", "--stop-daemon");
+
+	/**
+	 * Read the steps of the batch script of <code>config</code>. Each
+	 * non-empty line, which does not start with <code>#</code>, holds the
+	 * options of one step. The settings <code>--dryrun</code>,
+	 * <code>--rewrite-poms</code>, <code>--exact</code>, <code>--match</code>
+	 * and the filters are taken from <code>config</code>, unless given in the
+	 * step.
+	 *
+	 * @return The steps or <code>null</code>, if the script could not be read
+	 *         or contains invalid steps.
+	 */
+	private List<Config> readBatch(final Config config) {
+		if (resident && "-".equals(config.batch)) {
+			// the daemon has no access to the stdin of the client
+			log.error("Reading a batch script from stdin is not supported by the daemon, give the script file instead");
+			return null;
+		}
+		final String scriptName = "-".equals(config.batch) ? "stdin" : config.batch;
+		final List<Config> steps = new LinkedList<Config>();
+		try {
+			final BufferedReader reader = new BufferedReader("-".equals(config.batch) ? new InputStreamReader(System.in)
+					: new FileReader(config.batch));
+			try {
+				int lineNr = 0;
+				String line;
+				while ((line = reader.readLine()) != null) {
+					++lineNr;
+					line = line.trim();
+					if (line.isEmpty() || line.startsWith("#")) {
+						continue;
 					}
-					final List<Dependency> depsToChange = deps.get(split[0] + ":" + split[1]);
-					if (depsToChange != null) {
-						for (final Dependency dependency : depsToChange) {
-							modifyDependencyVersion(dependency, split[2], config.dryrun);
+
+					final String[] args = splitArgs(line);
+					for (final String arg : args) {
+						if (BATCH_UNSUPPORTED_OPTIONS.contains(arg)) {
+							log.error("Option " + arg + " is not supported in batch scripts, line " + lineNr + " of " + scriptName);
+							return null;
 						}
 					}
+
+					final Config step = new Config();
+					step.dryrun = config.dryrun;
+					step.rewritePoms = config.rewritePoms;
+					step.exactMatch = config.exactMatch;
+					step.match = config.match;
+					step.filterLocal = config.filterLocal;
+					step.filterSystem = config.filterSystem;
+					try {
+						new CmdlineParser(step).parse(args);
+					} catch (final CmdlineParserException e) {
+						log.error("Invalid step in line " + lineNr + " of " + scriptName + ": " + e.getMessage());
+						return null;
+					}
+					step.resolvePaths(config.baseDir);
+					steps.add(step);
 				}
+			} finally {
+				reader.close();
 			}
+		} catch (final IOException e) {
+			log.error("Could not read batch script: " + scriptName, e);
+			return null;
+		}
+		return steps;
+	}
 
-			if (config.persistArtifactListTo != null) {
-				persistArtifactListTo(reactorArtifacts, config.persistArtifactListTo, config.dryrun);
+	/**
+	 * Split a line of a batch script into arguments. Arguments are separated
+	 * by whitespace and can be quoted with <code>"</code> or <code>'</code>.
+	 */
+	private static String[] splitArgs(final String line) {
+		final List<String> args = new ArrayList<String>();
+		final StringBuilder arg = new StringBuilder();
+		boolean inArg = false;
+		char quote = 0;
+		for (int i = 0; i < line.length(); ++i) {
+			final char c = line.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				} else {
+					arg.append(c);
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+				inArg = true;
+			} else if (Character.isWhitespace(c)) {
+				if (inArg) {
+					args.add(arg.toString());
+					arg.setLength(0);
+					inArg = false;
+				}
+			} else {
+				arg.append(c);
+				inArg = true;
 			}
+		}
+		if (inArg) {
+			args.add(arg.toString());
+		}
+		return args.toArray(new String[args.size()]);
+	}
+
+	public boolean isResident() {
+		return resident;
+	}
+
+	public void setResident(final boolean resident) {
+		this.resident = resident;
+	}
+
+	/** Orders GAV ids by their parsed version. */
+	private static final Comparator<Integer> VERSION_ORDER = new Comparator<Integer>() {
+		@Override
+		public int compare(final Integer o1, final Integer o2) {
+			return CoordinateTable.instance.getParsedVersion(o1).compareTo(CoordinateTable.instance.getParsedVersion(o2));
+		}
+	};
 
-			if (config.readArtifactListFrom != null) {
-				readAndCheckArtifactList(reactorArtifacts, config.readArtifactListFrom);
+	/**
+	 * Report all dependencies, which are used in more than one version, with
+	 * the dependants of each version and the highest used or local version.
+	 */
+	private void searchMultiVersionDeps(final WorkspaceIndex workspace, final Boolean local, final Boolean system)
+			throws IOException {
+		final IntMultiMap<Dependency> deps = workspace.getDependenciesByGa();
+		final StringBuilder result = new StringBuilder();
+		int count = 0;
+
+		for (int i = 0; i < deps.keyCount(); ++i) {
+			final int gaId = deps.keyAt(i);
+			if (local != null && workspace.isLocal(gaId) != local.booleanValue()) {
+				continue;
 			}
 
-			if (config.persistDeps.size() > 0) {
-				for (final Entry<String, String> e : config.persistDeps.entrySet()) {
-					saveDepsToFile(e.getKey(), e.getValue(), reactorArtifacts, config.dryrun, profiles);
+			// Map(gav-id:dependants)
+			final Map<Integer, Set<LocalArtifact>> dependantsByVersion = new LinkedHashMap<Integer, Set<LocalArtifact>>();
+			for (final Dependency dependency : deps.get(gaId)) {
+				if (system != null && dependency.isSystem() != system.booleanValue()) {
+					continue;
+				}
+				final Integer gavId = dependency.getDependencyArtifact().getGavId();
+				Set<LocalArtifact> dependants = dependantsByVersion.get(gavId);
+				if (dependants == null) {
+					dependants = new LinkedHashSet<LocalArtifact>();
+					dependantsByVersion.put(gavId, dependants);
 				}
+				dependants.add(dependency.getProject());
+			}
+			if (dependantsByVersion.size() < 2) {
+				continue;
 			}
 
-			if (config.applyDeps.size() > 0) {
-				for (final Entry<String, String> e : config.applyDeps.entrySet()) {
-					updateProjectDeps(e.getKey(), e.getValue(), reactorArtifacts, config.dryrun);
-				}
+			final List<Integer> versions = new ArrayList<Integer>(dependantsByVersion.keySet());
+			Collections.sort(versions, VERSION_ORDER);
+
+			Version highest = CoordinateTable.instance.getParsedVersion(versions.get(versions.size() - 1));
+			String highestSource = "used";
+			final LocalArtifact newestLocal = workspace.getNewestLocalArtifact(gaId);
+			if (newestLocal != null && !highest.isNewerThan(newestLocal.getParsedVersion())) {
+				highest = newestLocal.getParsedVersion();
+				highestSource = "local";
 			}
 
-			if (config.replaceDeps.size() > 0) {
-				for (final Entry<String, String> e : config.replaceDeps.entrySet()) {
-					replaceDependency(e.getKey(), e.getValue(), reactorArtifacts, config.dryrun, profiles);
+			++count;
+			if (report != null) {
+				for (final Integer gavId : versions) {
+					for (final LocalArtifact dependant : dependantsByVersion.get(gavId)) {
+						report.write("multi-version-dependency", gavId, dependant, highest);
+					}
 				}
+				continue;
+			}
+			result.append(MessageFormat.format("\n  {0} ({1} versions, highest {2} version: {3})",
+					CoordinateTable.instance.getGaKey(gaId), versions.size(), highestSource, highest));
+			for (final Integer gavId : versions) {
+				final Set<LocalArtifact> dependants = dependantsByVersion.get(gavId);
+				result.append(MessageFormat.format("\n   - {0} ({1} dependants): {2}", CoordinateTable.instance.getVersion(gavId),
+						dependants.size(), formatList(dependants, ", ")));
 			}
+		}
+		if (report != null) {
+			report.flush();
+		} else {
+			log.info(MessageFormat.format("Found {0} dependencies with more than one version: {1}", count, result));
+		}
+	}
+
+	/**
+	 * Report all plugins, which are used in more than one version, with the
+	 * using projects of each version. Usages without a version are ignored.
+	 */
+	private void searchMultiVersionPlugins(final WorkspaceIndex workspace) throws IOException {
+		final IntMultiMap<UsedPlugin> plugins = workspace.getPluginsByGa();
+		final StringBuilder result = new StringBuilder();
+		int count = 0;
 
-			if (config.updateArtifactVersion.size() > 0) {
-				for (final String artifact : config.updateArtifactVersion) {
-					updateProjectVersion(reactorArtifacts, artifact, config.dryrun);
+		for (int i = 0; i < plugins.keyCount(); ++i) {
+			final int gaId = plugins.keyAt(i);
+
+			// Map(gav-id:usages)
+			final Map<Integer, List<UsedPlugin>> usagesByVersion = new LinkedHashMap<Integer, List<UsedPlugin>>();
+			for (final UsedPlugin plugin : plugins.get(gaId)) {
+				if (plugin.getPluginArtifact().getVersion().isEmpty()) {
+					continue;
 				}
+				final Integer gavId = plugin.getPluginArtifact().getGavId();
+				List<UsedPlugin> usages = usagesByVersion.get(gavId);
+				if (usages == null) {
+					usages = new LinkedList<UsedPlugin>();
+					usagesByVersion.put(gavId, usages);
+				}
+				usages.add(plugin);
+			}
+			if (usagesByVersion.size() < 2) {
+				continue;
 			}
 
-			// if (config.generateExcludes.size() > 0) {
-			// for (Entry<String, String> e : config.generateExcludes
-			// .entrySet()) {
-			// generateExcludes(e.getKey(), e.getValue(),
-			// reactorArtifacts, config.dryrun);
-			// }
-			// }
+			final List<Integer> versions = new ArrayList<Integer>(usagesByVersion.keySet());
+			Collections.sort(versions, VERSION_ORDER);
 
-			return 0;
-		} catch (final Exception e) {
-			log.error("Errors occured.", e);
-			return 1;
+			++count;
+			if (report != null) {
+				final String highest = CoordinateTable.instance.getVersion(versions.get(versions.size() - 1));
+				for (final Integer gavId : versions) {
+					for (final UsedPlugin plugin : usagesByVersion.get(gavId)) {
+						report.write("multi-version-plugin", gavId, plugin.getProject(), highest);
+					}
+				}
+				continue;
+			}
+			result.append(MessageFormat.format("\n  {0} ({1} versions, highest version: {2})",
+					CoordinateTable.instance.getGaKey(gaId), versions.size(),
+					CoordinateTable.instance.getVersion(versions.get(versions.size() - 1))));
+			for (final Integer gavId : versions) {
+				final List<UsedPlugin> usages = usagesByVersion.get(gavId);
+				result.append(MessageFormat.format("\n   - {0} ({1} usages)\n     - {2}", CoordinateTable.instance.getVersion(gavId),
+						usages.size(), formatList(usages, "\n     - ")));
+			}
+		}
+		if (report != null) {
+			report.flush();
+		} else {
+			log.info(MessageFormat.format("Found {0} plugins with more than one version: {1}", count, result));
 		}
-	}
-
-	private void searchMultiVersionDeps(final List<LocalArtifact> reactorArtifacts) {
-		log.warn("NOT IMPLEMENTED");
 	}
 
 	private void persistArtifactListTo(final List<LocalArtifact> reactorArtifacts, final String outputTo, final boolean dryrun) {
@@ -233,44 +743,246 @@ public class VersionUpdater {
 		}
 
 		try {
-			log.info("Writing artifacts to " + file.getAbsolutePath());
-
-			if (file.exists()) {
-				log.error("File '" + file.getAbsolutePath() + "' already exists. Skipping.");
-				return;
-			}
-
-			final PrintWriter printWriter = new PrintWriter(file);
-
-			final ArrayList<LocalArtifact> sortedArtifacts = new ArrayList<LocalArtifact>(reactorArtifacts);
-			Collections.sort(sortedArtifacts, new Comparator<LocalArtifact>() {
-				@Override
-				public int compare(final LocalArtifact o1, final LocalArtifact o2) {
-					int comp = o1.getGroup().compareTo(o2.getGroup());
-					if (comp == 0) {
-						comp = o1.getArtifact().compareTo(o2.getArtifact());
+			log.info("Writing artifacts to " + file.getAbsolutePath());
+
+			if (file.exists()) {
+				log.error("File '" + file.getAbsolutePath() + "' already exists. Skipping.");
+				return;
+			}
+
+			final PrintWriter printWriter = new PrintWriter(file);
+
+			final ArrayList<LocalArtifact> sortedArtifacts = new ArrayList<LocalArtifact>(reactorArtifacts);
+			Collections.sort(sortedArtifacts, Artifact.ORDER);
+
+			for (final LocalArtifact artifact : sortedArtifacts) {
+				final String line = artifact.getGroup() + ":" + artifact.getArtifact() + ":" + artifact.getVersion();
+				printWriter.println(line);
+			}
+
+			printWriter.close();
+
+		} catch (final FileNotFoundException e) {
+			throw new Error("Cannot write file " + outputTo, e);
+		}
+
+	}
+
+	/**
+	 * Write the local projects, which must be rebuilt after the files listed
+	 * in <code>changesFile</code> changed, as a comma separated list of
+	 * <code>groupId:artifactId</code> suitable for <code>mvn -pl</code>.
+	 * These are the projects owning the changed files and their transitive
+	 * dependants. A file is owned by the project with the nearest project
+	 * file in its or a parent directory.
+	 *
+	 * With <code>--output-format</code>, an <code>affected-module</code>
+	 * record is written for each project instead of the list for stdout.
+	 *
+	 * @param outputTo
+	 *            The file to write or <code>"-"</code> for stdout.
+	 */
+	private void writeAffectedModules(final ReactorGraph graph, final String changesFile, final String outputTo,
+			final File baseDir, final boolean dryrun) throws IOException {
+
+		final List<String> changes = new LinkedList<String>();
+		try {
+			final LineNumberReader reader = new LineNumberReader(new BufferedReader(new FileReader(changesFile)));
+			try {
+				String line = null;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (!line.equals("") && !line.startsWith("#")) {
+						changes.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (final IOException e) {
+			log.error("Could not read changed files from: " + changesFile, e);
+			return;
+		}
+
+		// Map(project-directory:node)
+		final Map<File, Integer> projectDirs = new LinkedHashMap<File, Integer>();
+		for (int node = 0; node < graph.size(); ++node) {
+			final File dir = canonical(graph.getArtifact(node).getLocation()).getParentFile();
+			if (!projectDirs.containsKey(dir)) {
+				projectDirs.put(dir, node);
+			}
+		}
+
+		final BitSet changed = new BitSet(graph.size());
+		for (final String change : changes) {
+			File path = new File(change);
+			if (!path.isAbsolute()) {
+				path = new File(baseDir, change);
+			}
+			Integer owner = null;
+			for (File dir = canonical(path); dir != null && owner == null; dir = dir.getParentFile()) {
+				owner = projectDirs.get(dir);
+			}
+			if (owner == null) {
+				log.warn("Changed file does not belong to any local project: " + change);
+			} else {
+				log.debug("Changed file {} belongs to project {}", change, graph.getArtifact(owner));
+				changed.set(owner);
+			}
+		}
+
+		final BitSet affected = graph.getTransitiveDependants(changed);
+		affected.or(changed);
+		final List<String> modules = new ArrayList<String>(affected.cardinality());
+		for (final LocalArtifact artifact : graph.getArtifacts(affected)) {
+			modules.add(artifact.getGroup() + ":" + artifact.getArtifact());
+		}
+		log.info("Found " + changed.cardinality() + " changed and " + (modules.size() - changed.cardinality())
+				+ " dependant projects:\n  - " + formatList(graph.getArtifacts(affected), "\n  - "));
+
+		if (report != null) {
+			for (int node = affected.nextSetBit(0); node >= 0; node = affected.nextSetBit(node + 1)) {
+				report.write("affected-module", graph.getArtifact(node), null, changed.get(node) ? "changed" : "dependant");
+			}
+			report.flush();
+		}
+		if (outputTo.equals("-")) {
+			if (report == null) {
+				stdout.println(formatList(modules, ","));
+				stdout.flush();
+			}
+			return;
+		}
+		final File file = new File(outputTo);
+		if (dryrun) {
+			log.info("I would write affected projects to " + file.getAbsolutePath());
+			return;
+		}
+		try {
+			log.info("Writing affected projects to " + file.getAbsolutePath());
+			final PrintWriter printWriter = new PrintWriter(file);
+			printWriter.println(formatList(modules, ","));
+			printWriter.close();
+		} catch (final FileNotFoundException e) {
+			log.error("Could not write file: " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Show the build waves and the critical path of the graph.
+	 *
+	 * @param buildTimesFile
+	 *            A file with lines <code>groupId:artifactId seconds</code> or
+	 *            <code>null</code>. Projects without a given time count with
+	 *            the mean time of the given projects.
+	 */
+	private void showBuildWaves(final ReactorGraph graph, final String buildTimesFile) throws IOException {
+		for (final List<LocalArtifact> cycle : graph.getCycles()) {
+			log.error("Found dependency cycle, which can not be built: " + formatList(cycle, ", "));
+		}
+
+		final int[] waves = graph.getWaves();
+		final List<List<LocalArtifact>> waveList = new ArrayList<List<LocalArtifact>>();
+		for (int node = 0; node < waves.length; ++node) {
+			while (waveList.size() <= waves[node]) {
+				waveList.add(new LinkedList<LocalArtifact>());
+			}
+			waveList.get(waves[node]).add(graph.getArtifact(node));
+		}
+		if (report != null) {
+			for (int wave = 0; wave < waveList.size(); ++wave) {
+				for (final LocalArtifact artifact : waveList.get(wave)) {
+					report.write("build-wave", artifact, null, wave + 1);
+				}
+			}
+		} else {
+			final StringBuilder result = new StringBuilder();
+			for (int wave = 0; wave < waveList.size(); ++wave) {
+				result.append(MessageFormat.format("\n  Wave {0} ({1} projects): {2}", wave + 1, waveList.get(wave).size(),
+						formatList(waveList.get(wave), ", ")));
+			}
+			log.info("Found " + waveList.size() + " build waves:" + result);
+		}
+
+		final double[] weights = new double[graph.size()];
+		Arrays.fill(weights, 1);
+		if (buildTimesFile != null) {
+			readBuildTimes(graph, buildTimesFile, weights);
+		}
+		final int[] criticalPath = graph.getCriticalPath(weights);
+		if (report != null) {
+			for (final int node : criticalPath) {
+				report.write("critical-path", graph.getArtifact(node), null, weights[node]);
+			}
+			report.flush();
+			return;
+		}
+		double length = 0;
+		final List<String> path = new ArrayList<String>(criticalPath.length);
+		for (final int node : criticalPath) {
+			length += weights[node];
+			path.add(graph.getArtifact(node) + " (" + weights[node] + ")");
+		}
+		log.info("Critical path (length " + length + "):\n  - " + formatList(path, "\n  - "));
+	}
+
+	private void readBuildTimes(final ReactorGraph graph, final String buildTimesFile, final double[] weights) {
+		// Map(ga-key:seconds)
+		final Map<String, Double> times = new LinkedHashMap<String, Double>();
+		try {
+			final LineNumberReader reader = new LineNumberReader(new BufferedReader(new FileReader(buildTimesFile)));
+			try {
+				String line = null;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (line.equals("") || line.startsWith("#")) {
+						continue;
 					}
-					if (comp == 0) {
-						comp = o1.getVersion().compareTo(o2.getVersion());
+					final String[] split = line.split("\\s+");
+					final String[] key = split[0].split(":");
+					try {
+						if (split.length != 2 || key.length < 2) {
+							throw new NumberFormatException();
+						}
+						times.put(key[0] + ":" + key[1], Double.valueOf(split[1]));
+					} catch (final NumberFormatException e) {
+						log.warn("Could not parse line " + reader.getLineNumber() + ": " + line);
 					}
-					return comp;
 				}
-			});
-
-			for (final LocalArtifact artifact : reactorArtifacts) {
-				final String line = artifact.getGroup() + ":" + artifact.getArtifact() + ":" + artifact.getVersion();
-				printWriter.println(line);
+			} finally {
+				reader.close();
 			}
+		} catch (final IOException e) {
+			log.error("Could not read build times from: " + buildTimesFile, e);
+			return;
+		}
 
-			printWriter.close();
-
-		} catch (final FileNotFoundException e) {
-			throw new Error("Cannot write file " + outputTo, e);
+		double sum = 0;
+		int count = 0;
+		for (final Double time : times.values()) {
+			sum += time;
+			++count;
+		}
+		final double mean = count > 0 ? sum / count : 1;
+		for (int node = 0; node < weights.length; ++node) {
+			final Double time = times.get(graph.getArtifact(node).getGaKey());
+			if (time == null) {
+				log.debug("No build time for project {}, using {}", graph.getArtifact(node), mean);
+			}
+			weights[node] = time != null ? time : mean;
 		}
+	}
 
+	private static File canonical(final File file) {
+		try {
+			return file.getCanonicalFile();
+		} catch (final IOException e) {
+			return file.getAbsoluteFile();
+		}
 	}
 
-	private void updateProjectVersion(final List<LocalArtifact> reactorArtifacts, final String artifact, final boolean dryrun) {
+	private void updateProjectVersion(final WorkspaceIndex workspace, final String artifact, final boolean dryrun,
+			final PomChangeSet changeSet) {
 
 		final String[] split = artifact.split(":", 3);
 		if (split.length != 3) {
@@ -278,41 +990,29 @@ public class VersionUpdater {
 			return;
 		}
 
-		LocalArtifact candidate = null;
-
-		for (final LocalArtifact localArtifact : reactorArtifacts) {
-			if (localArtifact.getGroup().equals(split[0]) && localArtifact.getArtifact().equals(split[1])) {
-				candidate = localArtifact;
-				break;
-			}
-		}
+		final LocalArtifact candidate = workspace.findLocalArtifact(split[0] + ":" + split[1]);
 
 		if (candidate == null) {
 			log.error("Could to found project: " + split[0] + ":" + split[1]);
 			return;
 		}
 
+		if (candidate.getVersion().equals(split[2])) {
+			log.info("Project " + candidate + " already has version " + split[2]);
+			return;
+		}
+
+		if (candidate.getParsedVersion().isNewerThan(Version.parseMaven(split[2]))) {
+			log.warn("Project " + candidate + " will be downgraded to older version " + split[2]);
+		}
+
 		if (dryrun) {
 			log.info("I would change project version: " + artifact);
 			return;
 		}
 
 		log.info("Updating version for project: " + candidate + " to " + split[2]);
-
-		ProjectDocument o;
-		try {
-			o = ProjectDocument.Factory.parse(candidate.getLocation(), MavenXmlSupport.instance.createXmlOptions());
-
-			final Model project = o.getProject();
-			project.setVersion(split[2]);
-
-			o.save(candidate.getLocation());
-
-		} catch (final XmlException e) {
-			log.error("Could not process pom file: " + candidate.getLocation(), e);
-		} catch (final IOException e) {
-			log.error("Could not process pom file: " + candidate.getLocation(), e);
-		}
+		changeSet.setProjectVersion(candidate.getLocation(), split[2]);
 	}
 
 	// private void generateExcludes(String project, String dependency,
@@ -341,44 +1041,33 @@ public class VersionUpdater {
 	//
 	// }
 
-	private void replaceDependency(final String oldDependencyKey, final String newDependencyKey, final List<LocalArtifact> reactorArtifacts,
-			final boolean dryrun, final List<String> profiles) {
+	private void replaceDependency(final String oldDependencyKey, final String newDependencyKey, final WorkspaceIndex workspace,
+			final boolean dryrun, final PomChangeSet changeSet) {
 
-		final Map<String, List<Dependency>> depMap = findDirectArtifactDependencies(reactorArtifacts, profiles);
+		final String[] oldSplit = oldDependencyKey.split(":", 3);
+		if (oldSplit.length != 3) {
+			return;
+		}
 
-		for (final List<Dependency> depList : depMap.values()) {
-			for (final Dependency dep : depList) {
-				if (dep.getDependencyArtifact().toString().equals(oldDependencyKey)) {
+		for (final Dependency dep : workspace.getDependencies(CoordinateTable.instance.findGa(oldSplit[0], oldSplit[1]))) {
+			if (dep.getDependencyArtifact().toString().equals(oldDependencyKey)) {
 
-					final String[] split = newDependencyKey.split(":", 3);
-					if (split.length != 3) {
-						log.warn("Incorrect dependency key given: " + newDependencyKey);
-						continue;
-					}
-					final Artifact artifact = new Artifact(split[0], split[1], split[2], "jar");
-					modifyDependency(dep, artifact, dryrun);
+				final String[] split = newDependencyKey.split(":", 3);
+				if (split.length != 3) {
+					log.warn("Incorrect dependency key given: " + newDependencyKey);
+					continue;
 				}
+				final Artifact artifact = new Artifact(split[0], split[1], split[2], "jar");
+				modifyDependency(dep, artifact, workspace, dryrun, changeSet);
 			}
 		}
 
 	}
 
-	private void updateProjectDeps(final String readDepsFromFile, final String projectToUpate, final List<LocalArtifact> localArtifacts,
-			final boolean dryrun) {
-
-		LocalArtifact candidate = null;
+	private void updateProjectDeps(final String readDepsFromFile, final String projectToUpate, final WorkspaceIndex workspace,
+			final boolean dryrun, final PomChangeSet changeSet) {
 
-		for (final LocalArtifact artifact : localArtifacts) {
-			String key = artifact.getGroup() + ":" + artifact.getArtifact();
-			if (key.equals(projectToUpate)) {
-				candidate = artifact;
-			} else {
-				key += ":" + artifact.getVersion();
-				if (key.equals(projectToUpate)) {
-					candidate = artifact;
-				}
-			}
-		}
+		final LocalArtifact candidate = workspace.findLocalArtifact(projectToUpate);
 
 		if (candidate == null) {
 			log.error("Could not found project: " + projectToUpate);
@@ -390,7 +1079,7 @@ public class VersionUpdater {
 			return;
 		}
 
-		addDependencies(candidate, deps, dryrun);
+		addDependencies(candidate, deps, dryrun, changeSet);
 
 	}
 
@@ -476,7 +1165,7 @@ public class VersionUpdater {
 		return null;
 	}
 
-	private void saveDepsToFile(final String saveToFile, final String project, final List<LocalArtifact> localArtifacts, final boolean dryrun,
+	private void saveDepsToFile(final String saveToFile, final String project, final WorkspaceIndex workspace, final boolean dryrun,
 			final List<String> profiles) {
 		final File file = new File(saveToFile);
 		if (file.exists()) {
@@ -484,19 +1173,7 @@ public class VersionUpdater {
 			return;
 		}
 
-		LocalArtifact candidate = null;
-
-		for (final LocalArtifact artifact : localArtifacts) {
-			String key = artifact.getGroup() + ":" + artifact.getArtifact();
-			if (key.equals(project)) {
-				candidate = artifact;
-			} else {
-				key += ":" + artifact.getVersion();
-				if (key.equals(project)) {
-					candidate = artifact;
-				}
-			}
-		}
+		final LocalArtifact candidate = workspace.findLocalArtifact(project);
 
 		if (candidate == null) {
 			log.error("Could not found project: " + project);
@@ -515,7 +1192,8 @@ public class VersionUpdater {
 			final PrintStream stream = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)));
 			stream.println("# Dependencies of: " + candidate);
 			for (final Dependency dep : deps) {
-				String key = dep.getDependencyArtifact().toString();
+				String key = dep.getDependencyArtifact().getGroup() + ":" + dep.getDependencyArtifact().getArtifact() + ":"
+						+ dep.getDeclaredVersion();
 				final List<String> adds = new LinkedList<String>();
 				if (dep.getClassifier() != null) {
 					adds.add("classifier=" + dep.getClassifier());
@@ -542,7 +1220,7 @@ public class VersionUpdater {
 
 	}
 
-	private void readAndCheckArtifactList(final List<LocalArtifact> reactorArtifacts, final String listToReadAndParse) {
+	private void readAndCheckArtifactList(final WorkspaceIndex workspace, final String listToReadAndParse) {
 
 		final File file = new File(listToReadAndParse);
 		if (!file.exists() || !file.isFile()) {
@@ -583,8 +1261,11 @@ public class VersionUpdater {
 
 		// Convert LocalArtifacts to Artifacts (to match the equals() contract)
 		final List<Artifact> existingArtifacts = new LinkedList<Artifact>();
-		for (final LocalArtifact a : reactorArtifacts) {
-			existingArtifacts.add(new Artifact(a));
+		final IntMultiMap<Artifact> existingByGav = new IntMultiMap<Artifact>(CoordinateTable.instance.gavCount());
+		for (final LocalArtifact a : workspace.getArtifacts()) {
+			final Artifact existingArtifact = new Artifact(a);
+			existingArtifacts.add(existingArtifact);
+			existingByGav.add(existingArtifact.getGavId(), existingArtifact);
 		}
 
 		log.debug("Read the following artifacts from file: " + readArtifacts);
@@ -594,27 +1275,29 @@ public class VersionUpdater {
 		final List<Artifact> equalArtifacts = new LinkedList<Artifact>();
 		final List<Artifact> equalExistingArtifacts = new LinkedList<Artifact>();
 		for (final Artifact readArtifact : readArtifacts) {
-			for (final Artifact existingArtifact : existingArtifacts) {
-				if (readArtifact.equalsByProjectNameAndVersion(existingArtifact)) {
-					equalArtifacts.add(readArtifact);
-					equalExistingArtifacts.add(existingArtifact);
-				}
+			for (final Artifact existingArtifact : existingByGav.get(readArtifact.getGavId())) {
+				equalArtifacts.add(readArtifact);
+				equalExistingArtifacts.add(existingArtifact);
 			}
 		}
-		readArtifacts.removeAll(equalArtifacts);
-		existingArtifacts.removeAll(equalExistingArtifacts);
+		readArtifacts.removeAll(new HashSet<Artifact>(equalArtifacts));
+		existingArtifacts.removeAll(new HashSet<Artifact>(equalExistingArtifacts));
 
 		// Detect version mismatches
+		final IntMultiMap<Artifact> existingByGa = new IntMultiMap<Artifact>(CoordinateTable.instance.gaCount());
+		for (final Artifact existingArtifact : existingArtifacts) {
+			existingByGa.add(existingArtifact.getGaId(), existingArtifact);
+		}
 		final Map<Artifact, Artifact> versionMismatches = new LinkedHashMap<Artifact, Artifact>();
 		for (final Artifact readArtifact : readArtifacts) {
-			for (final Artifact existingArtifact : existingArtifacts) {
-				if (readArtifact.equalsByProjectName(existingArtifact) && !readArtifact.getVersion().equals(existingArtifact.getVersion())) {
+			for (final Artifact existingArtifact : existingByGa.get(readArtifact.getGaId())) {
+				if (!readArtifact.getVersion().equals(existingArtifact.getVersion())) {
 					versionMismatches.put(readArtifact, existingArtifact);
 				}
 			}
 		}
 		readArtifacts.removeAll(versionMismatches.keySet());
-		existingArtifacts.removeAll(versionMismatches.values());
+		existingArtifacts.removeAll(new HashSet<Artifact>(versionMismatches.values()));
 
 		// local missing = readArtifacts
 
@@ -639,185 +1322,307 @@ public class VersionUpdater {
 		}
 	}
 
-	private void modifyDependencyVersion(final Dependency dependency, final String version, final boolean dryrun) {
+	private void modifyDependencyVersion(final Dependency dependency, final String version, final WorkspaceIndex workspace,
+			final boolean dryrun, final PomChangeSet changeSet) {
 
 		final Artifact versionArtifact = new Artifact(dependency.getDependencyArtifact().getGroup(),
 				dependency.getDependencyArtifact().getArtifact(), version, dependency.getDependencyArtifact().getPackaging());
 
-		modifyDependency(dependency, versionArtifact, dryrun);
+		modifyDependency(dependency, versionArtifact, workspace, dryrun, changeSet);
+	}
+
+	/**
+	 * A new {@link PomChangeSet}, which records its changes in the
+	 * {@link #plan} of the current run, if any.
+	 */
+	private PomChangeSet newChangeSet(final Config config) {
+		final PomChangeSet changeSet = new PomChangeSet(pomCache, pomIndex, config.rewritePoms);
+		if (plan != null) {
+			changeSet.setPlan(plan);
+		}
+		return changeSet;
 	}
 
-	private void modifyDependency(final Dependency dependency, final Artifact newDependencyArtifact, final boolean dryrun) {
+	/**
+	 * Record the change of <code>dependency</code> in <code>changeSet</code>.
+	 * If the version of the dependency is defined by a property, the property
+	 * is changed instead, unless other GAs also use it.
+	 */
+	private void modifyDependency(final Dependency dependency, final Artifact newDependencyArtifact,
+			final WorkspaceIndex workspace, final boolean dryrun, final PomChangeSet changeSet) {
 		if (!dependency.isChangeAllowed()) {
 			log.info("Modifying project " + dependency.getProject() + " is not allowed because: \"" + dependency.getChangeProtectBecause() + "\" in "
 					+ dependency);
 			return;
 		}
 
-		if (newDependencyArtifact != null) {
+		if (newDependencyArtifact != null && dependency.getManagedBy().isDefined()) {
+			final Dependency managing = dependency.getManagedBy().get();
+			final Artifact oldDependencyArtifact = dependency.getDependencyArtifact();
+			if (!oldDependencyArtifact.getGroup().equals(newDependencyArtifact.getGroup())
+					|| !oldDependencyArtifact.getArtifact().equals(newDependencyArtifact.getArtifact())) {
+				log.info("Modifying project " + dependency.getProject() + " is not allowed because: \"Version managed by "
+						+ managing.getProject() + "\" in " + dependency);
+				return;
+			}
+			modifyDependency(managing, newDependencyArtifact, workspace, dryrun, changeSet);
+
+		} else if (newDependencyArtifact != null && dependency.getVersionProperty().isDefined()) {
+			final PropertyDefinition property = dependency.getVersionProperty().get();
+			final Artifact oldDependencyArtifact = dependency.getDependencyArtifact();
+			if (!oldDependencyArtifact.getGroup().equals(newDependencyArtifact.getGroup())
+					|| !oldDependencyArtifact.getArtifact().equals(newDependencyArtifact.getArtifact())) {
+				log.info("Modifying project " + dependency.getProject() + " is not allowed because: \"Version defined by property "
+						+ property + "\" in " + dependency);
+				return;
+			}
+			final List<String> otherUsers = otherPropertyUsers(workspace, property, oldDependencyArtifact.getGaId());
+			if (!otherUsers.isEmpty()) {
+				log.info("Modifying project " + dependency.getProject() + " is not allowed because: \"Version property " + property
+						+ " is also used by " + otherUsers + "\" in " + dependency);
+				return;
+			}
+			if (dryrun) {
+				log.info("(dryrun) I would change dependency: " + dependency + "\n  - to: " + newDependencyArtifact
+						+ "\n  - by changing property: " + property);
+				return;
+			}
+
+			log.info("About to change dependency: " + dependency + " to: " + newDependencyArtifact + " by changing property: "
+					+ property);
+			changeSet.setProperty(property.getLocation(), property.getProfile(), property.getName(),
+					newDependencyArtifact.getVersion());
+
+		} else if (newDependencyArtifact != null) {
 			if (dryrun) {
 				log.info("(dryrun) I would change dependency: " + dependency + "\n  - to: " + newDependencyArtifact);
 				return;
 			}
 
 			log.info("About to change dependency: " + dependency + " to: " + newDependencyArtifact);
+			if (dependency.isManaged()) {
+				changeSet.changeManagedDependency(dependency.getProject().getLocation(), dependency.getDependencyArtifact(),
+						newDependencyArtifact);
+			} else {
+				changeSet.changeDependency(dependency.getProject().getLocation(), dependency.getDependencyArtifact(),
+						newDependencyArtifact);
+			}
+		}
+	}
 
-			final File pomFile = dependency.getProject().getLocation();
+	/**
+	 * Record the change of the version of <code>plugin</code> in
+	 * <code>changeSet</code>. If the version is defined by a property, the
+	 * property is changed instead, unless other GAs also use it. Usages without
+	 * a version are skipped.
+	 */
+	private void modifyPluginVersion(final UsedPlugin plugin, final String version, final WorkspaceIndex workspace,
+			final boolean dryrun, final PomChangeSet changeSet) {
+		final Artifact oldPluginArtifact = plugin.getPluginArtifact();
+		if (oldPluginArtifact.getVersion().isEmpty() || oldPluginArtifact.getVersion().equals(version)) {
+			return;
+		}
+		if (!plugin.isChangeAllowed()) {
+			log.info("Modifying project " + plugin.getProject() + " is not allowed because: \"" + plugin.getChangeProtectBecause()
+					+ "\" in " + plugin);
+			return;
+		}
 
-			ProjectDocument o;
-			try {
-				o = ProjectDocument.Factory.parse(pomFile, MavenXmlSupport.instance.createXmlOptions());
-				boolean neededSave = false;
-
-				final Model project = o.getProject();
-				for (final org.apache.maven.pom.x400.Dependency dep : project.getDependencies().getDependencyArray()) {
-					if (dep.getGroupId().equals(dependency.getDependencyArtifact().getGroup())
-							&& dep.getArtifactId().equals(dependency.getDependencyArtifact().getArtifact())
-							&& dep.getVersion().equals(dependency.getDependencyArtifact().getVersion())) {
-
-						if (!newDependencyArtifact.getGroup().equals(dep.getGroupId())) {
-							dep.setGroupId(newDependencyArtifact.getGroup());
-							neededSave = true;
-						}
+		if (plugin.getVersionProperty().isDefined()) {
+			final PropertyDefinition property = plugin.getVersionProperty().get();
+			final List<String> otherUsers = otherPropertyUsers(workspace, property, oldPluginArtifact.getGaId());
+			if (!otherUsers.isEmpty()) {
+				log.info("Modifying project " + plugin.getProject() + " is not allowed because: \"Version property " + property
+						+ " is also used by " + otherUsers + "\" in " + plugin);
+				return;
+			}
+			if (dryrun) {
+				log.info("(dryrun) I would change plugin: " + plugin + "\n  - to version: " + version
+						+ "\n  - by changing property: " + property);
+				return;
+			}
 
-						if (!newDependencyArtifact.getArtifact().equals(dep.getArtifactId())) {
-							dep.setArtifactId(newDependencyArtifact.getArtifact());
-							neededSave = true;
-						}
+			log.info("About to change plugin: " + plugin + " to version: " + version + " by changing property: " + property);
+			changeSet.setProperty(property.getLocation(), property.getProfile(), property.getName(), version);
 
-						if (!newDependencyArtifact.getVersion().equals(dep.getVersion())) {
-							dep.setVersion(newDependencyArtifact.getVersion());
-							neededSave = true;
-						}
-					}
-				}
+		} else {
+			if (dryrun) {
+				log.info("(dryrun) I would change plugin: " + plugin + "\n  - to version: " + version);
+				return;
+			}
 
-				if (neededSave) {
-					log.info("Modifying file: " + pomFile);
-					o.save(pomFile);
-				}
+			log.info("About to change plugin: " + plugin + " to version: " + version);
+			changeSet.changePlugin(plugin.getProject().getLocation(), plugin.getProfile(), plugin.isManaged(),
+					new Artifact(oldPluginArtifact.getGroup(), oldPluginArtifact.getArtifact(), plugin.getDeclaredVersion(),
+							oldPluginArtifact.getPackaging()),
+					version);
+		}
+	}
 
-			} catch (final XmlException e) {
-				log.error("Could not process file: " + pomFileName, e);
-			} catch (final IOException e) {
-				log.error("Could not process file: " + pomFileName, e);
+	/**
+	 * The keys (<code>groupId:artifactId</code>) of all dependencies and
+	 * plugins other than <code>gaId</code>, whose version is also defined by
+	 * <code>property</code>.
+	 */
+	private List<String> otherPropertyUsers(final WorkspaceIndex workspace, final PropertyDefinition property, final int gaId) {
+		final List<String> others = new LinkedList<String>();
+		for (final Integer user : workspace.getPropertyUsers(property)) {
+			if (user != gaId) {
+				others.add(CoordinateTable.instance.getGaKey(user));
 			}
-
 		}
+		return others;
 	}
 
-	private void addDependencies(final LocalArtifact projectToChange, final List<Dependency> dependencies, final boolean dryrun) {
+	/**
+	 * Record the replacement of all dependencies of
+	 * <code>projectToChange</code> in <code>changeSet</code>.
+	 */
+	private void addDependencies(final LocalArtifact projectToChange, final List<Dependency> dependencies, final boolean dryrun,
+			final PomChangeSet changeSet) {
 		if (dryrun) {
 			log.info("(dryrun) I would add dependencies to " + projectToChange);
 			return;
 		}
 
 		log.info("About to add dependencies to " + projectToChange);
+		changeSet.setDependencies(projectToChange.getLocation(), dependencies);
+	}
 
-		final File pomFile = projectToChange.getLocation();
-
-		ProjectDocument o;
-		try {
-			o = ProjectDocument.Factory.parse(pomFile, MavenXmlSupport.instance.createXmlOptions());
-
-			final Model project = o.getProject();
+	// FIXME: get rid of tri-state Boolean's
+	/**
+	 * @param match
+	 *            The matching dependencies or <code>null</code> for all
+	 *            dependencies.
+	 */
+	private void showDependencies(final WorkspaceIndex workspace, final SearchIndex.Match match, final Boolean local,
+			final Boolean system) throws IOException {
+		final StringBuilder depResult = new StringBuilder();
 
-			project.setDependencies(Dependencies.Factory.newInstance(MavenXmlSupport.instance.createXmlOptions()));
+		final IntMultiMap<Dependency> deps = workspace.getDependenciesByGa();
+		final SearchIndex.Match matching = match != null ? match : SearchIndex.Match.all(deps.keyCount());
 
-			for (final Dependency dep : dependencies) {
+		int count = 0;
 
-				final org.apache.maven.pom.x400.Dependency mvnDep = project.getDependencies().addNewDependency();
+		for (int i = matching.nextPosition(0); i >= 0; i = matching.nextPosition(i + 1)) {
+			final int gaId = deps.keyAt(i);
+			final String key = CoordinateTable.instance.getGaKey(gaId);
 
-				mvnDep.setGroupId(dep.getDependencyArtifact().getGroup());
-				mvnDep.setArtifactId(dep.getDependencyArtifact().getArtifact());
-				mvnDep.setVersion(dep.getDependencyArtifact().getVersion());
-				if (dep.getScope() != null) {
-					mvnDep.setScope(dep.getScope());
-				}
-				if (dep.getClassifier() != null) {
-					mvnDep.setClassifier(dep.getClassifier());
+			List<Dependency> filteredDeps = new LinkedList<Dependency>();
+			for (final Dependency dependency : deps.get(gaId)) {
+				if (matching.matchesVersion(dependency.getDependencyArtifact().getGavId())) {
+					filteredDeps.add(dependency);
 				}
-				if (dep.getSystemPath() != null) {
-					mvnDep.setSystemPath(dep.getSystemPath());
+			}
+
+			if (local != null) {
+				if (workspace.isLocal(gaId) != local.booleanValue()) {
+					filteredDeps = Collections.emptyList();
 				}
-				if (dep.getExclusions().size() > 0) {
-					if (!mvnDep.isSetExclusions()) {
-						mvnDep.setExclusions(Exclusions.Factory.newInstance(MavenXmlSupport.instance.createXmlOptions()));
-					}
-					final Exclusions mvnExes = mvnDep.getExclusions();
-					for (final String e : dep.getExclusions()) {
-						final Exclusion mvnEx = mvnExes.addNewExclusion();
-						final String[] split = e.split(":");
-						mvnEx.setGroupId(split[0]);
-						mvnEx.setArtifactId(split[1]);
+			}
+
+			if (system != null) {
+				final List<Dependency> systemFilter = new LinkedList<Dependency>();
+				for (final Dependency dependency : filteredDeps) {
+					if (dependency.isSystem() == system.booleanValue()) {
+						systemFilter.add(dependency);
 					}
 				}
-
+				filteredDeps = systemFilter;
 			}
 
-			log.info("Modifying file: " + pomFile);
-			o.save(pomFile);
-
-		} catch (final XmlException e) {
-			log.error("Could not process file: " + pomFileName, e);
-		} catch (final IOException e) {
-			log.error("Could not process file: " + pomFileName, e);
+			if (report != null) {
+				for (final Dependency dependency : filteredDeps) {
+					report.write("dependency", dependency.getDependencyArtifact(), dependency.getProject(), dependency.getScope());
+				}
+			} else if (filteredDeps.size() > 0) {
+				count += filteredDeps.size();
+				depResult.append((MessageFormat.format("\n  {0}\n   - {1}", key, formatList(filteredDeps, "\n   - "))));
+			}
+		}
+		if (report != null) {
+			report.flush();
+		} else {
+			log.info(MessageFormat.format("Found {0} dependencies: {1}", count, depResult));
 		}
-
 	}
 
-	// FIXME: get rid of tri-state Boolean's
-	private void showDependencies(final List<LocalArtifact> localArtifacts, final String pattern, final boolean exact, final Boolean local,
-			final Boolean system, final List<String> profiles) {
-		final StringBuilder depResult = new StringBuilder();
-
-		final Map<String, List<Dependency>> deps = findDirectArtifactDependencies(localArtifacts, profiles);
+	/**
+	 * @param match
+	 *            The matching plugins.
+	 */
+	private void showPlugins(final WorkspaceIndex workspace, final SearchIndex.Match match) throws IOException {
+		final StringBuilder result = new StringBuilder();
+		final IntMultiMap<UsedPlugin> plugins = workspace.getPluginsByGa();
 
 		int count = 0;
 
-		for (final Entry<String, List<Dependency>> dep : deps.entrySet()) {
-			final String key = dep.getKey();
-			if (pattern == null || (!exact && key.contains(pattern)) || (exact && key.equals(pattern))) {
-				List<Dependency> filteredDeps = dep.getValue();
-
-				if (local != null) {
-					boolean isLocal = false;
-					for (final LocalArtifact artifact : localArtifacts) {
-						final String artifactKey = artifact.getGroup() + ":" + artifact.getArtifact();
-						if (key.equals(artifactKey)) {
-							isLocal = true;
-							break;
-						}
-					}
-					if (isLocal != local.booleanValue()) {
-						filteredDeps = Collections.emptyList();
-					}
-				}
+		for (int i = match.nextPosition(0); i >= 0; i = match.nextPosition(i + 1)) {
+			final int gaId = plugins.keyAt(i);
 
-				if (system != null) {
-					final List<Dependency> systemFilter = new LinkedList<Dependency>();
-					for (final Dependency dependency : filteredDeps) {
-						if (dependency.isSystem() == system.booleanValue()) {
-							systemFilter.add(dependency);
-						}
-					}
-					filteredDeps = systemFilter;
+			final List<UsedPlugin> filteredPlugins = new LinkedList<UsedPlugin>();
+			for (final UsedPlugin plugin : plugins.get(gaId)) {
+				if (match.matchesVersion(plugin.getPluginArtifact().getGavId())) {
+					filteredPlugins.add(plugin);
 				}
+			}
 
-				if (filteredDeps.size() > 0) {
-					count += filteredDeps.size();
-					depResult.append((MessageFormat.format("\n  {0}\n   - {1}", key, formatList(filteredDeps, "\n   - "))));
+			if (report != null) {
+				for (final UsedPlugin plugin : filteredPlugins) {
+					report.write(plugin.isManaged() ? "managed-plugin" : "plugin", plugin.getPluginArtifact(), plugin.getProject(),
+							plugin.getProfile().isDefined() ? plugin.getProfile().get() : null);
 				}
+			} else if (filteredPlugins.size() > 0) {
+				count += filteredPlugins.size();
+				result.append(MessageFormat.format("\n  {0}\n   - {1}", CoordinateTable.instance.getGaKey(gaId),
+						formatList(filteredPlugins, "\n   - ")));
+			}
+		}
+		if (report != null) {
+			report.flush();
+		} else {
+			log.info(MessageFormat.format("Found {0} plugins: {1}", count, result));
+		}
+	}
+
+	private List<VersionMismatch> reportVersionMismatch(final WorkspaceIndex workspace, final List<String> selectArtifacts)
+			throws IOException {
+		final List<VersionMismatch> mismatches = findVersionMismatches(workspace, selectArtifacts);
+
+		final IntMultiMap<Dependency> directDependencies = workspace.getDependenciesByGav();
+		int lastGavId = -1;
+		for (final VersionMismatch vm : mismatches) {
+			final Dependency depSource = vm.getDependency();
+			final Artifact depArtifact = depSource.getDependencyArtifact();
+			if (report != null) {
+				report.write("version-mismatch", depArtifact, depSource.getProject(), vm.getArtifact().getVersion());
+			} else if (depArtifact.getGavId() != lastGavId) {
+				log.info("Mismatch detected for: " + vm.getArtifactKey() + "\n  Required is: " + depArtifact
+						+ "\n  Local available is: " + workspace.getLocalArtifacts(depArtifact.getGaId()) + "\n  Dependencies: "
+						+ directDependencies.get(depArtifact.getGavId()));
 			}
+			lastGavId = depArtifact.getGavId();
 		}
-		log.info(MessageFormat.format("Found {0} dependencies: {1}", count, depResult));
+
+		if (report != null) {
+			report.flush();
+		}
+		return mismatches;
 	}
 
-	private List<VersionMismatch> reportVersionMismatch(final List<LocalArtifact> reactorArtifacts, final List<String> selectArtifacts) {
-		final List<VersionMismatch> report = new LinkedList<VersionMismatch>();
+	/**
+	 * Find all dependencies on local projects, which do not use the newest
+	 * local version.
+	 *
+	 * @param selectArtifacts
+	 *            The keys (<code>groupId:artifactId</code>) of the dependencies
+	 *            to check or <code>null</code> to check all.
+	 * @return The mismatches, grouped by the dependency artifact.
+	 */
+	List<VersionMismatch> findVersionMismatches(final WorkspaceIndex workspace, final List<String> selectArtifacts) {
+		final List<VersionMismatch> mismatches = new LinkedList<VersionMismatch>();
 
-		final Map<String, List<LocalArtifact>> artifactMap = buildArtifactMultiMap(reactorArtifacts);
-		final Map<Artifact, List<Dependency>> directDependencies = evaluateDirectArtifactDependencies(reactorArtifacts);
+		final IntMultiMap<Dependency> directDependencies = workspace.getDependenciesByGav();
 		final Map<String, Boolean> selected = new LinkedHashMap<String, Boolean>();
 
 		if (selectArtifacts != null) {
@@ -826,9 +1631,11 @@ public class VersionUpdater {
 			}
 		}
 
-		for (final Entry<Artifact, List<Dependency>> depEntry : directDependencies.entrySet()) {
+		for (int i = 0; i < directDependencies.keyCount(); ++i) {
+			final List<Dependency> dependants = directDependencies.get(directDependencies.keyAt(i));
+			final Artifact depArtifact = dependants.get(0).getDependencyArtifact();
 
-			final String key = depEntry.getKey().getGroup() + ":" + depEntry.getKey().getArtifact();
+			final String key = depArtifact.getGaKey();
 			if (selected.size() > 0) {
 				if (selected.containsKey(key)) {
 					selected.put(key, true);
@@ -838,15 +1645,12 @@ public class VersionUpdater {
 				}
 			}
 
-			if (artifactMap.containsKey(key)) {
-				if (!equalsArtifacts(artifactMap.get(key).get(0), depEntry.getKey())) {
-
-					log.info("Mismatch detected for: " + key + "\n  Required is: " + depEntry.getKey() + "\n  Local available is: "
-							+ artifactMap.get(key) + "\n  Dependencies: " + depEntry.getValue());
-
-					for (final Dependency depSource : depEntry.getValue()) {
-						final VersionMismatch versionMismatch = new VersionMismatch(key, artifactMap.get(key).get(0), depSource);
-						report.add(versionMismatch);
+			if (!workspace.getLocalArtifacts(depArtifact.getGaId()).isEmpty()) {
+				final LocalArtifact newestLocalArtifact = workspace.getNewestLocalArtifact(depArtifact.getGaId());
+				if (!equalsArtifacts(newestLocalArtifact, depArtifact)) {
+					for (final Dependency depSource : dependants) {
+						final VersionMismatch versionMismatch = new VersionMismatch(key, newestLocalArtifact, depSource);
+						mismatches.add(versionMismatch);
 					}
 				}
 			}
@@ -858,32 +1662,31 @@ public class VersionUpdater {
 			}
 		}
 
-		return report;
+		return mismatches;
 	}
 
 	private boolean equalsArtifacts(final Artifact lhs, final Artifact rhs) {
-		return lhs.getGroup().equals(rhs.getGroup()) && lhs.getArtifact().equals(rhs.getArtifact()) && lhs.getVersion().equals(rhs.getVersion());
+		return lhs.getGavId() == rhs.getGavId();
 	}
 
-	private void findOrSearchArtifacts(final List<String> artifactsToFind, final String typeName, final boolean exact,
-			final Map<String, List<LocalArtifact>> artifactMultiMap) {
-		for (final String search : artifactsToFind) {
+	private void findOrSearchArtifacts(final List<String> artifactsToFind, final String typeName, final SearchIndex.Mode mode,
+			final WorkspaceIndex workspace) throws IOException {
+		final IntMultiMap<LocalArtifact> artifactMultiMap = workspace.getLocalArtifactsByGa();
+		final List<SearchIndex.Match> matches = workspace.getArtifactSearchIndex().search(artifactsToFind, mode);
+		for (int s = 0; s < artifactsToFind.size(); ++s) {
+			final String search = artifactsToFind.get(s);
+			final SearchIndex.Match match = matches.get(s);
 			log.info("Searching " + typeName + ": " + search);
 			boolean found = false;
-			if (exact) {
-				if (artifactMultiMap.containsKey(search)) {
-					for (final LocalArtifact artifact : artifactMultiMap.get(search)) {
-						log.info("  Found: " + artifact + " at " + artifact.getLocation());
-						found = true;
-					}
-				}
-			} else {
-				for (final Entry<String, List<LocalArtifact>> entry : artifactMultiMap.entrySet()) {
-					if (entry.getKey().contains(search)) {
-						for (final LocalArtifact artifact : entry.getValue()) {
+			for (int i = match.nextPosition(0); i >= 0; i = match.nextPosition(i + 1)) {
+				for (final LocalArtifact artifact : artifactMultiMap.get(artifactMultiMap.keyAt(i))) {
+					if (match.matchesVersion(artifact.getGavId())) {
+						if (report != null) {
+							report.write(typeName, artifact, null, artifact.getLocation());
+						} else {
 							log.info("  Found: " + artifact + " at " + artifact.getLocation());
-							found = true;
 						}
+						found = true;
 					}
 				}
 			}
@@ -891,183 +1694,127 @@ public class VersionUpdater {
 				log.error("  Could not found " + typeName + ": " + search);
 			}
 		}
+		if (report != null) {
+			report.flush();
+		}
 	}
 
-	private Map<Artifact, List<Dependency>> evaluateDirectArtifactDependencies(final List<LocalArtifact> reactorArtifacts) {
+	/**
+	 * Write a record of the given type for each artifact to {@link #report}.
+	 */
+	private void writeArtifacts(final String type, final Collection<? extends Artifact> artifacts) throws IOException {
+		for (final Artifact artifact : artifacts) {
+			report.write(type, artifact, null, null);
+		}
+		report.flush();
+	}
 
-		final Map<Artifact, List<Dependency>> depsAndNeeders = new LinkedHashMap<Artifact, List<Dependency>>();
+	/**
+	 * Build the {@link WorkspaceIndex} of the given projects.
+	 */
+	private WorkspaceIndex buildWorkspaceIndex(final List<LocalArtifact> reactorArtifacts, final List<String> profiles) {
+		final List<ProjectInfo> projects = new ArrayList<ProjectInfo>(reactorArtifacts.size());
 
 		for (final LocalArtifact artifact : reactorArtifacts) {
 
-			final VariableExpander<String> vars = new VariableExpander<String>();
-			vars.addVar("project.groupId", artifact.getGroup());
-			vars.addVar("project.artifactId", artifact.getArtifact());
-			vars.addVar("project.version", artifact.getVersion());
-
 			final File pomFile = artifact.getLocation();
 
 			try {
-				final ProjectDocument o = ProjectDocument.Factory.parse(pomFile, MavenXmlSupport.instance.createXmlOptions());
-
-				final Model project = o.getProject();
-				final Optional<String> profile = Optional.none();
-				final Dependencies dependencies = project.getDependencies();
-				if (dependencies != null) {
-					for (final org.apache.maven.pom.x400.Dependency dep : dependencies.getDependencyArray()) {
-
-						final String groupId = dep.getGroupId();
-						final String artifactId = dep.getArtifactId();
-						final String version = dep.getVersion();
-						final String classifier = dep.getClassifier();
-						String scope = dep.getScope();
-						if (scope == null) {
-							scope = "compile";
-						}
-						final String systemPath = dep.getSystemPath();
-
-						final List<String> problems = new LinkedList<String>();
+				projects.add(pomIndex.getProjectInfo(pomFile));
 
-						if (groupId.contains("$")) {
-							log.debug("Found variable in groupId: " + groupId + " -- project " + pomFile);
-							problems.add("Variable used in groupId (" + groupId + ")");
-						}
-						if (artifactId.contains("$")) {
-							log.debug("Found variable in artifactId: " + artifactId + " -- project " + pomFile);
-							problems.add("Variable used in artifactId (" + artifactId + ")");
-						}
-						if (version.contains("$")) {
-							log.debug("Found variable in version: " + version + " -- project " + pomFile);
-							problems.add("Variable used in version (" + version + ")");
-						}
-
-						final List<String> exclusions = new LinkedList<String>();
-
-						if (dep.getExclusions() != null && dep.getExclusions().getExclusionArray() != null) {
-							for (final Exclusion e : dep.getExclusions().getExclusionArray()) {
-								exclusions.add(e.getGroupId() + ":" + e.getArtifactId());
-							}
-						}
-
-						final Artifact depArtifact = new Artifact(vars.expand(groupId), vars.expand(artifactId), vars.expand(version), "jar");
-						final Dependency dependency = new Dependency(depArtifact, artifact, profile, classifier, scope, systemPath, exclusions);
-
-						for (final String problem : problems) {
-							dependency.addChangeProtectBecause(problem);
-						}
-
-						List<Dependency> dependants;
-						if (depsAndNeeders.containsKey(depArtifact)) {
-							dependants = depsAndNeeders.get(depArtifact);
-						} else {
-							dependants = new LinkedList<Dependency>();
-							depsAndNeeders.put(depArtifact, dependants);
-						}
-						dependants.add(dependency);
-					}
-				}
-				if (project.getParent() != null) {
-					log.warn("Maven projects with parents currently not fully supported!. Found one at: " + pomFile);
-				}
 			} catch (final XmlException e) {
 				log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
 
 			} catch (final IOException e) {
 				log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
-
 			}
 
 		}
 
-		return depsAndNeeders;
+		return new WorkspaceIndex(projects, profiles);
 	}
 
 	/**
-	 * @param reactorArtifacts
-	 * @param profiles
-	 * @return Map(dependency-key:List(Dependency))
+	 * Build the {@link ReactorGraph} of the workspace. A project depends on
+	 * its effective dependencies (including those of the selected profiles
+	 * and inherited ones) and on its local parent.
 	 */
-	private Map<String, List<Dependency>> findDirectArtifactDependencies(final List<LocalArtifact> reactorArtifacts, final List<String> profiles) {
-
-		final Map<String, List<Dependency>> depsAndNeeders = new LinkedHashMap<String, List<Dependency>>();
-
-		for (final LocalArtifact artifact : reactorArtifacts) {
-
-			final VariableExpander<String> vars = new VariableExpander<String>();
-			vars.addVar("project.groupId", artifact.getGroup());
-			vars.addVar("project.artifactId", artifact.getArtifact());
-			vars.addVar("project.version", artifact.getVersion());
-
-			try {
-				final ProjectDocument o = ProjectDocument.Factory.parse(artifact.getLocation(), MavenXmlSupport.instance.createXmlOptions());
-
-				final Model project = o.getProject();
-				final Map<String, List<Dependency>> result = MavenXmlSupport.instance.readDirectDependencyFromLocalArtifact(artifact, project,
-						profiles);
-				for (final Entry<String, List<Dependency>> e : result.entrySet()) {
-					if (depsAndNeeders.containsKey(e.getKey())) {
-						// All our deps to the existing list
-						final List<Dependency> deps = depsAndNeeders.get(e.getKey());
-						deps.addAll(e.getValue());
-					} else {
-						depsAndNeeders.put(e.getKey(), new LinkedList<Dependency>(e.getValue()));
+	private ReactorGraph buildReactorGraph(final WorkspaceIndex workspace, final List<String> profiles) {
+		final long start = System.currentTimeMillis();
+		final ReactorGraph graph = new ReactorGraph(workspace.getArtifacts(), new ReactorGraph.DependenciesOf() {
+			@Override
+			public Collection<? extends Artifact> dependenciesOf(final LocalArtifact artifact) {
+				final List<Artifact> dependencies = new LinkedList<Artifact>();
+				try {
+					final ProjectInfo info = pomIndex.getProjectInfo(artifact.getLocation());
+					for (final Dependency dependency : pomIndex.getEffectiveDependencies(info, profiles)) {
+						dependencies.add(dependency.getDependencyArtifact());
 					}
+					if (info.getParentLocation() != null) {
+						dependencies.add(pomIndex.getProjectInfo(info.getParentLocation()).getArtifact());
+					}
+				} catch (final XmlException e) {
+					log.error("Could not parse maven project: " + artifact.getLocation(), e);
+				} catch (final IOException e) {
+					log.error("Could not parse maven project: " + artifact.getLocation(), e);
 				}
-
-			} catch (final XmlException e) {
-				log.error("Could not parse maven project: " + artifact.getLocation().getAbsolutePath(), e);
-
-			} catch (final IOException e) {
-				log.error("Could not parse maven project: " + artifact.getLocation().getAbsolutePath(), e);
+				return dependencies;
 			}
-
-		}
-
-		return depsAndNeeders;
+		});
+		log.debug("Built {} in {} msec", graph, System.currentTimeMillis() - start);
+		return graph;
 	}
 
-	private Map<String, List<LocalArtifact>> buildArtifactMultiMap(final Collection<LocalArtifact> artifacts) {
-		final LinkedHashMap<String, List<LocalArtifact>> map = new LinkedHashMap<String, List<LocalArtifact>>();
-		for (final LocalArtifact artifact : artifacts) {
-			final String key = artifact.getGroup() + ":" + artifact.getArtifact();
-			List<LocalArtifact> values;
-			if (map.containsKey(key)) {
-				values = map.get(key);
-			} else {
-				values = new LinkedList<LocalArtifact>();
-				map.put(key, values);
+	/**
+	 * Find the nodes of the local artifacts matching the given patterns.
+	 */
+	private BitSet findNodes(final ReactorGraph graph, final List<String> patterns, final SearchIndex.Mode mode,
+			final WorkspaceIndex workspace) {
+		final BitSet nodes = new BitSet(graph.size());
+		final IntMultiMap<LocalArtifact> artifactMultiMap = workspace.getLocalArtifactsByGa();
+		final List<SearchIndex.Match> matches = workspace.getArtifactSearchIndex().search(patterns, mode);
+		for (int s = 0; s < patterns.size(); ++s) {
+			final SearchIndex.Match match = matches.get(s);
+			boolean found = false;
+			for (int i = match.nextPosition(0); i >= 0; i = match.nextPosition(i + 1)) {
+				for (final LocalArtifact artifact : artifactMultiMap.get(artifactMultiMap.keyAt(i))) {
+					final int node = graph.nodeOf(artifact);
+					if (match.matchesVersion(artifact.getGavId()) && node >= 0) {
+						nodes.set(node);
+						found = true;
+					}
+				}
+			}
+			if (!found) {
+				log.error("Could not found artifact: " + patterns.get(s));
 			}
-			values.add(artifact);
 		}
-		return map;
+		return nodes;
 	}
 
-	private Map<String, List<LocalArtifact>> buildDependencyMultiMap(final Map<Artifact, List<Dependency>> dependencies) {
-		final LinkedHashMap<String, List<LocalArtifact>> map = new LinkedHashMap<String, List<LocalArtifact>>();
-		for (final Entry<Artifact, List<Dependency>> depEntry : dependencies.entrySet()) {
-			final String key = depEntry.getKey().getGroup() + ":" + depEntry.getKey().getArtifact();
-			for (final Dependency artifact : depEntry.getValue()) {
-				List<LocalArtifact> values;
-				if (map.containsKey(key)) {
-					values = map.get(key);
-				} else {
-					values = new LinkedList<LocalArtifact>();
-					map.put(key, values);
-				}
-				values.add(artifact.getProject());
+	/**
+	 * @param dependencies
+	 *            IntMultiMap(dependency-gav-id:Dependency)
+	 * @return IntMultiMap(dependency-ga-id:dependant)
+	 */
+	private IntMultiMap<LocalArtifact> buildDependencyMultiMap(final IntMultiMap<Dependency> dependencies) {
+		final IntMultiMap<LocalArtifact> map = new IntMultiMap<LocalArtifact>(CoordinateTable.instance.gaCount());
+		for (int i = 0; i < dependencies.keyCount(); ++i) {
+			for (final Dependency dependency : dependencies.get(dependencies.keyAt(i))) {
+				map.add(dependency.getDependencyArtifact().getGaId(), dependency.getProject());
 			}
 		}
 		return map;
 	}
 
 	private void checkForDuplicates(final Collection<LocalArtifact> artifacts) {
-		final HashSet<String> packageNames = new HashSet<String>();
+		final BitSet gaIds = new BitSet();
 
 		for (final LocalArtifact artifact : artifacts) {
-			final String key = artifact.getGroup() + ":" + artifact.getArtifact();
-			if (packageNames.contains(key)) {
-				throw new RuntimeException("Duplicate group:artifact pair found in reactor: " + key);
+			if (gaIds.get(artifact.getGaId())) {
+				throw new RuntimeException("Duplicate group:artifact pair found in reactor: " + artifact.getGaKey());
 			}
-			packageNames.add(key);
+			gaIds.set(artifact.getGaId());
 		}
 	}
 
@@ -1082,45 +1829,8 @@ public class VersionUpdater {
 		return format.toString();
 	}
 
-	private List<LocalArtifact> scanReactorArtifacts(final Collection<String> dirs, final List<String> profiles) {
-
-		final List<LocalArtifact> artifacts = new LinkedList<LocalArtifact>();
-
-		for (final String dir : dirs) {
-
-			final File pomFile = new File(dir, pomFileName);
-			if (!pomFile.exists() || !pomFile.isFile()) {
-				continue;
-			}
-
-			try {
-				final MavenXmlSupport mavenXmlSupport = MavenXmlSupport.instance;
-				final ProjectDocument o = ProjectDocument.Factory.parse(pomFile, mavenXmlSupport.createXmlOptions());
-
-				final Model project = o.getProject();
-				final LocalArtifact artifact = mavenXmlSupport.readLocalArtifactFromProject(project, pomFile);
-				artifacts.add(artifact);
-
-				final List<String> modules = flatMap(mavenXmlSupport.getProfiles(project, profiles), p -> {
-					final org.apache.maven.pom.x400.Profile.Modules ms = p.getModules();
-					if (ms != null) {
-						return Arrays.asList(ms.getModuleArray());
-					} else {
-						return Collections.emptyList();
-					}
-				});
-				for (final String module : modules) {
-					artifacts.addAll(scanReactorArtifacts(Arrays.asList(new File(dir, module).getPath()), profiles));
-				}
-
-			} catch (final XmlException e) {
-				log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
-			} catch (final IOException e) {
-				log.error("Could not parse maven project: " + pomFile.getAbsolutePath(), e);
-			}
-		}
-
-		return artifacts;
+	private List<LocalArtifact> scanReactorArtifacts(final Collection<String> dirs, final List<String> profiles, final int threads) {
+		return new ReactorScanner(pomFileName, profiles, threads, pomIndex).scan(dirs);
 	}
 
 	public List<Dependency> readDepsOfPom(final String pomFile, final List<String> profiles) {
@@ -1134,16 +1844,11 @@ public class VersionUpdater {
 		}
 
 		try {
-			final ProjectDocument o = ProjectDocument.Factory.parse(file, MavenXmlSupport.instance.createXmlOptions());
+			final ProjectInfo info = pomIndex.getProjectInfo(file);
 
-			final Model project = o.getProject();
-			final Map<String, List<Dependency>> depsAndDependants = MavenXmlSupport.instance.readDirectDependencyFromProject(project, file, profiles);
-
-			for (final Entry<String, List<Dependency>> e : depsAndDependants.entrySet()) {
-				for (final Dependency dep : e.getValue()) {
-					if (!deps.contains(dep.getDependencyArtifact())) {
-						deps.add(dep);
-					}
+			for (final Dependency dep : info.getDependencies(profiles)) {
+				if (!deps.contains(dep.getDependencyArtifact())) {
+					deps.add(dep);
 				}
 			}
 
@@ -0,0 +1,103 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+
+/**
+ * A thin client, which forwards its arguments to a running
+ * {@link VersionUpdaterDaemon} and prints its output.
+ *
+ * The port of the daemon is taken from the argument
+ * <code>--daemon-port</code>, the environment variable
+ * <code>MVU_DAEMON_PORT</code> or the default port, in that order. The
+ * client authenticates with the token the daemon wrote to
+ * {@link #tokenFile(int)}, so only the user running the daemon can use it.
+ *
+ * This class intentionally only uses the JRE, to start fast.
+ */
+public class VersionUpdaterClient {
+
+	public static void main(final String[] args) {
+		System.exit(new VersionUpdaterClient().run(args));
+	}
+
+	/**
+	 * The file holding the token of the daemon on the given port. It is only
+	 * readable by its owner.
+	 */
+	public static File tokenFile(final int port) {
+		return new File(new File(System.getProperty("user.home"), ".mvu"), "daemon-" + port + ".token");
+	}
+
+	public int run(final String[] args) {
+		int port = VersionUpdaterDaemon.DEFAULT_PORT;
+		final String envPort = System.getenv("MVU_DAEMON_PORT");
+		try {
+			if (envPort != null) {
+				port = Integer.parseInt(envPort);
+			}
+			for (int i = 0; i < args.length - 1; ++i) {
+				if (args[i].equals("--daemon-port")) {
+					port = Integer.parseInt(args[i + 1]);
+				}
+			}
+		} catch (final NumberFormatException e) {
+			System.err.println("Invalid daemon port: " + e.getMessage());
+			return 1;
+		}
+
+		final String token;
+		try {
+			token = new String(Files.readAllBytes(tokenFile(port).toPath()), "UTF-8");
+		} catch (final IOException e) {
+			System.err.println("No mvu daemon running on port " + port + " (could not read its token file " + tokenFile(port)
+					+ "). Start it with: mvu --daemon");
+			return 1;
+		}
+
+		try {
+			final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			try {
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				out.writeUTF(token);
+				out.writeUTF(System.getProperty("user.dir"));
+				out.writeInt(args.length);
+				for (final String arg : args) {
+					out.writeUTF(arg);
+				}
+				out.flush();
+
+				final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				while (true) {
+					final byte type = in.readByte();
+					if (type == VersionUpdaterDaemon.FRAME_EXIT) {
+						return in.readInt();
+					}
+					final byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					final PrintStream stream = type == VersionUpdaterDaemon.FRAME_ERR ? System.err : System.out;
+					stream.write(bytes);
+					stream.flush();
+				}
+			} finally {
+				socket.close();
+			}
+		} catch (final ConnectException e) {
+			System.err.println("No mvu daemon running on port " + port + ". Start it with: mvu --daemon");
+			return 1;
+		} catch (final IOException e) {
+			System.err.println("Communication with mvu daemon failed: " + e);
+			return 1;
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A resident {@link VersionUpdater}, which serves the requests of
+ * {@link VersionUpdaterClient}s. The parsed and indexed projects are kept in
+ * memory between requests, so that only changed project files need to be read
+ * again.
+ *
+ * The daemon only listens on the loopback interface and serves one request at
+ * a time. On startup, it writes a random token to
+ * {@link VersionUpdaterClient#tokenFile(int)}, which only its user can read,
+ * and rejects all requests without this token or not sent within
+ * {@link #REQUEST_TIMEOUT}.
+ *
+ * Protocol: The client sends the token, its working directory, the number of
+ * arguments and the arguments (all as {@link DataOutputStream#writeUTF(String)} or
+ * {@link DataOutputStream#writeInt(int)}). The daemon answers with a sequence
+ * of frames, each starting with a type byte: {@link #FRAME_OUT} and
+ * {@link #FRAME_ERR} followed by the length and the bytes of the output, and
+ * finally {@link #FRAME_EXIT} followed by the exit code.
+ */
+public class VersionUpdaterDaemon {
+
+	public static final int DEFAULT_PORT = 8397;
+
+	public static final byte FRAME_OUT = 1;
+	public static final byte FRAME_ERR = 2;
+	public static final byte FRAME_EXIT = 3;
+
+	/**
+	 * The time in milliseconds a client has to send its request, so that idle
+	 * connections do not block the daemon.
+	 */
+	public static final int REQUEST_TIMEOUT = 10000;
+
+	private final Logger log = LoggerFactory.getLogger(VersionUpdaterDaemon.class);
+
+	private final int port;
+	private final VersionUpdater versionUpdater = new VersionUpdater();
+	private byte[] token;
+
+	public VersionUpdaterDaemon(final int port) {
+		this.port = port;
+		versionUpdater.setResident(true);
+	}
+
+	/**
+	 * Serve requests until a client sends <code>--stop-daemon</code>.
+	 *
+	 * @return The exit code.
+	 */
+	public int run() {
+		final ServerSocket serverSocket;
+		try {
+			serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		} catch (final IOException e) {
+			log.error("Could not listen on port " + port, e);
+			return 1;
+		}
+
+		final File tokenFile = VersionUpdaterClient.tokenFile(port);
+		try {
+			token = writeToken(tokenFile);
+		} catch (final IOException e) {
+			log.error("Could not write token file: " + tokenFile, e);
+			try {
+				serverSocket.close();
+			} catch (final IOException e2) {
+				log.debug("Could not close server socket", e2);
+			}
+			return 1;
+		}
+
+		log.info("Daemon listening on " + serverSocket.getLocalSocketAddress());
+		try {
+			boolean stop = false;
+			while (!stop) {
+				final Socket socket = serverSocket.accept();
+				try {
+					stop = handle(socket);
+				} catch (final IOException e) {
+					log.warn("Could not serve request", e);
+				} finally {
+					socket.close();
+				}
+			}
+			log.info("Daemon stopped");
+			return 0;
+		} catch (final IOException e) {
+			log.error("Daemon failed", e);
+			return 1;
+		} finally {
+			tokenFile.delete();
+			try {
+				serverSocket.close();
+			} catch (final IOException e) {
+				log.debug("Could not close server socket", e);
+			}
+		}
+	}
+
+	/**
+	 * Write a new random token to <code>tokenFile</code>, readable only by the
+	 * current user.
+	 *
+	 * @return The token as written.
+	 */
+	protected byte[] writeToken(final File tokenFile) throws IOException {
+		final byte[] random = new byte[32];
+		new SecureRandom().nextBytes(random);
+		final StringBuilder hex = new StringBuilder(random.length * 2);
+		for (final byte b : random) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		final byte[] newToken = hex.toString().getBytes("UTF-8");
+
+		final File dir = tokenFile.getParentFile();
+		final boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+		if (!dir.isDirectory()) {
+			if (posix) {
+				Files.createDirectories(dir.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions
+						.fromString("rwx------")));
+			} else {
+				Files.createDirectories(dir.toPath());
+			}
+		}
+		Files.deleteIfExists(tokenFile.toPath());
+		if (posix) {
+			Files.createFile(tokenFile.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions
+					.fromString("rw-------")));
+		} else {
+			Files.createFile(tokenFile.toPath());
+			tokenFile.setReadable(false, false);
+			tokenFile.setWritable(false, false);
+			tokenFile.setReadable(true, true);
+			tokenFile.setWritable(true, true);
+		}
+		Files.write(tokenFile.toPath(), newToken);
+		return newToken;
+	}
+
+	/**
+	 * Serve a single request.
+	 *
+	 * @return <code>true</code>, if the daemon should stop.
+	 */
+	protected boolean handle(final Socket socket) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		socket.setSoTimeout(REQUEST_TIMEOUT);
+		final String workingDir;
+		final String[] args;
+		try {
+			if (!MessageDigest.isEqual(token, in.readUTF().getBytes("UTF-8"))) {
+				log.warn("Rejected request with invalid token");
+				final byte[] message = "Invalid mvu daemon token\n".getBytes("UTF-8");
+				out.writeByte(FRAME_ERR);
+				out.writeInt(message.length);
+				out.write(message);
+				out.writeByte(FRAME_EXIT);
+				out.writeInt(1);
+				out.flush();
+				return false;
+			}
+			workingDir = in.readUTF();
+			args = new String[in.readInt()];
+			for (int i = 0; i < args.length; ++i) {
+				args[i] = in.readUTF();
+			}
+		} catch (final SocketTimeoutException e) {
+			log.warn("Rejected request, which was not sent within " + REQUEST_TIMEOUT + " msec");
+			return false;
+		}
+		socket.setSoTimeout(0);
+
+		if (Arrays.asList(args).contains("--stop-daemon")) {
+			log.info("Stop requested");
+			out.writeByte(FRAME_EXIT);
+			out.writeInt(0);
+			out.flush();
+			return true;
+		}
+
+		log.debug("Request in {}: {}", workingDir, Arrays.asList(args));
+		final long start = System.currentTimeMillis();
+
+		final PrintStream oldOut = System.out;
+		final PrintStream oldErr = System.err;
+		final PrintStream clientOut = new PrintStream(new FrameOutputStream(out, FRAME_OUT), true);
+		final PrintStream clientErr = new PrintStream(new FrameOutputStream(out, FRAME_ERR), true);
+		int exitCode;
+		System.setOut(clientOut);
+		System.setErr(clientErr);
+		try {
+			exitCode = versionUpdater.run(args, new File(workingDir));
+		} catch (final RuntimeException e) {
+			e.printStackTrace();
+			exitCode = 1;
+		} finally {
+			clientOut.flush();
+			clientErr.flush();
+			System.setOut(oldOut);
+			System.setErr(oldErr);
+		}
+
+		out.writeByte(FRAME_EXIT);
+		out.writeInt(exitCode);
+		out.flush();
+
+		log.debug("Request served in {} msec", System.currentTimeMillis() - start);
+		return false;
+	}
+
+	/**
+	 * Writes all bytes as frames of the given type.
+	 */
+	private static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte type;
+
+		public FrameOutputStream(final DataOutputStream out, final byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			if (len > 0) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+	}
+
+}
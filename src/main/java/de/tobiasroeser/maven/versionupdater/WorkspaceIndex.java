@@ -0,0 +1,273 @@
+package de.tobiasroeser.maven.versionupdater;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.tototec.utils.functional.Optional;
+
+/**
+ * Lookup tables over all projects of a workspace, built once per run.
+ *
+ * <ul>
+ * <li>GA to local artifacts</li>
+ * <li>GA to dependencies (including those of the selected profiles)</li>
+ * <li>GAV to dependencies (without profile dependencies)</li>
+ * <li>GA and GAV to used plugins (including those of the selected
+ * profiles)</li>
+ * <li>version properties to the GAs of the dependencies, managed
+ * dependencies and plugins using them</li>
+ * </ul>
+ *
+ * All keys are ids of the {@link CoordinateTable}.
+ */
+public class WorkspaceIndex {
+
+	private final List<LocalArtifact> artifacts;
+	private final IntMultiMap<LocalArtifact> localArtifactsByGa;
+	private final IntMultiMap<Dependency> dependenciesByGa;
+	private final IntMultiMap<Dependency> dependenciesByGav;
+	private final IntMultiMap<UsedPlugin> pluginsByGa;
+	private final IntMultiMap<UsedPlugin> pluginsByGav;
+	/** Map(property:set-of-ga-ids) */
+	private final Map<PropertyDefinition, Set<Integer>> propertyUsers = new HashMap<PropertyDefinition, Set<Integer>>();
+	private SearchIndex artifactSearchIndex;
+	private SearchIndex dependencySearchIndex;
+	private SearchIndex pluginSearchIndex;
+
+	/**
+	 * @param projects
+	 *            The projects of the workspace, in reactor order.
+	 * @param profiles
+	 *            The selected profiles.
+	 */
+	public WorkspaceIndex(final List<ProjectInfo> projects, final List<String> profiles) {
+		final CoordinateTable table = CoordinateTable.instance;
+		final List<String> noProfiles = Collections.emptyList();
+
+		final List<LocalArtifact> localArtifacts = new ArrayList<LocalArtifact>(projects.size());
+		localArtifactsByGa = new IntMultiMap<LocalArtifact>(table.gaCount());
+		dependenciesByGa = new IntMultiMap<Dependency>(table.gaCount());
+		dependenciesByGav = new IntMultiMap<Dependency>(table.gavCount());
+		pluginsByGa = new IntMultiMap<UsedPlugin>(table.gaCount());
+		pluginsByGav = new IntMultiMap<UsedPlugin>(table.gavCount());
+
+		for (final ProjectInfo project : projects) {
+			final LocalArtifact artifact = project.getArtifact();
+			localArtifacts.add(artifact);
+			localArtifactsByGa.add(artifact.getGaId(), artifact);
+
+			for (final Dependency dependency : project.getDependencies(profiles)) {
+				dependenciesByGa.add(dependency.getDependencyArtifact().getGaId(), dependency);
+				addPropertyUser(dependency.getVersionProperty(), dependency.getDependencyArtifact().getGaId());
+				for (Optional<Dependency> managing = dependency.getManagedBy(); managing.isDefined(); managing = managing.get()
+						.getManagedBy()) {
+					addPropertyUser(managing.get().getVersionProperty(), dependency.getDependencyArtifact().getGaId());
+				}
+			}
+			for (final Dependency dependency : project.getDependencyManagement()) {
+				addPropertyUser(dependency.getVersionProperty(), dependency.getDependencyArtifact().getGaId());
+			}
+			for (final Dependency dependency : project.getDependencies(noProfiles)) {
+				dependenciesByGav.add(dependency.getDependencyArtifact().getGavId(), dependency);
+			}
+			for (final UsedPlugin plugin : project.getPlugins(profiles)) {
+				pluginsByGa.add(plugin.getPluginArtifact().getGaId(), plugin);
+				pluginsByGav.add(plugin.getPluginArtifact().getGavId(), plugin);
+				addPropertyUser(plugin.getVersionProperty(), plugin.getPluginArtifact().getGaId());
+			}
+		}
+
+		this.artifacts = Collections.unmodifiableList(localArtifacts);
+	}
+
+	private void addPropertyUser(final Optional<PropertyDefinition> property, final int gaId) {
+		if (property.isDefined()) {
+			Set<Integer> users = propertyUsers.get(property.get());
+			if (users == null) {
+				users = new LinkedHashSet<Integer>();
+				propertyUsers.put(property.get(), users);
+			}
+			users.add(gaId);
+		}
+	}
+
+	/**
+	 * All local artifacts, in reactor order.
+	 */
+	public List<LocalArtifact> getArtifacts() {
+		return artifacts;
+	}
+
+	/**
+	 * IntMultiMap(ga-id:LocalArtifact)
+	 */
+	public IntMultiMap<LocalArtifact> getLocalArtifactsByGa() {
+		return localArtifactsByGa;
+	}
+
+	public List<LocalArtifact> getLocalArtifacts(final int gaId) {
+		return localArtifactsByGa.get(gaId);
+	}
+
+	/**
+	 * The local artifact with the highest {@link Version} of the given GA, or
+	 * <code>null</code>.
+	 */
+	public LocalArtifact getNewestLocalArtifact(final int gaId) {
+		LocalArtifact newest = null;
+		for (final LocalArtifact artifact : getLocalArtifacts(gaId)) {
+			if (newest == null || artifact.getParsedVersion().isNewerThan(newest.getParsedVersion())) {
+				newest = artifact;
+			}
+		}
+		return newest;
+	}
+
+	public boolean isLocal(final int gaId) {
+		return localArtifactsByGa.containsKey(gaId);
+	}
+
+	/**
+	 * Find the local artifact with the given key
+	 * <code>groupId:artifactId</code> or
+	 * <code>groupId:artifactId:version</code>.
+	 *
+	 * @return The matching artifact (the newest one, if no version was given)
+	 *         or <code>null</code>.
+	 */
+	public LocalArtifact findLocalArtifact(final String key) {
+		final String[] split = key.split(":", 3);
+		if (split.length < 2) {
+			return null;
+		}
+		final int gaId = CoordinateTable.instance.findGa(split[0], split[1]);
+		if (split.length == 2) {
+			return getNewestLocalArtifact(gaId);
+		}
+		for (final LocalArtifact artifact : getLocalArtifacts(gaId)) {
+			if (artifact.getVersion().equals(split[2])) {
+				return artifact;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * IntMultiMap(dependency-ga-id:Dependency), including dependencies of the
+	 * selected profiles.
+	 */
+	public IntMultiMap<Dependency> getDependenciesByGa() {
+		return dependenciesByGa;
+	}
+
+	/**
+	 * The dependencies to the given GA, including dependencies of the
+	 * selected profiles.
+	 */
+	public List<Dependency> getDependencies(final int gaId) {
+		return dependenciesByGa.get(gaId);
+	}
+
+	/**
+	 * IntMultiMap(dependency-gav-id:Dependency), without dependencies of
+	 * profiles.
+	 */
+	public IntMultiMap<Dependency> getDependenciesByGav() {
+		return dependenciesByGav;
+	}
+
+	/**
+	 * IntMultiMap(plugin-ga-id:UsedPlugin), including plugins of the selected
+	 * profiles and pluginManagement entries.
+	 */
+	public IntMultiMap<UsedPlugin> getPluginsByGa() {
+		return pluginsByGa;
+	}
+
+	/**
+	 * The used plugins with the given GA, including plugins of the selected
+	 * profiles and pluginManagement entries.
+	 */
+	public List<UsedPlugin> getPlugins(final int gaId) {
+		return pluginsByGa.get(gaId);
+	}
+
+	/**
+	 * IntMultiMap(plugin-gav-id:UsedPlugin), including plugins of the
+	 * selected profiles and pluginManagement entries.
+	 */
+	public IntMultiMap<UsedPlugin> getPluginsByGav() {
+		return pluginsByGav;
+	}
+
+	/**
+	 * The ids of the GAs of all dependencies, managed dependencies and
+	 * plugins, whose version is defined by the given property (directly or
+	 * through the <code>dependencyManagement</code>). Dependencies and plugins
+	 * of not selected profiles are not included.
+	 */
+	public Set<Integer> getPropertyUsers(final PropertyDefinition property) {
+		final Set<Integer> users = propertyUsers.get(property);
+		return users != null ? Collections.unmodifiableSet(users) : Collections.<Integer> emptySet();
+	}
+
+	/**
+	 * The {@link SearchIndex} over {@link #getLocalArtifactsByGa()}, which is
+	 * built on first use.
+	 */
+	public synchronized SearchIndex getArtifactSearchIndex() {
+		if (artifactSearchIndex == null) {
+			artifactSearchIndex = new SearchIndex(localArtifactsByGa, new SearchIndex.GavIdOf<LocalArtifact>() {
+				@Override
+				public int gavIdOf(final LocalArtifact value) {
+					return value.getGavId();
+				}
+			});
+		}
+		return artifactSearchIndex;
+	}
+
+	/**
+	 * The {@link SearchIndex} over {@link #getDependenciesByGa()}, which is
+	 * built on first use.
+	 */
+	public synchronized SearchIndex getDependencySearchIndex() {
+		if (dependencySearchIndex == null) {
+			dependencySearchIndex = new SearchIndex(dependenciesByGa, new SearchIndex.GavIdOf<Dependency>() {
+				@Override
+				public int gavIdOf(final Dependency value) {
+					return value.getDependencyArtifact().getGavId();
+				}
+			});
+		}
+		return dependencySearchIndex;
+	}
+
+	/**
+	 * The {@link SearchIndex} over {@link #getPluginsByGa()}, which is built
+	 * on first use.
+	 */
+	public synchronized SearchIndex getPluginSearchIndex() {
+		if (pluginSearchIndex == null) {
+			pluginSearchIndex = new SearchIndex(pluginsByGa, new SearchIndex.GavIdOf<UsedPlugin>() {
+				@Override
+				public int gavIdOf(final UsedPlugin value) {
+					return value.getPluginArtifact().getGavId();
+				}
+			});
+		}
+		return pluginSearchIndex;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(artifacts=" + artifacts.size() + ",dependencies=" + dependenciesByGa.size()
+				+ ",plugins=" + pluginsByGa.size() + ")";
+	}
+
+}
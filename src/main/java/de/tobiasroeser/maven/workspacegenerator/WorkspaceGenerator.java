@@ -0,0 +1,387 @@
+package de.tobiasroeser.maven.workspacegenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tototec.cmdoption.CmdOption;
+import de.tototec.cmdoption.CmdlineParser;
+import de.tototec.cmdoption.CmdlineParserException;
+
+/**
+ * Generates a synthetic Maven workspace, e.g. as input for benchmarks.
+ *
+ * The modules are distributed over a tree of nested aggregator projects,
+ * which declare their modules in a profile. Each project uses its aggregator
+ * as parent and inherits groupId, version and the version properties of the
+ * root project. Modules depend on earlier modules, on an external library
+ * with a property based version and exclusions, on JUnit and sometimes on a
+ * system scope library. Dependencies on modules use literal coordinates, some
+ * use the version property {@link #MODULES_VERSION_PROPERTY} instead and some
+ * require an outdated version.
+ *
+ * All choices are taken from a random generator with a given seed, so the
+ * same options always generate the same workspace.
+ */
+public class WorkspaceGenerator {
+
+	public static final String GROUP_ID = "org.example";
+	public static final String VERSION = "1.0.0";
+	/** The version of dependencies with a version mismatch. */
+	public static final String OUTDATED_VERSION = "0.9.0";
+	/** The property of the root project holding {@link #VERSION}. */
+	public static final String MODULES_VERSION_PROPERTY = "modules.version";
+	/** The number of external libraries, modules depend on. */
+	public static final int LIBRARIES = 20;
+	/** The directory of the generated bundles, relative to the workspace. */
+	public static final String BUNDLE_DIR = "bundles";
+
+	/** The time of all jar entries, so generated jars do not differ. */
+	private static final long ENTRY_TIME = 315532800000L;
+
+	private final Logger log = LoggerFactory.getLogger(WorkspaceGenerator.class);
+
+	public static void main(final String[] args) {
+		try {
+			final int status = new WorkspaceGenerator().run(args);
+			System.exit(status);
+		} catch (final Throwable t) {
+			LoggerFactory.getLogger(WorkspaceGenerator.class).error("Caught an exception.", t);
+			System.exit(1);
+		}
+	}
+
+	public static class Config {
+
+		@CmdOption(names = { "--help", "-h" }, description = "Show this help")
+		public boolean showHelp = false;
+
+		@CmdOption(names = "--dir", args = { "DIR" }, description = "Generate the workspace into the new or empty directory {0}")
+		public String dir;
+
+		@CmdOption(names = "--modules", args = { "N" }, description = "Generate {0} modules (default: 100)")
+		public int modules = 100;
+
+		@CmdOption(names = "--fan-out", args = { "N" }, description = "Each aggregator has at most {0} modules (default: 10)")
+		public int fanOut = 10;
+
+		@CmdOption(names = "--depth", args = { "N" }, description = "Nest aggregators at most {0} levels below the root project (default: 3)")
+		public int depth = 3;
+
+		@CmdOption(names = "--dependencies", args = { "N" }, description = "Each module depends on up to {0} other modules (default: 3)")
+		public int dependencies = 3;
+
+		@CmdOption(names = "--mismatch-percent", args = { "N" }, description = "{0} percent of the dependencies on modules require an outdated version (default: 5)")
+		public int mismatchPercent = 5;
+
+		@CmdOption(names = "--property-version-percent", args = { "N" }, description = "{0} percent of the other dependencies on modules use a version property (default: 10)")
+		public int propertyVersionPercent = 10;
+
+		@CmdOption(names = "--system-percent", args = { "N" }, description = "{0} percent of the modules have a system scope dependency (default: 5)")
+		public int systemPercent = 5;
+
+		@CmdOption(names = "--profile", args = { "ID" }, description = "Declare the modules of aggregators in profile {0} (default: all)")
+		public String profile = "all";
+
+		@CmdOption(names = "--bundles", description = "Also generate an OSGi bundle of each module into the bundles directory")
+		public boolean bundles = false;
+
+		@CmdOption(names = "--seed", args = { "N" }, description = "Use seed {0} for all random choices (default: 1)")
+		public int seed = 1;
+
+		public List<String> validate() {
+			final List<String> errors = new LinkedList<String>();
+			if (dir == null) {
+				errors.add("No directory given.");
+			}
+			if (modules < 1) {
+				errors.add("Number of modules must be at least 1.");
+			}
+			if (fanOut < 2) {
+				errors.add("Fan-out must be at least 2.");
+			}
+			if (depth < 0 || dependencies < 0) {
+				errors.add("Depth and dependencies must not be negative.");
+			}
+			if (mismatchPercent < 0 || mismatchPercent > 100 || propertyVersionPercent < 0
+					|| propertyVersionPercent > 100 || systemPercent < 0 || systemPercent > 100) {
+				errors.add("Percentages must be between 0 and 100.");
+			}
+			return errors;
+		}
+	}
+
+	private int run(final String[] params) {
+		final Config config = new Config();
+		final CmdlineParser cp = new CmdlineParser(config);
+		try {
+			cp.parse(params);
+		} catch (final CmdlineParserException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+		if (config.showHelp) {
+			cp.usage();
+			return 0;
+		}
+		return run(config);
+	}
+
+	public int run(final Config config) {
+		final List<String> errors = config.validate();
+		if (!errors.isEmpty()) {
+			for (final String error : errors) {
+				log.error(error);
+			}
+			return 1;
+		}
+
+		final File dir = new File(config.dir);
+		final String[] existing = dir.list();
+		if (existing != null && existing.length > 0) {
+			log.error("Directory is not empty: " + dir);
+			return 1;
+		}
+
+		try {
+			final int projects = generate(config);
+			log.info("Generated " + projects + " projects in: " + dir);
+		} catch (final IOException e) {
+			log.error("Could not generate workspace: " + dir, e);
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Generate the workspace into directory <code>config.dir</code>.
+	 *
+	 * @return The number of generated projects, including aggregators.
+	 */
+	public int generate(final Config config) throws IOException {
+		final Generation generation = new Generation(config);
+		final List<Integer> modules = new ArrayList<Integer>(config.modules);
+		for (int i = 0; i < config.modules; ++i) {
+			modules.add(i);
+		}
+		generation.writeAggregator(new File(config.dir), "root", null, modules, 0);
+		return generation.projects;
+	}
+
+	/**
+	 * The state of one run of {@link WorkspaceGenerator#generate(Config)}.
+	 */
+	protected static class Generation {
+		private final Config config;
+		private final Random random;
+		private int aggregators = 0;
+		private int projects = 0;
+
+		public Generation(final Config config) {
+			this.config = config;
+			this.random = new Random(config.seed);
+		}
+
+		/**
+		 * Write an aggregator with the given modules. If there are more
+		 * modules than the fan-out and the depth allows it, they are split
+		 * into nested aggregators.
+		 */
+		protected void writeAggregator(final File dir, final String artifactId, final String parentArtifactId,
+				final List<Integer> modules, final int level) throws IOException {
+			final List<String> children = new LinkedList<String>();
+			if (level >= config.depth || modules.size() <= config.fanOut) {
+				for (final Integer module : modules) {
+					final String child = "module" + module;
+					children.add(child);
+					writeModule(new File(dir, child), module, artifactId);
+				}
+			} else {
+				final int chunk = (modules.size() + config.fanOut - 1) / config.fanOut;
+				for (int from = 0; from < modules.size(); from += chunk) {
+					final String child = "aggregator" + (++aggregators);
+					children.add(child);
+					writeAggregator(new File(dir, child), child, artifactId,
+							modules.subList(from, Math.min(from + chunk, modules.size())), level + 1);
+				}
+			}
+
+			final StringBuilder pom = new StringBuilder();
+			startProject(pom, artifactId, parentArtifactId, "pom");
+			if (parentArtifactId == null) {
+				pom.append("  <properties>\n");
+				pom.append("    <" + MODULES_VERSION_PROPERTY + ">" + VERSION + "</" + MODULES_VERSION_PROPERTY + ">\n");
+				pom.append("    <junit.version>4.12</junit.version>\n");
+				pom.append("    <compiler.version>3.1</compiler.version>\n");
+				for (int i = 0; i < LIBRARIES; ++i) {
+					pom.append("    <lib" + i + ".version>1." + i + ".0</lib" + i + ".version>\n");
+				}
+				pom.append("  </properties>\n");
+				pom.append("  <build><pluginManagement><plugins>\n");
+				pom.append("    <plugin><artifactId>maven-compiler-plugin</artifactId><version>${compiler.version}</version></plugin>\n");
+				pom.append("  </plugins></pluginManagement></build>\n");
+			}
+			pom.append("  <profiles>\n    <profile>\n      <id>" + config.profile + "</id>\n      <modules>\n");
+			for (final String child : children) {
+				pom.append("        <module>" + child + "</module>\n");
+			}
+			pom.append("      </modules>\n    </profile>\n  </profiles>\n");
+			pom.append("</project>\n");
+			write(new File(dir, "pom.xml"), pom.toString());
+		}
+
+		protected void writeModule(final File dir, final int module, final String parentArtifactId) throws IOException {
+			final TreeSet<Integer> dependencies = new TreeSet<Integer>();
+			final int count = Math.min(config.dependencies, module);
+			while (dependencies.size() < count) {
+				dependencies.add(random.nextInt(module));
+			}
+
+			final StringBuilder pom = new StringBuilder();
+			startProject(pom, "module" + module, parentArtifactId, "jar");
+			pom.append("  <dependencies>\n");
+			for (final Integer dependency : dependencies) {
+				final String version;
+				if (random.nextInt(100) < config.mismatchPercent) {
+					version = OUTDATED_VERSION;
+				} else if (random.nextInt(100) < config.propertyVersionPercent) {
+					version = "${" + MODULES_VERSION_PROPERTY + "}";
+				} else {
+					version = VERSION;
+				}
+				pom.append("    <dependency>\n");
+				pom.append("      <groupId>" + GROUP_ID + "</groupId>\n");
+				pom.append("      <artifactId>module" + dependency + "</artifactId>\n");
+				pom.append("      <version>" + version + "</version>\n");
+				pom.append("    </dependency>\n");
+			}
+			final int library = random.nextInt(LIBRARIES);
+			pom.append("    <dependency>\n");
+			pom.append("      <groupId>org.lib</groupId>\n");
+			pom.append("      <artifactId>lib" + library + "</artifactId>\n");
+			pom.append("      <version>${lib" + library + ".version}</version>\n");
+			pom.append("      <exclusions>\n");
+			pom.append("        <exclusion><groupId>commons-logging</groupId><artifactId>commons-logging</artifactId></exclusion>\n");
+			pom.append("      </exclusions>\n");
+			pom.append("    </dependency>\n");
+			if (random.nextInt(100) < config.systemPercent) {
+				pom.append("    <dependency>\n");
+				pom.append("      <groupId>com.sun</groupId>\n");
+				pom.append("      <artifactId>tools</artifactId>\n");
+				pom.append("      <version>1.8</version>\n");
+				pom.append("      <scope>system</scope>\n");
+				pom.append("      <systemPath>${java.home}/../lib/tools.jar</systemPath>\n");
+				pom.append("    </dependency>\n");
+			}
+			pom.append("    <dependency>\n");
+			pom.append("      <groupId>junit</groupId>\n");
+			pom.append("      <artifactId>junit</artifactId>\n");
+			pom.append("      <version>${junit.version}</version>\n");
+			pom.append("      <scope>test</scope>\n");
+			pom.append("    </dependency>\n");
+			pom.append("  </dependencies>\n");
+			pom.append("  <build><plugins>\n");
+			pom.append("    <plugin><artifactId>maven-compiler-plugin</artifactId></plugin>\n");
+			pom.append("  </plugins></build>\n");
+			pom.append("</project>\n");
+			write(new File(dir, "pom.xml"), pom.toString());
+
+			if (config.bundles) {
+				writeBundle(module, dependencies);
+			}
+		}
+
+		/**
+		 * Write the OSGi bundle of a module. Each bundle requires the bundles
+		 * of the modules it depends on.
+		 */
+		protected void writeBundle(final int module, final Iterable<Integer> dependencies) throws IOException {
+			final String symbolicName = GROUP_ID + ".module" + module;
+			final StringBuilder requireBundle = new StringBuilder();
+			for (final Integer dependency : dependencies) {
+				if (requireBundle.length() > 0) {
+					requireBundle.append(",");
+				}
+				requireBundle.append(GROUP_ID + ".module" + dependency);
+			}
+
+			final Manifest manifest = new Manifest();
+			final Attributes attributes = manifest.getMainAttributes();
+			attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			attributes.putValue("Bundle-ManifestVersion", "2");
+			attributes.putValue("Bundle-SymbolicName", symbolicName + ";singleton:=true");
+			attributes.putValue("Bundle-Version", VERSION);
+			if (requireBundle.length() > 0) {
+				attributes.putValue("Require-Bundle", requireBundle.toString());
+			}
+
+			final byte[] content = new byte[1024 + random.nextInt(4096)];
+			random.nextBytes(content);
+
+			final File bundleDir = new File(config.dir, BUNDLE_DIR);
+			bundleDir.mkdirs();
+			final JarOutputStream jar = new JarOutputStream(new FileOutputStream(new File(bundleDir, symbolicName + "_"
+					+ VERSION + ".jar")));
+			try {
+				final ZipEntry manifestEntry = new ZipEntry(JarFile.MANIFEST_NAME);
+				manifestEntry.setTime(ENTRY_TIME);
+				jar.putNextEntry(manifestEntry);
+				manifest.write(jar);
+				jar.closeEntry();
+				final ZipEntry classEntry = new ZipEntry(symbolicName.replace('.', '/') + "/Module.class");
+				classEntry.setTime(ENTRY_TIME);
+				jar.putNextEntry(classEntry);
+				jar.write(content);
+				jar.closeEntry();
+			} finally {
+				jar.close();
+			}
+		}
+
+		protected void startProject(final StringBuilder pom, final String artifactId, final String parentArtifactId,
+				final String packaging) {
+			++projects;
+			pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+			pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+			if (parentArtifactId != null) {
+				pom.append("  <parent>\n");
+				pom.append("    <groupId>" + GROUP_ID + "</groupId>\n");
+				pom.append("    <artifactId>" + parentArtifactId + "</artifactId>\n");
+				pom.append("    <version>" + VERSION + "</version>\n");
+				pom.append("  </parent>\n");
+			} else {
+				pom.append("  <groupId>" + GROUP_ID + "</groupId>\n");
+				pom.append("  <version>" + VERSION + "</version>\n");
+			}
+			pom.append("  <artifactId>" + artifactId + "</artifactId>\n");
+			pom.append("  <packaging>" + packaging + "</packaging>\n");
+		}
+
+		protected void write(final File file, final String content) throws IOException {
+			file.getParentFile().mkdirs();
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write(content);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+}
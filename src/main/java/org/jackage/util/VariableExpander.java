@@ -1,62 +1,161 @@
-/**
- * $Id: VariableExpander.java 122 2008-04-28 16:17:26Z TobiasRoeser $
- * Created on 2008-01-11.
- * 
- * Copyright (C) 2007 - 2008 by Tobias Roeser
- * 
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- * 
- */
-package org.jackage.util;
-
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
-
-public class VariableExpander<S> {
-
-	private final Set<ExpandVar<S, String>> expands = new LinkedHashSet<ExpandVar<S, String>>();
-
-	public VariableExpander() {
-	}
-
-	public void addVar(final S var, final String content) {
-		addVar(new ExpandVar<S, String>(var, content));
-	}
-
-	public void addVar(final ExpandVar<S, String> expander) {
-		expands.add(expander);
-	}
-
-	public String expand(String string) {
-		if (string == null) {
-			return "";
-		}
-		for (final ExpandVar<S, String> var : expands) {
-			string = string.replaceAll("\\$\\{" + var.key.toString() + "\\}",
-					Matcher.quoteReplacement(var.value.toString()));
-		}
-		return string;
-	}
-
-	public class ExpandVar<K, V> {
-		public K key;
-		public V value;
-
-		public ExpandVar(final K key, final V value) {
-			this.key = key;
-			this.value = value;
-		}
-	}
-
-}
+/**
+ * $Id: VariableExpander.java 122 2008-04-28 16:17:26Z TobiasRoeser $
+ * Created on 2008-01-11.
+ * 
+ * Copyright (C) 2007 - 2008 by Tobias Roeser
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.jackage.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expands variables of the form <code>${name}</code>. Unknown variables are
+ * kept as-is.
+ *
+ * Strings are parsed once into a {@link Template}, which is cached and shared
+ * by all expanders. Variables are resolved with a hash lookup.
+ */
+public class VariableExpander<S> {
+
+	/** The maximal number of cached templates. */
+	private static final int MAX_CACHED_TEMPLATES = 10000;
+
+	private static final Map<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+	private final Map<String, String> expands = new HashMap<String, String>();
+
+	public VariableExpander() {
+	}
+
+	public void addVar(final S var, final String content) {
+		addVar(new ExpandVar<S, String>(var, content));
+	}
+
+	/**
+	 * Add a variable. If a variable with the same name was already added, the
+	 * first one wins.
+	 */
+	public void addVar(final ExpandVar<S, String> expander) {
+		final String key = expander.key.toString();
+		if (!expands.containsKey(key)) {
+			expands.put(key, expander.value != null ? expander.value.toString() : null);
+		}
+	}
+
+	public String expand(final String string) {
+		if (string == null) {
+			return "";
+		}
+		if (string.indexOf('$') < 0) {
+			return string;
+		}
+		return compile(string).expand(expands);
+	}
+
+	/**
+	 * Parse <code>string</code> into a reusable {@link Template}.
+	 */
+	public static Template compile(final String string) {
+		Template template = templates.get(string);
+		if (template == null) {
+			template = new Template(string);
+			if (templates.size() >= MAX_CACHED_TEMPLATES) {
+				templates.clear();
+			}
+			templates.put(string, template);
+		}
+		return template;
+	}
+
+	/**
+	 * A parsed string, consisting of alternating literals and variable names.
+	 */
+	public static class Template {
+		private final String string;
+		/** literals[i] is followed by names[i]. */
+		private final String[] literals;
+		private final String[] names;
+
+		public Template(final String string) {
+			this.string = string;
+			final List<String> literalList = new ArrayList<String>();
+			final List<String> nameList = new ArrayList<String>();
+			int literalStart = 0;
+			int pos = string.indexOf("${");
+			while (pos >= 0) {
+				final int end = string.indexOf('}', pos + 2);
+				if (end < 0) {
+					break;
+				}
+				literalList.add(string.substring(literalStart, pos));
+				nameList.add(string.substring(pos + 2, end));
+				literalStart = end + 1;
+				pos = string.indexOf("${", literalStart);
+			}
+			literalList.add(string.substring(literalStart));
+			this.literals = literalList.toArray(new String[literalList.size()]);
+			this.names = nameList.toArray(new String[nameList.size()]);
+		}
+
+		/**
+		 * The variable names in order of appearance.
+		 */
+		public String[] getNames() {
+			return names.clone();
+		}
+
+		/**
+		 * Expand all variables with a value in <code>vars</code>.
+		 */
+		public String expand(final Map<String, String> vars) {
+			if (names.length == 0) {
+				return string;
+			}
+			final StringBuilder result = new StringBuilder(string.length() + 16);
+			for (int i = 0; i < names.length; ++i) {
+				result.append(literals[i]);
+				final String value = vars.get(names[i]);
+				if (value != null) {
+					result.append(value);
+				} else {
+					result.append("${").append(names[i]).append('}');
+				}
+			}
+			result.append(literals[names.length]);
+			return result.toString();
+		}
+
+		@Override
+		public String toString() {
+			return string;
+		}
+	}
+
+	public class ExpandVar<K, V> {
+		public K key;
+		public V value;
+
+		public ExpandVar(final K key, final V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+}